@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entry of the benchmark jar, it runs JMH and writes the results as JSON to <tt>jmh-result.json</tt>
+ * unless a result format is given, so that results can be compared between releases.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>();
+        List<String> userArgs = Arrays.asList(args);
+        if (!userArgs.contains("-rf")) {
+            jmhArgs.add("-rf");
+            jmhArgs.add("json");
+            if (!userArgs.contains("-rff")) {
+                jmhArgs.add("-rff");
+                jmhArgs.add("jmh-result.json");
+            }
+        }
+        jmhArgs.addAll(userArgs);
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.api.ApiNames;
+import org.fufile.network.Receiver;
+import org.fufile.transfer.AppendRequestMessage;
+import org.fufile.transfer.FufileMessage;
+import org.fufile.transfer.HeartbeatRequestMessage;
+import org.fufile.transfer.ReadIndexRequestMessage;
+import org.fufile.transfer.TestStringMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a message into a frame as {@link org.fufile.network.Sender} does,
+ * and decoding a frame as {@link Receiver} does, per {@link ApiNames} entry.
+ * Only the entries whose messages implement serialization are listed, add an entry to {@link #message}
+ * when a message gains its codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"TEST", "HEARTBEAT", "APPEND", "READ_INDEX"})
+    String api;
+
+    @Param({"16", "1024"})
+    int size;
+
+    FufileMessage message;
+    ByteBuffer frame;
+
+    @Setup
+    public void setup() {
+        message = message(ApiNames.valueOf(api), size);
+        frame = message.serialize();
+        // the channel hands the frame to the receiver without its length
+        frame.position(4);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return message.serialize();
+    }
+
+    @Benchmark
+    public FufileMessage decode() throws UnsupportedEncodingException {
+        return new Receiver(frame.duplicate()).message();
+    }
+
+    private static FufileMessage message(ApiNames api, int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'f');
+        String content = new String(chars);
+        switch (api) {
+            case TEST:
+                return new TestStringMessage(content);
+            case HEARTBEAT:
+                return new HeartbeatRequestMessage(content);
+            case APPEND:
+                // the entries are copied out of the frame when decoded
+                return new AppendRequestMessage(1, 41, 1, 40, 42, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+            case READ_INDEX:
+                // a fixed size message, the size does not apply
+                return new ReadIndexRequestMessage(size);
+            default:
+                throw new IllegalArgumentException("The messages of " + api + " have no codec yet.");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lookups and a read-mostly mix on one {@link FileTree} shared by all benchmark threads.
+ * The thread count is given to JMH, the scaling is measured by running it once per count:
+ * <pre>
+ * for t in 1 2 4 8 16 32; do java -jar benchmarks.jar ConcurrentFileTreeBenchmark -t $t -rff tree-$t.json; done
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentFileTreeBenchmark {
+
+    @Param({"1000000"})
+    int nodes;
+
+    /**
+     * One operation in this many creates and removes a file, the others are lookups.
+     */
+    @Param({"10"})
+    int writeEvery;
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private FileTree fileTree;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        fileTree = new FileTree();
+        paths = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            paths[i] = "/data/dir-" + (i / 100000) + "/dir-" + (i / 1000) + "/file-" + i;
+            fileTree.createFileOrDirNode(paths[i], true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private String prefix;
+        private long created = 0;
+        private int operations = 0;
+
+        @Setup
+        public void setup(ConcurrentFileTreeBenchmark benchmark) {
+            // the writers share the directories of the existing files
+            prefix = "/data/dir-0/dir-" + benchmark.threadIds.getAndIncrement() + "/new-";
+        }
+    }
+
+    @Benchmark
+    public TreeNode get() {
+        return fileTree.getFileOrDirNode(paths[ThreadLocalRandom.current().nextInt(nodes)], true);
+    }
+
+    @Benchmark
+    public TreeNode readMostly(Writer writer) {
+        if (++writer.operations % writeEvery == 0) {
+            String path = writer.prefix + writer.created++;
+            fileTree.createFileOrDirNode(path, true);
+            fileTree.removeFileOrDirNode(path, true);
+            return null;
+        }
+        return get();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.network.BufferPool;
+import org.fufile.network.FufileSocketChannel;
+import org.fufile.network.ServerSocketSelector;
+import org.fufile.network.SocketSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of clients connecting at once, as after a leader change: the acceptor accepts them in batches,
+ * hands them to a socket selector and the selector registers them.
+ * The clients are connected before each invocation and stay in the accept backlog until measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionStormBenchmark {
+
+    /**
+     * Below the default accept backlog of 50, so that no connect waits for a SYN retry.
+     */
+    private static final int CONNECTIONS = 40;
+
+    @Param({"8", "64"})
+    int acceptBatchSize;
+
+    private ServerSocketSelector serverSocketSelector;
+    private SocketSelector socketSelector;
+    private Map<String, FufileSocketChannel> connectedNodes;
+    private InetSocketAddress address;
+    private final List<SocketChannel> clients = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        serverSocketSelector = new ServerSocketSelector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), acceptBatchSize);
+        address = (InetSocketAddress) serverSocketSelector.getFufileServerSocketChannel().channel().getLocalAddress();
+        connectedNodes = new ConcurrentHashMap<>();
+        socketSelector = new SocketSelector("server", connectedNodes, new BufferPool(false, 1024 * 1024, 64),
+                FufileSocketChannel.DEFAULT_SEND_QUEUE_SIZE, FufileSocketChannel.DEFAULT_RECEIVE_BUFFER_SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void connect() throws IOException {
+        for (int i = 0; i < CONNECTIONS; i++) {
+            SocketChannel client = SocketChannel.open(address);
+            // reset on close, so that the trial does not run out of ports in TIME_WAIT
+            client.socket().setSoLinger(true, 0);
+            clients.add(client);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONNECTIONS)
+    public int acceptStorm() throws IOException {
+        while (connectedNodes.size() < CONNECTIONS) {
+            serverSocketSelector.doPool(0);
+            Iterator<FufileSocketChannel> iterator = serverSocketSelector.getNewConnections().iterator();
+            while (iterator.hasNext()) {
+                socketSelector.allocateNewConnections(iterator.next());
+                iterator.remove();
+            }
+            socketSelector.registerNewConnections();
+        }
+        return connectedNodes.size();
+    }
+
+    @TearDown(Level.Invocation)
+    public void disconnect() throws IOException {
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        clients.clear();
+        for (FufileSocketChannel channel : connectedNodes.values()) {
+            channel.close();
+        }
+        connectedNodes.clear();
+        // flush the cancelled keys
+        socketSelector.doPool(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        socketSelector.close();
+        serverSocketSelector.close();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.persistence.Durability;
+import org.fufile.persistence.FileLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Appends to one {@link FileLog} shared by all benchmark threads, the appends of waiting threads are group committed.
+ * The thread count is given to JMH, e.g. <tt>-t 1</tt> shows the cost of one force per append.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(64)
+@Fork(1)
+public class FileLogBenchmark {
+
+    @Param({"write", "sync"})
+    String durability;
+
+    private final AtomicLong paths = new AtomicLong();
+    private Path dir;
+    private FileLog fileLog;
+    private Durability appendDurability;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fufile-log");
+        appendDurability = Durability.of(durability);
+        fileLog = new FileLog(dir, 64L * 1024 * 1024, appendDurability);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileLog.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        long i = paths.incrementAndGet();
+        return fileLog.appendCreate("/data/dir-" + (i / 1000) + "/file-" + i, true, appendDurability);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.tree.FileTree;
+import org.fufile.tree.OffHeapFileTree;
+import org.fufile.tree.TreeHandler;
+import org.fufile.tree.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Creating, looking up and removing files in a tree that already holds <tt>nodes</tt> files,
+ * spread over directories of <tt>filesPerDir</tt> files two levels deep.
+ * The tree is the heap {@link FileTree} or the {@link OffHeapFileTree} in a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FileTreeBenchmark {
+
+    @Param({"1000000"})
+    int nodes;
+
+    @Param({"1000"})
+    int filesPerDir;
+
+    @Param({"heap", "off-heap"})
+    String tree;
+
+    private TreeHandler fileTree;
+    private Path dir;
+    private String[] paths;
+    private long created = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("heap".equals(tree)) {
+            fileTree = new FileTree();
+        } else {
+            dir = Files.createTempDirectory("fufile-tree");
+            fileTree = new OffHeapFileTree(dir);
+        }
+        paths = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            paths[i] = path(i);
+            fileTree.createFileOrDirNode(paths[i], true);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (dir != null) {
+            ((OffHeapFileTree) fileTree).close();
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private String path(int i) {
+        int dir = i / filesPerDir;
+        return "/data/dir-" + (dir / 100) + "/dir-" + dir + "/file-" + i;
+    }
+
+    @Benchmark
+    public TreeNode get() {
+        return fileTree.getFileOrDirNode(paths[ThreadLocalRandom.current().nextInt(nodes)], true);
+    }
+
+    /**
+     * Creates a file next to the existing ones and removes it, so the tree keeps its size.
+     */
+    @Benchmark
+    public void createRemove() {
+        String dir = paths[ThreadLocalRandom.current().nextInt(nodes)];
+        String path = dir.substring(0, dir.lastIndexOf('/')) + "/new-" + created++;
+        fileTree.createFileOrDirNode(path, true);
+        fileTree.removeFileOrDirNode(path, true);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.tree.FileTree;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a {@link FileTree} of <tt>inodes</tt> files once and reports the retained heap per inode
+ * as the <tt>heapBytesPerInode</tt> counter, next to the build time.
+ * The paths are <tt>depth</tt> levels deep with <tt>filesPerDir</tt> files per directory,
+ * and file names repeat across directories like job outputs do.
+ * 50M inodes need a heap of about 8GB, run with <tt>-p inodes=1000000</tt> on smaller machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+public class FileTreeFootprintBenchmark {
+
+    @Param({"50000000"})
+    int inodes;
+
+    @Param({"6"})
+    int depth;
+
+    @Param({"1000"})
+    int filesPerDir;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long heapBytesPerInode;
+    }
+
+    @Benchmark
+    public FileTree build(Footprint footprint) {
+        long before = usedHeap();
+        FileTree fileTree = new FileTree();
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < inodes; i++) {
+            path.setLength(0);
+            int dir = i / filesPerDir;
+            for (int level = depth - 2; level >= 0; level--) {
+                path.append("/dir-").append(dir >> (4 * level));
+            }
+            path.append("/part-").append(i % filesPerDir);
+            fileTree.createFileOrDirNode(path.toString(), true);
+        }
+        footprint.heapBytesPerInode = (usedHeap() - before) / inodes;
+        return fileTree;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One directory holding <tt>children</tt> files, as ingest directories do.
+ * Needs about 4GB of heap at 10M children, run with <tt>-p children=1000000</tt> on smaller machines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class LargeDirectoryBenchmark {
+
+    private static final String DIR = "/ingest";
+
+    @Param({"10000000"})
+    int children;
+
+    private FileTree fileTree;
+    private String[] paths;
+    private long created = 0;
+
+    @Setup
+    public void setup() {
+        fileTree = new FileTree();
+        fileTree.createFileOrDirNode(DIR, false);
+        paths = new String[children];
+        for (int i = 0; i < children; i++) {
+            paths[i] = DIR + "/part-" + i;
+            fileTree.createFileOrDirNode(paths[i], true);
+        }
+    }
+
+    @Benchmark
+    public TreeNode get() {
+        return fileTree.getFileOrDirNode(paths[ThreadLocalRandom.current().nextInt(children)], true);
+    }
+
+    @Benchmark
+    public void createRemove() {
+        String path = DIR + "/new-" + created++;
+        fileTree.createFileOrDirNode(path, true);
+        fileTree.removeFileOrDirNode(path, true);
+    }
+}
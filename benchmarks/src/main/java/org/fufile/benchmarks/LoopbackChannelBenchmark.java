@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.network.BufferPool;
+import org.fufile.network.FufileSocketChannel;
+import org.fufile.network.Sender;
+import org.fufile.transfer.TestStringMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames written by one {@link FufileSocketChannel} and read by another over loopback, in one thread.
+ * Each invocation queues a batch of frames, then flushes and reads until the whole batch is received,
+ * so the send queue, the gathering writes and the batch decoding are all on the path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackChannelBenchmark {
+
+    private static final int BATCH = 64;
+
+    @Param({"64", "4096"})
+    int messageSize;
+
+    @Param({"false", "true"})
+    boolean direct;
+
+    private Selector selector;
+    private FufileSocketChannel writer;
+    private FufileSocketChannel reader;
+    private TestStringMessage message;
+
+    @Setup
+    public void setup() throws IOException {
+        selector = Selector.open();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+            writer = channel("writer", client, false);
+            reader = channel("reader", accepted, true);
+        }
+        char[] chars = new char[messageSize];
+        Arrays.fill(chars, 'f');
+        message = new TestStringMessage(new String(chars));
+    }
+
+    private FufileSocketChannel channel(String nodeId, SocketChannel socketChannel, boolean toClient) throws IOException {
+        socketChannel.configureBlocking(false);
+        socketChannel.socket().setTcpNoDelay(true);
+        FufileSocketChannel channel = new FufileSocketChannel(nodeId, socketChannel, toClient);
+        channel.attachBufferPool(new BufferPool(direct, 1024 * 1024, 64));
+        channel.sendQueueSize(BATCH);
+        channel.register(selector, SelectionKey.OP_READ);
+        return channel;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        reader.close();
+        selector.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int roundTrip() throws IOException {
+        for (int i = 0; i < BATCH; i++) {
+            writer.send(new Sender(message));
+        }
+        int received = 0;
+        while (received < BATCH) {
+            if (writer.queuedSends() > 0) {
+                writer.write();
+            }
+            if (reader.read()) {
+                received += reader.receivers().size();
+                reader.completeReceive();
+            }
+        }
+        return received;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.persistence.SnapshotWriter;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.FrozenTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of creating and removing a file in a tree of <tt>nodes</tt> files,
+ * with <tt>snapshot=online</tt> a background thread writes block snapshots of frozen views back to back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class OnlineSnapshotBenchmark {
+
+    @Param({"1000000"})
+    int nodes;
+
+    @Param({"none", "online"})
+    String snapshot;
+
+    private FileTree fileTree;
+    private Path file;
+    private Thread snapshotter;
+    private volatile boolean running = true;
+    private volatile long snapshots = 0;
+    private long created = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        fileTree = new FileTree();
+        for (int i = 0; i < nodes; i++) {
+            fileTree.createFileOrDirNode("/data/dir-" + (i / 100000) + "/dir-" + (i / 1000) + "/file-" + i, true);
+        }
+        file = Files.createTempFile("fufile", ".snap");
+        if ("online".equals(snapshot)) {
+            snapshotter = new Thread(() -> {
+                SnapshotWriter snapshotWriter = new SnapshotWriter();
+                while (running) {
+                    try (FrozenTree frozenTree = fileTree.freeze(snapshots)) {
+                        snapshotWriter.write(frozenTree, file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    snapshots++;
+                }
+            }, "snapshotter");
+            snapshotter.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        running = false;
+        if (snapshotter != null) {
+            snapshotter.join();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void createRemove() {
+        int dir = ThreadLocalRandom.current().nextInt(nodes / 1000);
+        String path = "/data/dir-" + (dir / 100) + "/dir-" + dir + "/new-" + created++;
+        fileTree.createFileOrDirNode(path, true);
+        fileTree.removeFileOrDirNode(path, true);
+    }
+}
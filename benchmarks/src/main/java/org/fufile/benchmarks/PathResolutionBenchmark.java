@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.tree.ChildIndex;
+import org.fufile.tree.DirNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving paths of <tt>depth</tt> names in a {@link FileTree},
+ * the iterative resolver of the tree against the previous split based walk.
+ * Run with <tt>-prof gc</tt> to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PathResolutionBenchmark {
+
+    private static final int FILES = 100000;
+
+    @Param({"3", "8"})
+    int depth;
+
+    private FileTree fileTree;
+    private TreeNode root;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        fileTree = new FileTree();
+        paths = new String[FILES];
+        for (int i = 0; i < FILES; i++) {
+            StringBuilder path = new StringBuilder();
+            for (int level = 1; level < depth; level++) {
+                path.append("/level-").append(level).append('-').append(i % (level * 7));
+            }
+            paths[i] = path.append("/file-").append(i).toString();
+            fileTree.createFileOrDirNode(paths[i], true);
+        }
+        root = fileTree.getFileOrDirNode(paths[0], true);
+        while (root.getParentNode() != null) {
+            root = root.getParentNode();
+        }
+    }
+
+    @Benchmark
+    public TreeNode cursor() {
+        return fileTree.getFileOrDirNode(paths[ThreadLocalRandom.current().nextInt(FILES)], true);
+    }
+
+    @Benchmark
+    public TreeNode split() {
+        return splitResolve(paths[ThreadLocalRandom.current().nextInt(FILES)], true);
+    }
+
+    /**
+     * The walk the tree used before, one substring per name plus the array and the regex of split.
+     */
+    private TreeNode splitResolve(String path, boolean isFile) {
+        String[] names = path.split("/");
+        TreeNode presentNode = root;
+        for (int i = 1; i < names.length; i++) {
+            ChildIndex children = ((DirNode) presentNode).getChildren();
+            presentNode = children == null ? null : children.get(names[i], i == names.length - 1 & isFile);
+            if (presentNode == null) {
+                return null;
+            }
+        }
+        return presentNode;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.raft.LogRecord;
+import org.fufile.raft.SegmentedRaftLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Appending entries of <tt>dataSize</tt> bytes to a {@link SegmentedRaftLog}, and reading single entries
+ * and batches of 64KB from random indexes of a log of <tt>entries</tt> entries, like a follower catching up.
+ * The appends are not forced, a leader forces once per batch it replicates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RaftLogBenchmark {
+
+    @Param({"32", "128"})
+    int dataSize;
+
+    @Param({"1000000"})
+    int entries;
+
+    private Path dir;
+    private SegmentedRaftLog raftLog;
+    private byte[] data;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fufile-raft-log");
+        raftLog = new SegmentedRaftLog(dir, 64 * 1024 * 1024);
+        data = new byte[dataSize];
+        ThreadLocalRandom.current().nextBytes(data);
+        for (int i = 0; i < entries; i++) {
+            raftLog.append(1, data);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        raftLog.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return raftLog.append(2, data);
+    }
+
+    @Benchmark
+    public LogRecord get() {
+        return raftLog.get(1 + ThreadLocalRandom.current().nextInt(entries));
+    }
+
+    @Benchmark
+    public ByteBuffer read() {
+        return raftLog.read(1 + ThreadLocalRandom.current().nextInt(entries), 64 * 1024);
+    }
+}
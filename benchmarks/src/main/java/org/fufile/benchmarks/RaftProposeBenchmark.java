@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.raft.MembershipState;
+import org.fufile.raft.RaftSystem;
+import org.fufile.raft.SegmentedRaftLog;
+import org.fufile.utils.HashedTimerWheel;
+import org.fufile.utils.TimerTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.fufile.config.ConfigKeys.RAFT_PROPOSE_MAX_BATCH;
+import static org.fufile.config.ConfigKeys.RAFT_PROPOSE_MAX_WAIT_MS;
+
+/**
+ * 64 clients proposing entries of 128 bytes to a single-node raft group and waiting for each to commit.
+ * A <tt>maxBatch</tt> of 1 flushes the log for every proposal.
+ * The raft thread advances a timer wheel of 1ms ticks and runs the expired tasks, like a socket handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(64)
+public class RaftProposeBenchmark {
+
+    @Param({"1", "256"})
+    int maxBatch;
+
+    @Param({"1"})
+    long maxWaitMs;
+
+    private Path dir;
+    private SegmentedRaftLog raftLog;
+    private RaftSystem system;
+    private Thread raftThread;
+    private volatile boolean running = true;
+    private final byte[] data = new byte[128];
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fufile-raft-propose");
+        raftLog = new SegmentedRaftLog(dir, 64 * 1024 * 1024);
+        Properties properties = new Properties();
+        properties.setProperty(RAFT_PROPOSE_MAX_BATCH, String.valueOf(maxBatch));
+        properties.setProperty(RAFT_PROPOSE_MAX_WAIT_MS, String.valueOf(maxWaitMs));
+        ConcurrentLinkedQueue<TimerTask> expiredTasks = new ConcurrentLinkedQueue<>();
+        HashedTimerWheel timerWheel = new HashedTimerWheel(1, 64, expiredTasks);
+        // the election timeout scheduled before the node leads is dropped
+        boolean[] leading = new boolean[1];
+        system = new RaftSystem(new FufileConfig(properties), raftLog, null, new HashMap<>(), task -> {
+            if (leading[0]) {
+                timerWheel.schedule(task);
+            }
+        });
+        system.transitionTo(MembershipState.LEADER_STATE, false);
+        leading[0] = true;
+        raftThread = new Thread(() -> {
+            while (running) {
+                timerWheel.advance(System.currentTimeMillis());
+                for (TimerTask task = expiredTasks.poll(); task != null; task = expiredTasks.poll()) {
+                    task.run();
+                }
+                LockSupport.parkNanos(100_000);
+            }
+        }, "raft");
+        raftThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        running = false;
+        raftThread.join();
+        raftLog.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long propose() {
+        return system.propose(data).join();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.persistence.CheckpointManager;
+import org.fufile.persistence.Durability;
+import org.fufile.persistence.FileLog;
+import org.fufile.tree.FileTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restarting from a history of <tt>records</tt> changes, the last <tt>tail</tt> of them after the checkpoint.
+ * With <tt>tail</tt> equal to <tt>records</tt> there is no checkpoint and the whole log is replayed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RecoveryBenchmark {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    @Param({"1000000"})
+    int records;
+
+    @Param({"1000000", "10000"})
+    int tail;
+
+    private Path dir;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fufile-recovery");
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), new FileTree(), fileLog, 0)) {
+            for (int i = 0; i < records; i++) {
+                if (i > 0 && i == records - tail) {
+                    checkpointManager.checkpoint();
+                }
+                checkpointManager.createFileOrDirNode("/data/dir-" + (i / 1000) + "/file-" + i, true, Durability.NONE);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public FileTree restart() throws IOException {
+        FileTree fileTree = new FileTree();
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), fileTree, fileLog, 0)) {
+            checkpointManager.recover();
+        }
+        return fileTree;
+    }
+}
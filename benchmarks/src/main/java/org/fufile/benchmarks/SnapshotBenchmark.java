@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.persistence.Snapshot;
+import org.fufile.persistence.SnapshotWriter;
+import org.fufile.tree.FileTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a snapshot of a {@link FileTree} with <tt>nodes</tt> files:
+ * the path records through an unbuffered stream as before, the same records buffered,
+ * and the checksummed block format encoded on the common pool.
+ * 100M nodes need a heap of about 24GB, run with <tt>-p nodes=100000000 -jvmArgsAppend -Xmx24g</tt>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotBenchmark {
+
+    @Param({"1000000"})
+    int nodes;
+
+    private FileTree fileTree;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        fileTree = new FileTree();
+        for (int i = 0; i < nodes; i++) {
+            int dir = i / 1000;
+            fileTree.createFileOrDirNode("/data/dir-" + (dir / 100) + "/dir-" + dir + "/file-" + i, true);
+        }
+        file = Files.createTempFile("fufile", ".snap");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void unbuffered() throws IOException {
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new FileOutputStream(file.toFile()))) {
+            fileTree.clusterSerialize(dataOutputStream);
+        }
+    }
+
+    @Benchmark
+    public void buffered() throws IOException {
+        new Snapshot(file.toString(), fileTree).createClusterSnapshot();
+    }
+
+    @Benchmark
+    public long blocks() throws IOException {
+        return new SnapshotWriter().write(fileTree, file);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.persistence.Snapshot;
+import org.fufile.persistence.SnapshotLoader;
+import org.fufile.persistence.SnapshotReader;
+import org.fufile.persistence.SnapshotWriter;
+import org.fufile.tree.FileTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a snapshot of <tt>nodes</tt> files <tt>depth</tt> levels deep into an empty {@link FileTree}:
+ * replaying the path records of the legacy format, replaying the paths of a block snapshot,
+ * and bulk loading the block snapshot in one thread and on the common pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotLoadBenchmark {
+
+    @Param({"1000000"})
+    int nodes;
+
+    @Param({"3", "8"})
+    int depth;
+
+    private Path legacyFile;
+    private Path blockFile;
+
+    @Setup
+    public void setup() throws IOException {
+        FileTree fileTree = new FileTree();
+        for (int i = 0; i < nodes; i++) {
+            StringBuilder path = new StringBuilder();
+            int dir = i / 1000;
+            for (int level = depth - 2; level >= 0; level--) {
+                path.append("/dir-").append(dir >> (4 * level));
+            }
+            fileTree.createFileOrDirNode(path.append("/file-").append(i).toString(), true);
+        }
+        legacyFile = Files.createTempFile("fufile", ".snap");
+        blockFile = Files.createTempFile("fufile", ".snap");
+        new Snapshot(legacyFile.toString(), fileTree).createClusterSnapshot();
+        new SnapshotWriter().write(fileTree, blockFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(legacyFile);
+        Files.deleteIfExists(blockFile);
+    }
+
+    @Benchmark
+    public FileTree legacy() throws IOException {
+        FileTree fileTree = new FileTree();
+        new Snapshot(legacyFile.toString(), fileTree).readSnapshot();
+        return fileTree;
+    }
+
+    @Benchmark
+    public FileTree reader() throws IOException {
+        FileTree fileTree = new FileTree();
+        new SnapshotReader().read(blockFile, fileTree);
+        return fileTree;
+    }
+
+    @Benchmark
+    public FileTree loader() throws IOException {
+        FileTree fileTree = new FileTree();
+        new SnapshotLoader().load(blockFile, fileTree);
+        return fileTree;
+    }
+
+    @Benchmark
+    public FileTree parallelLoader() throws IOException {
+        FileTree fileTree = new FileTree();
+        new SnapshotLoader(ForkJoinPool.commonPool()).load(blockFile, fileTree);
+        return fileTree;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.benchmarks;
+
+import org.fufile.utils.HashedTimerWheel;
+import org.fufile.utils.TimerTask;
+import org.fufile.utils.TimerWheelUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling, cancelling and expiring timers, the legacy {@link TimerWheelUtil} against {@link HashedTimerWheel}.
+ * The hashed wheel is advanced by the benchmark thread as it is in the reactor timer mode,
+ * <tt>outstanding</tt> timers with far deadlines stay in the wheel while measuring.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TimerBenchmark {
+
+    private static final int EXPIRE_BATCH = 10000;
+
+    @State(Scope.Benchmark)
+    public static class LegacyWheel {
+
+        TimerWheelUtil timerWheelUtil;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            timerWheelUtil = new TimerWheelUtil(10, 60, 100, new DiscardingQueue());
+            Thread thread = new Thread(timerWheelUtil, "benchmark-timer-wheel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Wheel {
+
+        @Param({"0", "1000000"})
+        int outstanding;
+
+        HashedTimerWheel wheel;
+        Queue<TimerTask> expired = new ArrayDeque<>();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            wheel = new HashedTimerWheel(10, 64, 4, expired);
+            for (int i = 0; i < outstanding; i++) {
+                // between one and two hours, none of them expires during the trial
+                wheel.schedule(new NoopTask(TimeUnit.HOURS.toMillis(1) + ThreadLocalRandom.current().nextInt(3600000)));
+            }
+            wheel.advance(System.currentTimeMillis());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExpiringWheel {
+
+        HashedTimerWheel wheel;
+        long deadline;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            wheel = new HashedTimerWheel(10, 64, 4, new DiscardingQueue());
+            for (int i = 0; i < EXPIRE_BATCH; i++) {
+                wheel.schedule(new NoopTask(ThreadLocalRandom.current().nextInt(60000)));
+            }
+            deadline = System.currentTimeMillis() + 60000 + 10;
+        }
+    }
+
+    @Benchmark
+    public void legacySchedule(LegacyWheel state) {
+        state.timerWheelUtil.schedule(new NoopTask(ThreadLocalRandom.current().nextInt(30000)));
+    }
+
+    /**
+     * A heartbeat timeout that is cancelled before it fires, which is what most handler timers do.
+     */
+    @Benchmark
+    public long scheduleCancel(Wheel state) {
+        NoopTask task = new NoopTask(10000);
+        state.wheel.schedule(task);
+        state.wheel.advance(System.currentTimeMillis());
+        task.cancel();
+        return state.wheel.pending();
+    }
+
+    @Benchmark
+    public TimerTask scheduleExpire(Wheel state) {
+        state.wheel.schedule(new NoopTask(0));
+        state.wheel.advance(System.currentTimeMillis());
+        return state.expired.poll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EXPIRE_BATCH)
+    public int expire(ExpiringWheel state) {
+        return state.wheel.advance(state.deadline);
+    }
+
+    static class NoopTask extends TimerTask {
+
+        NoopTask(long delayMs) {
+            super(delayMs);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    static class DiscardingQueue extends AbstractQueue<TimerTask> {
+
+        @Override
+        public boolean offer(TimerTask task) {
+            return true;
+        }
+
+        @Override
+        public TimerTask poll() {
+            return null;
+        }
+
+        @Override
+        public TimerTask peek() {
+            return null;
+        }
+
+        @Override
+        public Iterator<TimerTask> iterator() {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
 import org.fufile.transfer.LeaderSyncRequestMessage;
 import org.fufile.transfer.LeaderSyncResponseMessage;
+import org.fufile.transfer.ReadIndexRequestMessage;
+import org.fufile.transfer.ReadIndexResponseMessage;
 import org.fufile.transfer.TestStringMessage;
 import org.fufile.transfer.VoteRequestMessage;
 import org.fufile.transfer.VoteResponseMessage;
@@ -48,7 +50,9 @@ public enum ApiNames {
     LEADER_SYNC((short) 3, "leader sync",
             LeaderSyncRequestMessage::new, LeaderSyncResponseMessage::new),
     APPEND((short) 4, "append",
-            AppendRequestMessage::new, AppendResponseMessage::new);
+            AppendRequestMessage::new, AppendResponseMessage::new),
+    READ_INDEX((short) 5, "read index",
+            ReadIndexRequestMessage::new, ReadIndexResponseMessage::new);
 
 
     public final short id;
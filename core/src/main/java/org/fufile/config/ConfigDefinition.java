@@ -16,9 +16,78 @@
 
 package org.fufile.config;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 public enum ConfigDefinition {
-    HEARTBEAT_INTERVAL(ConfigKeys.HEARTBEAT_INTERVAL, Type.LONG, 2000, ""),
-    HEARTBEAT_TIMEOUT(ConfigKeys.HEARTBEAT_TIMEOUT, Type.LONG, 10000, "");
+    HEARTBEAT_INTERVAL(ConfigKeys.HEARTBEAT_INTERVAL, Type.LONG, 2000L, ""),
+    HEARTBEAT_TIMEOUT(ConfigKeys.HEARTBEAT_TIMEOUT, Type.LONG, 10000L, ""),
+    BUFFER_POOL_DIRECT(ConfigKeys.BUFFER_POOL_DIRECT, Type.BOOLEAN, false,
+            "Whether the socket handler pools direct buffers instead of heap buffers."),
+    BUFFER_POOL_MAX_POOLED_SIZE(ConfigKeys.BUFFER_POOL_MAX_POOLED_SIZE, Type.INT, 1024 * 1024,
+            "Frames larger than this are allocated on demand and never pooled."),
+    BUFFER_POOL_MAX_BUFFERS_PER_CLASS(ConfigKeys.BUFFER_POOL_MAX_BUFFERS_PER_CLASS, Type.INT, 64,
+            "The maximum number of free buffers retained for each size class."),
+    SEND_QUEUE_SIZE(ConfigKeys.SEND_QUEUE_SIZE, Type.INT, 64,
+            "The maximum number of messages queued on a channel before sends are rejected."),
+    RECEIVE_BUFFER_SIZE(ConfigKeys.RECEIVE_BUFFER_SIZE, Type.INT, 64 * 1024,
+            "The size of the buffer that frames are accumulated and decoded in, per channel."),
+    IDLE_STRATEGY(ConfigKeys.IDLE_STRATEGY, Type.STRING, "blocking",
+            "How an idle socket handler waits: busy-spin, spin-yield or blocking."),
+    IDLE_MAX_BLOCK_MS(ConfigKeys.IDLE_MAX_BLOCK_MS, Type.LONG, 500L,
+            "The maximum time the blocking idle strategy blocks in select."),
+    ASSIGNMENT_POLICY(ConfigKeys.ASSIGNMENT_POLICY, Type.STRING, "round-robin",
+            "How accepted connections are spread over the socket handlers: "
+                    + "round-robin, least-connections, least-recent-bytes or consistent-hash."),
+    REBALANCE_INTERVAL_MS(ConfigKeys.REBALANCE_INTERVAL_MS, Type.LONG, 10000L,
+            "How often the assignment policy may move a channel between socket handlers, 0 disables rebalancing."),
+    ACCEPT_BATCH_SIZE(ConfigKeys.ACCEPT_BATCH_SIZE, Type.INT, 64,
+            "The maximum number of connections the acceptor accepts per select."),
+    TIMER_MODE(ConfigKeys.TIMER_MODE, Type.STRING, "reactor",
+            "thread runs the timer wheel of a socket handler in its own thread, "
+                    + "reactor advances it in the handler loop and bounds the select timeout by the next deadline."),
+    TIMER_TICK_MS(ConfigKeys.TIMER_TICK_MS, Type.LONG, 10L,
+            "The tick of the lowest timer wheel level, timers fire at most one tick late."),
+    TIMER_WHEEL_SIZE(ConfigKeys.TIMER_WHEEL_SIZE, Type.INT, 64,
+            "The number of buckets per timer wheel level, rounded up to a power of two."),
+    TIMER_WHEEL_LEVELS(ConfigKeys.TIMER_WHEEL_LEVELS, Type.INT, 4,
+            "The number of timer wheel levels, each level spans timer.wheel.size times the level below."),
+    FILE_LOG_SEGMENT_SIZE(ConfigKeys.FILE_LOG_SEGMENT_SIZE, Type.LONG, 64L * 1024 * 1024,
+            "The size the edit log segments are preallocated to, a full segment is rolled to the next one."),
+    FILE_LOG_DURABILITY(ConfigKeys.FILE_LOG_DURABILITY, Type.STRING, "sync",
+            "The durability of edit log appends that do not give their own: none, write or sync."),
+    CHECKPOINT_INTERVAL_MS(ConfigKeys.CHECKPOINT_INTERVAL_MS, Type.LONG, 60000L,
+            "How often a checkpoint of the tree is written if the edit log has grown, "
+                    + "it bounds the log a restart has to replay."),
+    RAFT_LOG_SEGMENT_SIZE(ConfigKeys.RAFT_LOG_SEGMENT_SIZE, Type.INT, 64 * 1024 * 1024,
+            "The size of the memory-mapped raft log segments, an entry must fit in one segment."),
+    RAFT_MEMBERSHIP_SIZE(ConfigKeys.RAFT_MEMBERSHIP_SIZE, Type.INT, 1,
+            "The number of voting members of the raft group, an entry is committed once a majority of them store it."),
+    RAFT_APPEND_MAX_BYTES(ConfigKeys.RAFT_APPEND_MAX_BYTES, Type.INT, 1024 * 1024,
+            "The maximum size of the entries sent to a follower in one append request."),
+    RAFT_APPEND_MAX_IN_FLIGHT(ConfigKeys.RAFT_APPEND_MAX_IN_FLIGHT, Type.INT, 8,
+            "The number of append requests sent to a follower before the first of them is answered, "
+                    + "1 disables pipelining."),
+    RAFT_APPEND_TIMEOUT_MS(ConfigKeys.RAFT_APPEND_TIMEOUT_MS, Type.LONG, 1000L,
+            "How long the oldest append request to a follower may go unanswered before the leader probes the follower again."),
+    RAFT_PROPOSE_MAX_BATCH(ConfigKeys.RAFT_PROPOSE_MAX_BATCH, Type.INT, 256,
+            "The maximum number of proposals appended with one flush of the raft log, "
+                    + "a full batch is appended without waiting."),
+    RAFT_PROPOSE_MAX_WAIT_MS(ConfigKeys.RAFT_PROPOSE_MAX_WAIT_MS, Type.LONG, 2L,
+            "How long a proposal may wait for others to share its flush, 0 appends it on the next timer tick."),
+    RAFT_APPLY_THREADS(ConfigKeys.RAFT_APPLY_THREADS, Type.INT, 4,
+            "The number of threads committed entries of different apply keys are applied by in parallel."),
+    RAFT_READ_LEASE(ConfigKeys.RAFT_READ_LEASE, Type.BOOLEAN, false,
+            "Whether the leader serves read indexes without a round of append requests while a majority has "
+                    + "acknowledged it within the heartbeat interval, this relies on bounded clock drift."),
+    RAFT_READ_TIMEOUT_MS(ConfigKeys.RAFT_READ_TIMEOUT_MS, Type.LONG, 5000L,
+            "How long a read waits for its read index before it fails, a follower also fails it once the connection "
+                    + "to the leader is closed.");
+
+    private static final Map<String, ConfigDefinition> DEFINITION_MAP = Arrays.stream(ConfigDefinition.values())
+            .collect(Collectors.toMap(definition -> definition.name, definition -> definition));
 
     public final String name;
     public final Type type;
@@ -32,11 +101,25 @@ public enum ConfigDefinition {
         this.doc = doc;
     }
 
+    public static ConfigDefinition getDefinition(String name) {
+        return DEFINITION_MAP.get(name);
+    }
+
     enum Type {
-        INT,
-        LONG,
-        STRING,
-        LIST;
+        INT(Integer::valueOf),
+        LONG(Long::valueOf),
+        BOOLEAN(Boolean::valueOf),
+        STRING(value -> value),
+        LIST(value -> Arrays.asList(value.split(",")));
+
+        private final Function<String, Object> parser;
+
+        Type(Function<String, Object> parser) {
+            this.parser = parser;
+        }
 
+        Object parse(String value) {
+            return parser.apply(value.trim());
+        }
     }
 }
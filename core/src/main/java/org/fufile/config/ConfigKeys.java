@@ -20,5 +20,32 @@ public class ConfigKeys {
 
     public static final String HEARTBEAT_INTERVAL = "heartbeat.interval.ms";
     public static final String HEARTBEAT_TIMEOUT = "heartbeat.timeout.ms";
+    public static final String BUFFER_POOL_DIRECT = "socket.buffer.pool.direct";
+    public static final String BUFFER_POOL_MAX_POOLED_SIZE = "socket.buffer.pool.max.pooled.size";
+    public static final String BUFFER_POOL_MAX_BUFFERS_PER_CLASS = "socket.buffer.pool.max.buffers.per.class";
+    public static final String SEND_QUEUE_SIZE = "socket.send.queue.size";
+    public static final String RECEIVE_BUFFER_SIZE = "socket.receive.buffer.size";
+    public static final String IDLE_STRATEGY = "socket.idle.strategy";
+    public static final String IDLE_MAX_BLOCK_MS = "socket.idle.max.block.ms";
+    public static final String ASSIGNMENT_POLICY = "socket.assignment.policy";
+    public static final String REBALANCE_INTERVAL_MS = "socket.rebalance.interval.ms";
+    public static final String ACCEPT_BATCH_SIZE = "socket.accept.batch.size";
+    public static final String TIMER_MODE = "timer.mode";
+    public static final String TIMER_TICK_MS = "timer.tick.ms";
+    public static final String TIMER_WHEEL_SIZE = "timer.wheel.size";
+    public static final String TIMER_WHEEL_LEVELS = "timer.wheel.levels";
+    public static final String FILE_LOG_SEGMENT_SIZE = "file.log.segment.size";
+    public static final String FILE_LOG_DURABILITY = "file.log.durability";
+    public static final String CHECKPOINT_INTERVAL_MS = "checkpoint.interval.ms";
+    public static final String RAFT_LOG_SEGMENT_SIZE = "raft.log.segment.size";
+    public static final String RAFT_MEMBERSHIP_SIZE = "raft.membership.size";
+    public static final String RAFT_APPEND_MAX_BYTES = "raft.append.max.bytes";
+    public static final String RAFT_APPEND_MAX_IN_FLIGHT = "raft.append.max.in.flight";
+    public static final String RAFT_APPEND_TIMEOUT_MS = "raft.append.timeout.ms";
+    public static final String RAFT_PROPOSE_MAX_BATCH = "raft.propose.max.batch";
+    public static final String RAFT_PROPOSE_MAX_WAIT_MS = "raft.propose.max.wait.ms";
+    public static final String RAFT_APPLY_THREADS = "raft.apply.threads";
+    public static final String RAFT_READ_LEASE = "raft.read.lease";
+    public static final String RAFT_READ_TIMEOUT_MS = "raft.read.timeout.ms";
 
 }
@@ -33,21 +33,43 @@ public class FufileConfig {
 
 
         if (value != null) {
-            configs.put(configDefinition.name, value);
+            configs.put(configDefinition.name, configDefinition.type.parse(value));
         }
 
         return this;
     }
 
     public Integer getInt(String key) {
-        return (Integer) configs.get(key);
+        Object value = get(key);
+        return value == null ? null : ((Number) value).intValue();
     }
 
     public String getString(String key) {
-        return (String) configs.get(key);
+        Object value = get(key);
+        return value == null ? null : value.toString();
     }
 
     public Long getLong(String key) {
-        return (Long) configs.get(key);
+        Object value = get(key);
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    public Boolean getBoolean(String key) {
+        return (Boolean) get(key);
+    }
+
+    /**
+     * Values that were not configured explicitly fall back to the default of their {@link ConfigDefinition}.
+     */
+    private Object get(String key) {
+        Object value = configs.get(key);
+        if (value == null) {
+            ConfigDefinition configDefinition = ConfigDefinition.getDefinition(key);
+            if (configDefinition != null) {
+                config(configDefinition);
+                value = configs.getOrDefault(key, configDefinition.defaultValue);
+            }
+        }
+        return value;
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Blocks in select when the last loop was idle.
+ * Threads handing work to the handler call {@link FufileSelector#wakeup()}, so the block time only bounds
+ * how late work that nobody signals is noticed.
+ */
+public class BlockingIdleStrategy implements IdleStrategy {
+
+    private final long maxBlockMs;
+
+    public BlockingIdleStrategy(long maxBlockMs) {
+        this.maxBlockMs = maxBlockMs;
+    }
+
+    @Override
+    public long idle(int workCount) {
+        return workCount > 0 ? 0 : maxBlockMs;
+    }
+}
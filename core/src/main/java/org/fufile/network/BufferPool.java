@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A size-classed pool of receive buffers.
+ * Size classes are powers of two from {@link #MIN_CLASS_SIZE} up to the max pooled size,
+ * a request is served by the smallest class that fits it and the returned buffer is limited to the requested size.
+ * Larger requests are allocated on the heap on demand and are dropped when released.
+ * Each {@link SocketHandler} owns one pool, so the pool is not thread-safe,
+ * only the counters may be read from other threads.
+ */
+public class BufferPool {
+
+    public static final int MIN_CLASS_SIZE = 64;
+
+    private final boolean direct;
+    private final int maxPooledSize;
+    private final int maxBuffersPerClass;
+    private final ArrayDeque<ByteBuffer>[] freeLists;
+    private volatile long hits = 0;
+    private volatile long misses = 0;
+    private volatile int outstanding = 0;
+
+    public BufferPool(boolean direct, int maxPooledSize, int maxBuffersPerClass) {
+        if (maxPooledSize < MIN_CLASS_SIZE) {
+            throw new IllegalArgumentException("The max pooled size must not be less than " + MIN_CLASS_SIZE + ".");
+        }
+        this.direct = direct;
+        this.maxPooledSize = roundUpToPowerOfTwo(maxPooledSize);
+        this.maxBuffersPerClass = maxBuffersPerClass;
+        int classNum = sizeClass(this.maxPooledSize) + 1;
+        // a generic array cannot be created, every element is set to an ArrayDeque<ByteBuffer> below
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        ArrayDeque<ByteBuffer>[] freeLists = new ArrayDeque[classNum];
+        for (int i = 0; i < classNum; i++) {
+            freeLists[i] = new ArrayDeque<>();
+        }
+        this.freeLists = freeLists;
+    }
+
+    /**
+     * Returns a cleared buffer whose limit is the requested size.
+     */
+    public ByteBuffer allocate(int size) {
+        outstanding++;
+        if (size > maxPooledSize) {
+            misses++;
+            return ByteBuffer.allocate(size);
+        }
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = freeLists[sizeClass].pollFirst();
+        if (buffer == null) {
+            misses++;
+            int capacity = MIN_CLASS_SIZE << sizeClass;
+            buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        } else {
+            hits++;
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer obtained from {@link #allocate} back to the pool, the buffer must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        outstanding--;
+        int capacity = buffer.capacity();
+        if (capacity > maxPooledSize || buffer.isDirect() != direct) {
+            return;
+        }
+        ArrayDeque<ByteBuffer> freeList = freeLists[sizeClass(capacity)];
+        if (freeList.size() < maxBuffersPerClass) {
+            buffer.clear();
+            freeList.offerFirst(buffer);
+        }
+    }
+
+    /**
+     * Accounts a buffer allocated by another pool as outstanding in this pool, used when a channel migrates.
+     */
+    public void adopt(ByteBuffer buffer) {
+        outstanding++;
+    }
+
+    /**
+     * Stops accounting an outstanding buffer that is handed to another pool.
+     */
+    public void forget(ByteBuffer buffer) {
+        outstanding--;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public double hitRate() {
+        long hits = this.hits;
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The number of buffers that have been allocated but not yet released.
+     */
+    public int outstanding() {
+        return outstanding;
+    }
+
+    public boolean direct() {
+        return direct;
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= MIN_CLASS_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    }
+
+    private static int roundUpToPowerOfTwo(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+}
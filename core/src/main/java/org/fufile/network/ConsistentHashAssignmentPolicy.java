@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hands connections with the same key to the same handler, using a hash ring with virtual nodes
+ * so that the keys spread evenly over the handlers.
+ */
+public class ConsistentHashAssignmentPolicy implements HandlerAssignmentPolicy {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+    private int handlerNum = 0;
+
+    @Override
+    public int assign(String key, SocketHandler[] handlers) {
+        if (handlerNum != handlers.length) {
+            buildRing(handlers.length);
+        }
+        Map.Entry<Integer, Integer> entry = ring.ceilingEntry(hash(key));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    private void buildRing(int handlerNum) {
+        ring.clear();
+        for (int i = 0; i < handlerNum; i++) {
+            for (int j = 0; j < VIRTUAL_NODES; j++) {
+                ring.put(hash("handler-" + i + "-" + j), i);
+            }
+        }
+        this.handlerNum = handlerNum;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes followed by a finalizer, String.hashCode spreads similar keys poorly.
+     */
+    static int hash(String key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -50,6 +50,17 @@ public abstract class FufileChannel {
         selectionKey.interestOps(selectionKey.interestOps() | ops);
     }
 
+    /**
+     * Cancels the registration with the current selector without closing the channel.
+     */
+    public void deregister() {
+        selectionKey.cancel();
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
     public void close() throws IOException {
         selectionKey.cancel();
         channel.close();
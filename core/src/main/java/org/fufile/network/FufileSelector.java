@@ -26,6 +26,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Use JDK selector to poll and handle network I/O events.
@@ -35,6 +36,7 @@ public abstract class FufileSelector {
     private final static Logger logger = LoggerFactory.getLogger(FufileSelector.class);
 
     protected final Selector selector;
+    private final AtomicBoolean wakenUp = new AtomicBoolean(false);
 
     public FufileSelector() {
         try {
@@ -44,14 +46,44 @@ public abstract class FufileSelector {
         }
     }
 
-    public void pool(long timeout) throws IOException {
+    /**
+     * @param timeout If positive, block for up to <tt>timeout</tt> milliseconds unless {@link #wakeup()} is called
+     *                or {@link #hasPendingWork()}, otherwise select without blocking.
+     * @return the number of selected keys
+     */
+    public int pool(long timeout) throws IOException {
+        int selected;
         if (timeout <= 0) {
-            selector.selectNow();
+            selected = selector.selectNow();
         } else {
-            selector.select(timeout);
+            wakenUp.set(false);
+            // work handed over before the flag was reset would not wake us up
+            if (hasPendingWork()) {
+                selected = selector.selectNow();
+            } else {
+                selected = selector.select(timeout);
+            }
         }
         Set<SelectionKey> selectionKeys = selector.selectedKeys();
         pollSelectionKeys(selectionKeys);
+        return selected;
+    }
+
+    /**
+     * Wakes up a blocking {@link #pool}, it is called by other threads handing work to this selector.
+     * The selector is woken up at most once per blocking select.
+     */
+    public void wakeup() {
+        if (wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Whether work has been handed to this selector by other threads, checked before blocking.
+     */
+    protected boolean hasPendingWork() {
+        return false;
     }
 
     public void closeSelector() {
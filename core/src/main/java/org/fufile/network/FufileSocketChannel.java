@@ -17,8 +17,6 @@
 package org.fufile.network;
 
 import org.fufile.errors.IllegalNetDataException;
-import org.fufile.utils.TimerTask;
-import org.fufile.utils.TimerWheelUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,108 +27,247 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Because Java NIO is LT model, this unfinished data will continue to be read after the next {@link FufileSelector#pool}.
- * The I/O thread reads at most one request at a time.
+ * Every read fills a receive buffer and decodes all complete length-prefixed frames in it,
+ * a trailing partial frame stays in the buffer until the next read.
+ * A frame that is larger than the receive buffer is read into a dedicated buffer of its own size.
+ * A frame size that is too small for the message header or larger than {@link #MAX_FRAME_SIZE} is illegal data.
  * If {@link SocketChannel#read(ByteBuffer)} return -1, this may indicate that the peer has closed the channel.
  * If the JVM is shut down on the other end, TCP will receive an RST package and all IO operations on the channel
  * will throw {@link IOException}.
+ * Outbound messages are queued per channel, and every writable event flushes as many queued frames as possible
+ * with one gathering {@link SocketChannel#write(ByteBuffer[], int, int)}.
  */
 public class FufileSocketChannel extends FufileChannel {
 
     private final static Logger logger = LoggerFactory.getLogger(FufileSocketChannel.class);
 
-    private final ByteBuffer size = ByteBuffer.allocate(4);
+    public static final int DEFAULT_SEND_QUEUE_SIZE = 64;
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_GATHERING_BUFFERS = 64;
+    private static final int SIZE_LENGTH = 4;
+    // short api, byte request or response
+    private static final int MIN_FRAME_SIZE = 3;
+    public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    private ByteBuffer receiveBuffer;
     private ByteBuffer payload;
-    private Sender sender;
-    private Receiver receiver;
+    private final ArrayDeque<Sender> sendQueue = new ArrayDeque<>();
+    private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_GATHERING_BUFFERS];
+    private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+    private int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+    private final List<Receiver> receivers = new ArrayList<>();
     private boolean confirmConnection = false;
     private boolean toClient;
-    private TimerWheelUtil timerWheelUtil;
+    private BufferPool bufferPool;
+    private long bytesTransferred = 0;
+    private long windowStartBytes = 0;
+    private long recentBytes = 0;
 
     public FufileSocketChannel(String nodeId, SelectableChannel socketChannel, boolean toClient) {
         super(nodeId, socketChannel);
         this.toClient = toClient;
     }
 
-    public void timerWheelUtil(TimerWheelUtil timerWheelUtil) {
-        this.timerWheelUtil = timerWheelUtil;
+    /**
+     * Attaches the buffer pool of the handler that owns this channel,
+     * buffers the channel already holds are accounted to the new pool.
+     */
+    public void attachBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        if (bufferPool != null) {
+            if (receiveBuffer != null) {
+                bufferPool.adopt(receiveBuffer);
+            }
+            if (payload != null) {
+                bufferPool.adopt(payload);
+            }
+        }
     }
 
     /**
-     * There are three scenarios for reading data.
-     * 1.size has remaining && requestBuffer has remaining.
-     * 2.size read full && requestBuffer has remaining.
-     * 3.size read full && requestBuffer read full.
+     * Detaches the channel from the pool of its current handler before the channel is migrated.
+     */
+    public void detachBufferPool() {
+        if (bufferPool != null) {
+            if (receiveBuffer != null) {
+                bufferPool.forget(receiveBuffer);
+            }
+            if (payload != null) {
+                bufferPool.forget(payload);
+            }
+            bufferPool = null;
+        }
+    }
+
+    public void sendQueueSize(int sendQueueSize) {
+        this.sendQueueSize = sendQueueSize;
+    }
+
+    public void receiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * Reads the available bytes and decodes every complete frame.
+     * @return true if at least one frame is waiting in {@link #receivers()}
      */
     public boolean read() throws IOException {
-        if (size.hasRemaining()) {
-            int readSize = channel().read(size);
+        if (payload != null) {
+            // continue reading a frame larger than the receive buffer
+            if (!readPayload()) {
+                return !receivers.isEmpty();
+            }
+        }
+        if (receiveBuffer == null) {
+            receiveBuffer = allocate(receiveBufferSize);
+        }
+        int readSize = channel().read(receiveBuffer);
+        if (readSize < 0) {
+            // opposite terminal close the channel
+            throw new EOFException();
+        }
+        bytesTransferred += readSize;
+        receiveBuffer.flip();
+        try {
+            decodeFrames();
+        } finally {
+            receiveBuffer.compact();
+        }
+        if (payload != null) {
+            readPayload();
+        }
+        return !receivers.isEmpty();
+    }
+
+    /**
+     * Splits out all complete frames from the receive buffer.
+     */
+    private void decodeFrames() throws IOException {
+        while (receiveBuffer.remaining() >= SIZE_LENGTH) {
+            int position = receiveBuffer.position();
+            int singleRequestSize = receiveBuffer.getInt(position);
+            if (singleRequestSize < MIN_FRAME_SIZE || singleRequestSize > MAX_FRAME_SIZE) {
+                throw new IllegalNetDataException("Illegal net data, size = " + singleRequestSize + ".");
+            }
+            // compared without adding to the position, which could overflow
+            if (singleRequestSize <= receiveBuffer.limit() - position - SIZE_LENGTH) {
+                int frameEnd = position + SIZE_LENGTH + singleRequestSize;
+                // complete frame
+                receiveBuffer.position(position + SIZE_LENGTH);
+                ByteBuffer frame = receiveBuffer.slice();
+                frame.limit(singleRequestSize);
+                receivers.add(new Receiver(frame));
+                receiveBuffer.position(frameEnd);
+            } else if (singleRequestSize > receiveBuffer.capacity() - SIZE_LENGTH) {
+                // the frame never fits the receive buffer, move its head into a dedicated buffer
+                receiveBuffer.position(position + SIZE_LENGTH);
+                payload = allocate(singleRequestSize);
+                payload.put(receiveBuffer);
+                return;
+            } else {
+                // partial frame
+                return;
+            }
+        }
+    }
+
+    private boolean readPayload() throws IOException {
+        if (payload.hasRemaining()) {
+            int readSize = channel().read(payload);
             if (readSize < 0) {
                 // opposite terminal close the channel
                 throw new EOFException();
             }
-            if (!size.hasRemaining()) {
-                // read full
-                size.flip();
-                int singleRequestSize = size.getInt();
-                if (singleRequestSize < 0) {
-                    throw new IllegalNetDataException("Illegal net data, size = " + singleRequestSize + ".");
-                }
-                payload = ByteBuffer.allocate(singleRequestSize);
-                return readRequestBytes();
+            bytesTransferred += readSize;
+            if (payload.hasRemaining()) {
+                return false;
             }
+        }
+        payload.flip();
+        try {
+            receivers.add(new Receiver(payload));
+        } finally {
+            // the receiver has decoded the message, so the buffer can be reused
+            release(payload);
+            payload = null;
+        }
+        return true;
+    }
+
+    /**
+     * Queues a message to be written on the next writable event.
+     * @return false if the send queue is full, the caller should back off and send it again later
+     */
+    public boolean send(Sender sender) {
+        if (sendQueue.size() >= sendQueueSize) {
             return false;
-        } else {
-            return readRequestBytes();
-        }
-    }
-
-    public void send(Sender sender) {
-        if (this.sender != null) {
-            // schedule in 200ms
-            timerWheelUtil.schedule(new TimerTask(0) {
-                @Override
-                public void run() {
-                    send(sender);
-                }
-            });
-        } else {
-            this.sender = sender;
+        }
+        sendQueue.offerLast(sender);
+        if (sendQueue.size() == 1) {
             addInterestOps(SelectionKey.OP_WRITE);
         }
+        return true;
     }
 
-
+    public int queuedSends() {
+        return sendQueue.size();
+    }
 
     public void register(Selector sel, int ops) throws IOException {
-        if (!channel.isRegistered()) {
+        // a migrated channel may still be registered with the selector of its previous handler
+        if (selectionKey == null || selectionKey.selector() != sel) {
             selectionKey = channel.register(sel, ops, this);
         }
     }
 
-    private boolean readRequestBytes() throws IOException {
-        int readSize = channel().read(payload);
-        if (readSize < 0) {
-            // opposite terminal close the channel
-            throw new EOFException();
+    private ByteBuffer allocate(int size) {
+        return bufferPool == null ? ByteBuffer.allocate(size) : bufferPool.allocate(size);
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
         }
-        if (!payload.hasRemaining()) {
-            // read full
-            payload.flip();
-            receiver = new Receiver(payload);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (payload != null) {
+            release(payload);
             payload = null;
-            size.clear();
-            return true;
         }
-        return false;
+        if (receiveBuffer != null) {
+            release(receiveBuffer);
+            receiveBuffer = null;
+        }
+        super.close();
     }
 
     public void write() throws IOException {
-        if (!sender.toWrite(channel())) {
+        int buffers = 0;
+        for (Sender sender : sendQueue) {
+            if (buffers == writeBuffers.length) {
+                break;
+            }
+            writeBuffers[buffers++] = sender.payload();
+        }
+        try {
+            bytesTransferred += channel().write(writeBuffers, 0, buffers);
+        } finally {
+            Arrays.fill(writeBuffers, 0, buffers, null);
+        }
+        while (!sendQueue.isEmpty() && !sendQueue.peekFirst().payload().hasRemaining()) {
+            sendQueue.pollFirst();
+        }
+        if (sendQueue.isEmpty()) {
             selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
-            sender = null;
         }
     }
 
@@ -155,13 +292,19 @@ public class FufileSocketChannel extends FufileChannel {
     }
 
     /**
-     * It can be obtained only once.
+     * The frames decoded by the last reads, in arrival order.
+     * Call {@link #completeReceive()} after handling them.
      */
-    public Receiver getReceiver() {
-        Receiver receiver = this.receiver;
-        this.receiver = null;
+    public List<Receiver> receivers() {
+        return receivers;
+    }
+
+    /**
+     * Discards the handled frames and resumes reading.
+     */
+    public void completeReceive() {
+        receivers.clear();
         interestOps(SelectionKey.OP_READ);
-        return receiver;
     }
 
     public boolean confirmConnection() {
@@ -175,4 +318,28 @@ public class FufileSocketChannel extends FufileChannel {
     public boolean toClient() {
         return toClient;
     }
+
+    /**
+     * Whether the peer has identified itself with a heartbeat.
+     */
+    public boolean connectionConfirmed() {
+        return confirmConnection;
+    }
+
+    /**
+     * Starts a new load window.
+     * @return the bytes read and written during the window that ended
+     */
+    public long rollLoadWindow() {
+        recentBytes = bytesTransferred - windowStartBytes;
+        windowStartBytes = bytesTransferred;
+        return recentBytes;
+    }
+
+    /**
+     * The bytes read and written during the last complete load window.
+     */
+    public long recentBytes() {
+        return recentBytes;
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Decides which {@link SocketHandler} serves a new connection, and optionally which handler should give
+ * a channel away when the load of the handlers drifts apart.
+ * Policies are called by the acceptor thread only, the load of the handlers is read from their published counters.
+ */
+public interface HandlerAssignmentPolicy {
+
+    String ROUND_ROBIN = "round-robin";
+    String LEAST_CONNECTIONS = "least-connections";
+    String LEAST_RECENT_BYTES = "least-recent-bytes";
+    String CONSISTENT_HASH = "consistent-hash";
+
+    /**
+     * @param key      the node id of the connection if it is known, otherwise the remote host
+     * @param handlers all handlers of the server
+     * @return the index of the handler to try first
+     */
+    int assign(String key, SocketHandler[] handlers);
+
+    /**
+     * Called periodically by the acceptor thread.
+     * @return the handlers to move a channel between, or null to leave the channels where they are
+     */
+    default Migration rebalance(SocketHandler[] handlers) {
+        return null;
+    }
+
+    static HandlerAssignmentPolicy of(String name) {
+        switch (name) {
+            case ROUND_ROBIN:
+                return new RoundRobinAssignmentPolicy();
+            case LEAST_CONNECTIONS:
+                return new LeastConnectionsAssignmentPolicy();
+            case LEAST_RECENT_BYTES:
+                return new LeastRecentBytesAssignmentPolicy();
+            case CONSISTENT_HASH:
+                return new ConsistentHashAssignmentPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown handler assignment policy " + name + ".");
+        }
+    }
+
+    class Migration {
+
+        public final SocketHandler from;
+        public final SocketHandler to;
+
+        public Migration(SocketHandler from, SocketHandler to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
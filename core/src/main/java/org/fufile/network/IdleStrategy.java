@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Decides how a {@link SocketHandler} waits when its loop found nothing to do.
+ */
+public interface IdleStrategy {
+
+    String BUSY_SPIN = "busy-spin";
+    String SPIN_YIELD = "spin-yield";
+    String BLOCKING = "blocking";
+
+    /**
+     * Called once per loop, before selecting.
+     * @param workCount the number of tasks, frames and selected keys handled by the last loop
+     * @return the select timeout, 0 to select without blocking,
+     *         otherwise the maximum milliseconds to block until {@link FufileSelector#wakeup()}
+     */
+    long idle(int workCount);
+
+    static IdleStrategy of(String name, long maxBlockMs) {
+        switch (name) {
+            case BUSY_SPIN:
+                return new BusySpinIdleStrategy();
+            case SPIN_YIELD:
+                return new SpinYieldIdleStrategy();
+            case BLOCKING:
+                return new BlockingIdleStrategy(maxBlockMs);
+            default:
+                throw new IllegalArgumentException("Unknown idle strategy " + name + ".");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Hands a connection to the handler with the fewest channels.
+ */
+public class LeastConnectionsAssignmentPolicy implements HandlerAssignmentPolicy {
+
+    private int index = 0;
+
+    @Override
+    public int assign(String key, SocketHandler[] handlers) {
+        // the counters are refreshed once per load window, start from a rotating index
+        // so that a burst of connections is not handed to the same handler
+        int start = Math.abs(index++ % handlers.length);
+        int least = start;
+        for (int i = 1; i < handlers.length; i++) {
+            int candidate = (start + i) % handlers.length;
+            if (handlers[candidate].connections() < handlers[least].connections()) {
+                least = candidate;
+            }
+        }
+        return least;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Hands a connection to the handler that transferred the fewest bytes during the last load window,
+ * and moves the busiest movable channel from the hottest handler to the coldest one when the hottest handler
+ * carries more than {@link #IMBALANCE_RATIO} times the load of the coldest.
+ */
+public class LeastRecentBytesAssignmentPolicy implements HandlerAssignmentPolicy {
+
+    private static final int IMBALANCE_RATIO = 2;
+    /**
+     * Handlers below this load per window are never rebalanced.
+     */
+    private static final long MIN_REBALANCE_BYTES = 1024 * 1024;
+
+    private int index = 0;
+
+    @Override
+    public int assign(String key, SocketHandler[] handlers) {
+        int start = Math.abs(index++ % handlers.length);
+        int least = start;
+        for (int i = 1; i < handlers.length; i++) {
+            int candidate = (start + i) % handlers.length;
+            if (handlers[candidate].recentBytes() < handlers[least].recentBytes()) {
+                least = candidate;
+            }
+        }
+        return least;
+    }
+
+    @Override
+    public Migration rebalance(SocketHandler[] handlers) {
+        SocketHandler hottest = handlers[0];
+        SocketHandler coldest = handlers[0];
+        for (SocketHandler handler : handlers) {
+            if (handler.recentBytes() > hottest.recentBytes()) {
+                hottest = handler;
+            }
+            if (handler.recentBytes() < coldest.recentBytes()) {
+                coldest = handler;
+            }
+        }
+        if (hottest == coldest
+                || hottest.connections() < 2
+                || hottest.recentBytes() < MIN_REBALANCE_BYTES
+                || hottest.recentBytes() <= IMBALANCE_RATIO * coldest.recentBytes()) {
+            return null;
+        }
+        return new Migration(hottest, coldest);
+    }
+}
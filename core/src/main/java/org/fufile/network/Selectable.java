@@ -24,7 +24,8 @@ public interface Selectable extends AutoCloseable {
      * Selects a set of keys whose corresponding channels are ready for I/O operations,
      * then handle these events.
      * @param timeout If positive, block for up to <tt>timeout</tt> milliseconds,
-     *                If it's less than or equal to 0, block indefinitely.
+     *                If it's less than or equal to 0, return immediately.
+     * @return the number of selected keys
      */
-    void doPool(long timeout) throws IOException;
+    int doPool(long timeout) throws IOException;
 }
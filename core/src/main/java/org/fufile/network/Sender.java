@@ -35,4 +35,8 @@ public class Sender {
         return payload.hasRemaining();
     }
 
+    public ByteBuffer payload() {
+        return payload;
+    }
+
 }
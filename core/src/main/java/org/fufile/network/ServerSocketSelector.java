@@ -37,12 +37,23 @@ public class ServerSocketSelector extends FufileSelector implements ServerSocket
 
     private final ArrayList newConnections;
     private FufileServerSocketChannel channel;
-    private final int maxConnectionsPerSelect = 8;
+    public static final int DEFAULT_ACCEPT_BATCH_SIZE = 64;
+
+    private final int maxConnectionsPerSelect;
     private int connectionIndex = 0;
 
     public ServerSocketSelector(InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_ACCEPT_BATCH_SIZE);
+    }
+
+    /**
+     * @param acceptBatchSize the maximum number of connections accepted per select,
+     *                        connections beyond it stay in the backlog until the next select
+     */
+    public ServerSocketSelector(InetSocketAddress address, int acceptBatchSize) throws IOException {
         super();
-        newConnections = new ArrayList(8);
+        maxConnectionsPerSelect = acceptBatchSize;
+        newConnections = new ArrayList(acceptBatchSize);
         bind(address);
     }
 
@@ -94,8 +105,8 @@ public class ServerSocketSelector extends FufileSelector implements ServerSocket
     }
 
     @Override
-    public void doPool(long timeout) throws IOException {
-        pool(timeout);
+    public int doPool(long timeout) throws IOException {
+        return pool(timeout);
     }
 
     @Override
@@ -105,6 +116,7 @@ public class ServerSocketSelector extends FufileSelector implements ServerSocket
 
     @Override
     public void close() throws Exception {
-
+        channel.channel().close();
+        closeSelector();
     }
 }
@@ -20,14 +20,16 @@ import org.fufile.config.FufileConfig;
 import org.fufile.transfer.FufileMessage;
 import org.fufile.transfer.HeartbeatRequestMessage;
 import org.fufile.transfer.HeartbeatResponseMessage;
+import org.fufile.utils.FufileScheduler;
 import org.fufile.utils.FufileThread;
+import org.fufile.utils.HashedTimerWheel;
 import org.fufile.utils.TimerTask;
-import org.fufile.utils.TimerWheelUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,10 +37,22 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import static org.fufile.config.ConfigKeys.BUFFER_POOL_DIRECT;
+import static org.fufile.config.ConfigKeys.BUFFER_POOL_MAX_BUFFERS_PER_CLASS;
+import static org.fufile.config.ConfigKeys.BUFFER_POOL_MAX_POOLED_SIZE;
 import static org.fufile.config.ConfigKeys.HEARTBEAT_INTERVAL;
 import static org.fufile.config.ConfigKeys.HEARTBEAT_TIMEOUT;
+import static org.fufile.config.ConfigKeys.IDLE_MAX_BLOCK_MS;
+import static org.fufile.config.ConfigKeys.IDLE_STRATEGY;
+import static org.fufile.config.ConfigKeys.RECEIVE_BUFFER_SIZE;
+import static org.fufile.config.ConfigKeys.SEND_QUEUE_SIZE;
+import static org.fufile.config.ConfigKeys.TIMER_MODE;
+import static org.fufile.config.ConfigKeys.TIMER_TICK_MS;
+import static org.fufile.config.ConfigKeys.TIMER_WHEEL_LEVELS;
+import static org.fufile.config.ConfigKeys.TIMER_WHEEL_SIZE;
 
 /**
  *
@@ -47,6 +61,17 @@ public class SocketHandler implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(SocketHandler.class);
 
+    /**
+     * The timer wheel runs in its own thread and hands expired tasks over to the handler.
+     */
+    public static final String TIMER_MODE_THREAD = "thread";
+    /**
+     * The handler advances the timer wheel itself and selects no longer than the next deadline.
+     */
+    public static final String TIMER_MODE_REACTOR = "reactor";
+
+    private static final long LOAD_WINDOW_MS = 1000;
+
     private final int handlerId;
     private final String nodeId;
     private final SystemType systemType;
@@ -55,10 +80,17 @@ public class SocketHandler implements Runnable {
     private final Map<String, FufileSocketChannel> connectedNodes;
     private final Map<String, Integer> nodeIdHandlerIdMap;
     private final SocketSelector socketSelector;
-    private final Queue<TimerTask> taskQueue = new LinkedBlockingQueue(16);
-    private final TimerWheelUtil timerWheelUtil = new TimerWheelUtil(10, 60, 100, taskQueue);
+    private final BufferPool bufferPool;
+    private final IdleStrategy idleStrategy;
+    private final boolean reactorTimer;
+    private final Queue<TimerTask> taskQueue;
+    private final HashedTimerWheel timerWheel;
     private final Map<String, ServerNode> nodesNeedingConnect = new HashMap<>();
     private final Set<ServerNode> reconnectionNodes = new HashSet<>();
+    private final Queue<SocketHandler> migrationTargets = new ConcurrentLinkedQueue<>();
+    private long loadWindowStart = System.currentTimeMillis();
+    private volatile int connections = 0;
+    private volatile long recentBytes = 0;
 
     public SocketHandler(int handlerId,
                          String nodeId,
@@ -73,29 +105,108 @@ public class SocketHandler implements Runnable {
         this.checkHeartbeat = checkHeartbeat;
         this.connectedNodes = connectedNodes;
         this.nodeIdHandlerIdMap = nodeIdHandlerIdMap;
-        this.socketSelector = new SocketSelector(nodeId, connectedNodes, timerWheelUtil);
+        this.bufferPool = new BufferPool(
+                config.getBoolean(BUFFER_POOL_DIRECT),
+                config.getInt(BUFFER_POOL_MAX_POOLED_SIZE),
+                config.getInt(BUFFER_POOL_MAX_BUFFERS_PER_CLASS));
+        this.socketSelector = new SocketSelector(
+                nodeId,
+                connectedNodes,
+                bufferPool,
+                config.getInt(SEND_QUEUE_SIZE),
+                config.getInt(RECEIVE_BUFFER_SIZE));
+        this.reactorTimer = TIMER_MODE_REACTOR.equals(config.getString(TIMER_MODE));
+        if (reactorTimer) {
+            // expired on this thread by the loop
+            this.taskQueue = new ArrayDeque<>();
+        } else {
+            this.taskQueue = new LinkedBlockingQueue<TimerTask>() {
+                @Override
+                public boolean offer(TimerTask task) {
+                    boolean offered = super.offer(task);
+                    if (offered) {
+                        // the handler may be blocked in select
+                        socketSelector.wakeup();
+                    }
+                    return offered;
+                }
+            };
+        }
+        this.timerWheel = new HashedTimerWheel(
+                config.getLong(TIMER_TICK_MS),
+                config.getInt(TIMER_WHEEL_SIZE),
+                config.getInt(TIMER_WHEEL_LEVELS),
+                taskQueue);
+        if (reactorTimer) {
+            // a task scheduled by another thread may be due before the select timeout
+            timerWheel.wakeup(socketSelector::wakeup);
+        }
+        this.socketSelector.pendingTasks(() -> !taskQueue.isEmpty() || !migrationTargets.isEmpty());
+        this.idleStrategy = IdleStrategy.of(config.getString(IDLE_STRATEGY), config.getLong(IDLE_MAX_BLOCK_MS));
         if (checkHeartbeat) {
             checkHeartBeatHandler = new CheckHeartBeatHandler(
                     socketSelector,
-                    timerWheelUtil,
+                    timerWheel,
                     config.getLong(HEARTBEAT_INTERVAL),
                     config.getLong(HEARTBEAT_TIMEOUT));
             socketSelector.configCheckHeartbeat(checkHeartBeatHandler);
         }
     }
 
-    public boolean allocateNewConnections(FufileSocketChannel channel) throws IOException {
-        channel.timerWheelUtil(timerWheelUtil);
-        return socketSelector.allocateNewConnections(channel);
+    public void allocateNewConnections(FufileSocketChannel channel) {
+        socketSelector.allocateNewConnections(channel);
     }
 
     public void allocateConnections(ServerNode node) {
         nodesNeedingConnect.put(node.getIdString(), node);
     }
 
+    public int handlerId() {
+        return handlerId;
+    }
+
+    /**
+     * The number of channels registered with this handler, refreshed once per load window.
+     */
+    public int connections() {
+        return connections;
+    }
+
+    /**
+     * The bytes read and written by this handler during the last load window.
+     */
+    public long recentBytes() {
+        return recentBytes;
+    }
+
+    /**
+     * Asks this handler to move its busiest migratable channel to the target handler.
+     * It is called by the acceptor thread, the channel is moved later by the thread of this handler.
+     */
+    public void migrateChannelTo(SocketHandler target) {
+        migrationTargets.offer(target);
+        socketSelector.wakeup();
+    }
+
+    /**
+     * The timer of this handler, its counters show how many heartbeat tasks are outstanding.
+     */
+    public HashedTimerWheel timerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * The receive buffer pool of this handler, its counters can be used to size the pool.
+     */
+    public BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     @Override
     public void run() {
-        new FufileThread(timerWheelUtil, Thread.currentThread().getName() + " Timer wheel").start();
+        if (!reactorTimer) {
+            new FufileThread(timerWheel, Thread.currentThread().getName() + " Timer wheel").start();
+        }
         // connect
         try {
             while (!nodesNeedingConnect.isEmpty()) {
@@ -105,19 +216,13 @@ public class SocketHandler implements Runnable {
 
             }
 
+            int selected = 0;
             for (; ; ) {
                 try {
-                    int taskSize = taskQueue.size();
-                    for (int i = 0; i < taskSize; i++) {
-                        TimerTask task = taskQueue.poll();
-                        if (!task.cancelled()) {
-                            task.run();
-                        }
-                    }
+                    int workCount = selected + expireTimers() + runTasks() + handleReceive() + migrateChannels();
+                    updateLoad();
 
-                    handleReceive();
-
-                    socketSelector.doPool(0);
+                    selected = socketSelector.doPool(selectTimeout(idleStrategy.idle(workCount)));
                     socketSelector.registerNewConnections();
 
 
@@ -132,23 +237,95 @@ public class SocketHandler implements Runnable {
 
     }
 
-    private void handleReceive() throws Exception {
+    private int expireTimers() {
+        return reactorTimer ? timerWheel.advance(System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * In reactor timer mode the select must not block past the next timer deadline.
+     */
+    private long selectTimeout(long idleTimeout) {
+        if (!reactorTimer || idleTimeout <= 0) {
+            return idleTimeout;
+        }
+        long nextAdvanceMs = timerWheel.nextAdvanceMs();
+        if (nextAdvanceMs < 0) {
+            return idleTimeout;
+        }
+        return Math.min(idleTimeout, Math.max(nextAdvanceMs - System.currentTimeMillis(), 0));
+    }
+
+    private void updateLoad() {
+        long now = System.currentTimeMillis();
+        if (now - loadWindowStart >= LOAD_WINDOW_MS) {
+            loadWindowStart = now;
+            recentBytes = socketSelector.rollLoadWindow();
+            connections = socketSelector.channelCount();
+        }
+    }
+
+    /**
+     * Moves channels to the handlers requested by {@link #migrateChannelTo}, received frames have been handled,
+     * so the channels carry no state other than their queued sends and partially read frames.
+     * @return the number of migrated channels
+     */
+    private int migrateChannels() {
+        int migrated = 0;
+        SocketHandler target;
+        while ((target = migrationTargets.poll()) != null) {
+            FufileSocketChannel channel = socketSelector.hottestMigratableChannel(recentBytes - target.recentBytes());
+            if (channel == null) {
+                continue;
+            }
+            if (checkHeartbeat) {
+                checkHeartBeatHandler.cancelHeartbeatTimeout(channel.nodeId());
+            }
+            socketSelector.deregister(channel);
+            nodeIdHandlerIdMap.put(channel.nodeId(), target.handlerId());
+            target.socketSelector.adoptConnection(channel);
+            // do not migrate the same load twice before the next window
+            recentBytes -= channel.recentBytes();
+            logger.info("Migrate the channel of {} from handler {} to handler {}.", channel.nodeId(), handlerId, target.handlerId());
+            migrated++;
+        }
+        return migrated;
+    }
+
+    private int runTasks() {
+        int taskSize = taskQueue.size();
+        for (int i = 0; i < taskSize; i++) {
+            TimerTask task = taskQueue.poll();
+            if (!task.cancelled()) {
+                task.run();
+            }
+        }
+        return taskSize;
+    }
+
+    /**
+     * @return the number of handled frames
+     */
+    private int handleReceive() throws Exception {
+        int frames = 0;
         Collection<FufileSocketChannel> channels = socketSelector.getReceive();
 
         Iterator<FufileSocketChannel> channelIterator = channels.iterator();
         while (channelIterator.hasNext()) {
             FufileSocketChannel channel = channelIterator.next();
-            Receiver receiver = channel.getReceiver();
-            if (receiver.messageType == Receiver.REQUEST) {
-                handleRequest(receiver.message(), channel);
-            } else if (receiver.messageType == Receiver.RESPONSE) {
-                handleResponse(receiver.message(), channel);
+            // all frames decoded from the channel are handled as one batch
+            frames += channel.receivers().size();
+            for (Receiver receiver : channel.receivers()) {
+                if (receiver.messageType == Receiver.REQUEST) {
+                    handleRequest(receiver.message(), channel);
+                } else if (receiver.messageType == Receiver.RESPONSE) {
+                    handleResponse(receiver.message(), channel);
+                }
             }
+            channel.completeReceive();
 
             channelIterator.remove();
         }
-
-
+        return frames;
     }
 
     private void handleRequest(FufileMessage message, FufileSocketChannel channel) throws IOException {
@@ -188,7 +365,7 @@ public class SocketHandler implements Runnable {
     class CheckHeartBeatHandler {
 
         private final SocketSelector socketSelector;
-        private final TimerWheelUtil timerWheelUtil;
+        private final FufileScheduler scheduler;
         private final Map<String, TimerTask> heartbeatTimeoutTask;
         private final Set<String> nodesNotCheckHeartbeat;
         private final long heartbeatInterval;
@@ -196,11 +373,11 @@ public class SocketHandler implements Runnable {
 
 
         public CheckHeartBeatHandler(SocketSelector socketSelector,
-                                     TimerWheelUtil timerWheelUtil,
+                                     FufileScheduler scheduler,
                                      long heartbeatInterval,
                                      long heartbeatTimeout) {
             this.socketSelector = socketSelector;
-            this.timerWheelUtil = timerWheelUtil;
+            this.scheduler = scheduler;
             this.heartbeatInterval = heartbeatInterval;
             this.heartbeatTimeout = heartbeatTimeout;
             heartbeatTimeoutTask = new HashMap<>();
@@ -208,21 +385,24 @@ public class SocketHandler implements Runnable {
         }
 
         public void scheduleHeartbeatTask(FufileChannel channel) {
-            timerWheelUtil.schedule(heartbeatTask(channel));
+            scheduler.schedule(heartbeatTask(channel));
         }
 
         private TimerTask heartbeatTask(FufileChannel channel) {
             return new TimerTask(heartbeatInterval) {
                 @Override
                 public void run() {
-                    socketSelector.send(channel.nodeId(), new Sender(new HeartbeatRequestMessage(nodeId)));
-                    timerWheelUtil.schedule(this);
+                    if (!socketSelector.send(channel.nodeId(), new Sender(new HeartbeatRequestMessage(nodeId)))) {
+                        // the peer is not draining its queue, the heartbeat timeout will handle it
+                        logger.warn("The send queue to {} is full, skip this heartbeat.", channel.nodeId());
+                    }
+                    scheduler.schedule(this);
                 }
             };
         }
 
         public void scheduleHeartbeatTimeoutTask(FufileChannel channel) {
-            timerWheelUtil.schedule(heartbeatTimeoutTask(channel));
+            scheduler.schedule(heartbeatTimeoutTask(channel));
         }
 
         private TimerTask heartbeatTimeoutTask(FufileChannel channel) {
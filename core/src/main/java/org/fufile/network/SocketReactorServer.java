@@ -28,6 +28,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static org.fufile.config.ConfigKeys.ACCEPT_BATCH_SIZE;
+import static org.fufile.config.ConfigKeys.ASSIGNMENT_POLICY;
+import static org.fufile.config.ConfigKeys.REBALANCE_INTERVAL_MS;
+
 /**
  * server
  */
@@ -36,7 +40,9 @@ public class SocketReactorServer implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(SocketReactorServer.class);
 
     private ServerSocketSelector serverSocketSelector;
-    private int index = 0;
+    private final HandlerAssignmentPolicy assignmentPolicy;
+    private final long rebalanceIntervalMs;
+    private long lastRebalance = System.currentTimeMillis();
     private SocketHandler[] socketHandlers;
     private Map<String, Integer> nodeIdHandlerIdMap = new ConcurrentHashMap<>();
 
@@ -46,7 +52,9 @@ public class SocketReactorServer implements Runnable {
                                boolean checkHeartbeat,
                                InetSocketAddress localAddress,
                                int socketProcessThreadNum) throws IOException {
-        serverSocketSelector = new ServerSocketSelector(localAddress);
+        serverSocketSelector = new ServerSocketSelector(localAddress, config.getInt(ACCEPT_BATCH_SIZE));
+        assignmentPolicy = HandlerAssignmentPolicy.of(config.getString(ASSIGNMENT_POLICY));
+        rebalanceIntervalMs = config.getLong(REBALANCE_INTERVAL_MS);
         socketHandlers = new SocketHandler[socketProcessThreadNum];
         Map<String, FufileSocketChannel> connectedNodes = new ConcurrentHashMap<>();
         for (int i = 0; i < socketHandlers.length; i++) {
@@ -86,19 +94,11 @@ public class SocketReactorServer implements Runnable {
                 while (iterator.hasNext()) {
                     FufileSocketChannel channel = iterator.next();
                     // This is an anonymity connection, because we do not know node-id of the client.
-                    boolean allocated = false;
-                    for (int i = 0; i < socketHandlers.length; i++) {
-                        SocketHandler socketHandler = socketHandlers[Math.abs(index++ % socketHandlers.length)];
-                        if (socketHandler.allocateNewConnections(channel)) {
-                            iterator.remove();
-                            allocated = true;
-                            break;
-                        }
-                    }
-                    if (!allocated) {
-                        break;
-                    }
+                    // The assignment policy alone places it.
+                    socketHandlers[assignmentPolicy.assign(remoteHost(channel), socketHandlers)].allocateNewConnections(channel);
+                    iterator.remove();
                 }
+                rebalance();
 
             } catch (Exception e) {
                 logger.error(e.getMessage(), e);
@@ -108,9 +108,26 @@ public class SocketReactorServer implements Runnable {
 
     }
 
+    private void rebalance() {
+        long now = System.currentTimeMillis();
+        if (rebalanceIntervalMs <= 0 || now - lastRebalance < rebalanceIntervalMs) {
+            return;
+        }
+        lastRebalance = now;
+        HandlerAssignmentPolicy.Migration migration = assignmentPolicy.rebalance(socketHandlers);
+        if (migration != null) {
+            migration.from.migrateChannelTo(migration.to);
+        }
+    }
+
+    private static String remoteHost(FufileSocketChannel channel) {
+        // the node id of an anonymity connection is unknown until its first heartbeat
+        return channel.channel().socket().getInetAddress().getHostAddress();
+    }
+
     public void allocateConnections(List<ServerNode> nodesNeedingConnect) {
         nodesNeedingConnect.forEach(node -> {
-            SocketHandler socketHandler = socketHandlers[Math.abs(index++) % socketHandlers.length];
+            SocketHandler socketHandler = socketHandlers[assignmentPolicy.assign(node.getIdString(), socketHandlers)];
             socketHandler.allocateConnections(node);
         });
     }
@@ -35,9 +35,13 @@ public interface SocketSelectable extends Selectable {
      * Selects client socket keys, then handle them.
      * @param timeout If positive, block for up to <tt>timeout</tt> milliseconds,
      */
-    void doPool(long timeout) throws IOException;
+    int doPool(long timeout) throws IOException;
 
-    void send(String nodeId, Sender sender) throws IOException;
+    /**
+     * Queues the message on the channel of the node.
+     * @return false if the send queue of the channel is full, the caller should retry later
+     */
+    boolean send(String nodeId, Sender sender) throws IOException;
 
     int connectedChannelsSize();
 
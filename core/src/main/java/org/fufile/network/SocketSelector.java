@@ -18,7 +18,7 @@ package org.fufile.network;
 
 import org.fufile.network.SocketHandler.CheckHeartBeatHandler;
 import org.fufile.transfer.HeartbeatRequestMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.MpscLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,8 +30,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.BooleanSupplier;
 
 public class SocketSelector extends FufileSelector implements SocketSelectable {
 
@@ -41,10 +40,13 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
     protected final Map<String, FufileSocketChannel> connectedNodes;
     private boolean checkHeartbeat = false;
     private CheckHeartBeatHandler checkHeartBeatHandler;
-    private TimerWheelUtil timerWheelUtil;
-    private final int connectionQueueSize = 16;
-    private final Queue<FufileSocketChannel> newConnections = new ArrayBlockingQueue(connectionQueueSize);
+    private BufferPool bufferPool;
+    private int sendQueueSize = FufileSocketChannel.DEFAULT_SEND_QUEUE_SIZE;
+    private int receiveBufferSize = FufileSocketChannel.DEFAULT_RECEIVE_BUFFER_SIZE;
+    private final MpscLinkedQueue<FufileSocketChannel> newConnections = new MpscLinkedQueue<>();
+    private final MpscLinkedQueue<FufileSocketChannel> migratedConnections = new MpscLinkedQueue<>();
     private final LinkedHashMap<String, FufileSocketChannel> receivedChannels = new LinkedHashMap<>();
+    private BooleanSupplier pendingTasks;
 
     public SocketSelector() {
         super();
@@ -53,11 +55,15 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
 
     public SocketSelector(String nodeId,
                           Map connectedNodes,
-                          TimerWheelUtil timerWheelUtil) {
+                          BufferPool bufferPool,
+                          int sendQueueSize,
+                          int receiveBufferSize) {
         super();
         this.nodeId = nodeId;
         this.connectedNodes = connectedNodes;
-        this.timerWheelUtil = timerWheelUtil;
+        this.bufferPool = bufferPool;
+        this.sendQueueSize = sendQueueSize;
+        this.receiveBufferSize = receiveBufferSize;
     }
 
     public void configCheckHeartbeat(CheckHeartBeatHandler checkHeartBeatHandler) {
@@ -73,7 +79,7 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
             configureSocket(socketChannel);
             connected = doConnect(socketChannel, address);
             FufileSocketChannel channel = new FufileSocketChannel(nodeId, socketChannel, false);
-            channel.timerWheelUtil(timerWheelUtil);
+            configureChannel(channel);
             if (connected) {
                 channel.register(selector, SelectionKey.OP_READ);
                 if (checkHeartbeat) {
@@ -97,29 +103,116 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
 
     /**
      * anonymity connection
+     * It is called by the acceptor thread, the channel is registered later by the thread of this selector,
+     * because registering blocks while the selector is blocked in select.
+     * The handoff queue is unbounded, so a connection storm is never left in the acceptor.
      */
-    public boolean allocateNewConnections(FufileSocketChannel channel) throws IOException {
-        channel.register(selector, 0);
-        boolean isSuccess = newConnections.offer(channel);
-        if (isSuccess) {
-            logger.info("Accept new connection from {}", channel.channel().socket().getRemoteSocketAddress());
-        }
-        return isSuccess;
+    public void allocateNewConnections(FufileSocketChannel channel) {
+        newConnections.offer(channel);
+        logger.info("Accept new connection from {}", channel.channel().socket().getRemoteSocketAddress());
+        wakeup();
+    }
+
+    /**
+     * Hands over a confirmed channel migrated from the selector of another handler,
+     * unlike anonymity connections it must not be refused.
+     */
+    public void adoptConnection(FufileSocketChannel channel) {
+        migratedConnections.offer(channel);
+        wakeup();
+    }
+
+    private void configureChannel(FufileSocketChannel channel) {
+        channel.attachBufferPool(bufferPool);
+        channel.sendQueueSize(sendQueueSize);
+        channel.receiveBufferSize(receiveBufferSize);
     }
 
     public void registerNewConnections() throws IOException {
-        int connectionsRegistered = 0;
-        while (!newConnections.isEmpty() && connectionsRegistered < connectionQueueSize) {
-            connectionsRegistered++;
-            FufileSocketChannel channel = newConnections.poll();
+        FufileSocketChannel channel;
+        while ((channel = newConnections.poll()) != null) {
+            configureChannel(channel);
+            channel.register(selector, 0);
             channel.interestOps(SelectionKey.OP_READ);
-            if (channel.toClient()) {
+            if (!checkHeartbeat) {
+                // without heartbeats the channel keeps the node id it was created with
+                connectedNodes.put(channel.nodeId(), channel);
+            } else if (channel.toClient()) {
                 checkHeartBeatHandler.scheduleHeartbeatTimeoutTask(channel);
             } else {
                 // send heartbeat to identify
                 sendHeartbeat(channel);
             }
         }
+        while ((channel = migratedConnections.poll()) != null) {
+            configureChannel(channel);
+            channel.register(selector, 0);
+            channel.interestOps(channel.queuedSends() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            connectedNodes.put(channel.nodeId(), channel);
+            if (checkHeartbeat) {
+                checkHeartBeatHandler.scheduleHeartbeatTimeoutTask(channel);
+            }
+        }
+    }
+
+    /**
+     * Removes a channel from this selector so that it can be adopted by another one.
+     * Must be called by the thread of this selector while the channel has no unhandled frames.
+     */
+    public void deregister(FufileSocketChannel channel) {
+        channel.deregister();
+        channel.detachBufferPool();
+        receivedChannels.remove(channel.nodeId());
+    }
+
+    /**
+     * The number of channels registered with this selector,
+     * the keys of deregistered channels stay in the key set until the next select and are not counted.
+     */
+    public int channelCount() {
+        int count = 0;
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts a new load window on every channel of this selector.
+     * @return the bytes transferred by all channels during the window that ended
+     */
+    public long rollLoadWindow() {
+        long bytes = 0;
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                bytes += ((FufileSocketChannel) key.attachment()).rollLoadWindow();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Picks the busiest channel that can be moved to another handler:
+     * an accepted and confirmed channel whose recent bytes are less than <tt>maxBytes</tt>.
+     * Moving a channel that carries more than the load gap would only reverse the imbalance.
+     * @return null if there is no such channel
+     */
+    public FufileSocketChannel hottestMigratableChannel(long maxBytes) {
+        FufileSocketChannel hottest = null;
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid()) {
+                continue;
+            }
+            FufileSocketChannel channel = (FufileSocketChannel) key.attachment();
+            if (channel.toClient() && channel.connectionConfirmed() && channel.receivers().isEmpty()
+                    && channel.recentBytes() > 0 && channel.recentBytes() < maxBytes
+                    && (hottest == null || channel.recentBytes() > hottest.recentBytes())) {
+                hottest = channel;
+            }
+        }
+        return hottest;
     }
 
     /**
@@ -134,29 +227,38 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
     }
 
     /**
-     *
+     * @return false if the send queue of the channel is full
      */
     @Override
-    public void send(String nodeId, Sender sender) {
+    public boolean send(String nodeId, Sender sender) {
         FufileSocketChannel socketChannel = connectedNodes.get(nodeId);
-        socketChannel.send(sender);
+        return socketChannel.send(sender);
+    }
+
+    @Override
+    public int doPool(long timeout) throws IOException {
+        return pool(timeout);
+    }
+
+    /**
+     * Supplies whether the owner of this selector has queued work, so that a blocking select is skipped.
+     */
+    public void pendingTasks(BooleanSupplier pendingTasks) {
+        this.pendingTasks = pendingTasks;
     }
 
     @Override
-    public void doPool(long timeout) throws IOException {
-        pool(timeout);
+    protected boolean hasPendingWork() {
+        return !newConnections.isEmpty() || !migratedConnections.isEmpty() || pendingTasks != null && pendingTasks.getAsBoolean();
     }
 
     @Override
     protected void pollSelectionKey(SelectionKey key) throws IOException {
         FufileSocketChannel channel = (FufileSocketChannel) key.attachment();
         if (key.isConnectable()) {
-            if (newConnections.offer(channel)) {
-                if (channel.finishConnect()) {
-                    channel.completeConnection();
-                } else {
-                    newConnections.remove(channel);
-                }
+            if (channel.finishConnect()) {
+                channel.completeConnection();
+                newConnections.offer(channel);
             }
         }
         if (key.isWritable()) {
@@ -165,7 +267,7 @@ public class SocketSelector extends FufileSelector implements SocketSelectable {
         if (key.isReadable()) {
             FufileSocketChannel fufileSocketChannel = (FufileSocketChannel) key.attachment();
             if (fufileSocketChannel.read()) {
-                // read completely
+                // one or more frames are complete
                 fufileSocketChannel.completeRead();
                 // After handle the received message, set interestOps to read.
                 receivedChannels.put(fufileSocketChannel.nodeId(), fufileSocketChannel);
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+/**
+ * Spins for a while after the last work, then yields the core to other threads on every idle loop.
+ */
+public class SpinYieldIdleStrategy implements IdleStrategy {
+
+    private static final int MAX_SPINS = 100;
+
+    private int spins = 0;
+
+    @Override
+    public long idle(int workCount) {
+        if (workCount > 0) {
+            spins = 0;
+        } else if (spins < MAX_SPINS) {
+            spins++;
+        } else {
+            Thread.yield();
+        }
+        return 0;
+    }
+}
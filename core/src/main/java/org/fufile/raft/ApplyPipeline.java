@@ -0,0 +1,242 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.errors.FufileException;
+import org.fufile.raft.RaftSystem.RaftProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies the committed entries to the {@link RaftBusiness} on threads of its own, apart from the raft thread.
+ * A dispatcher thread reads the committed entries in index order and hands each to the worker its apply key hashes to,
+ * so the entries of one key are applied in order and the entries of different keys in parallel.
+ * An entry without a key waits until all entries before it are applied and is applied by the dispatcher.
+ * The applied index is the last index up to which every entry has been applied,
+ * at most {@link #WINDOW} entries are dispatched ahead of it.
+ * Empty entries are marked applied without the business.
+ */
+class ApplyPipeline implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApplyPipeline.class);
+
+    static final int WINDOW = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long WAIT_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RaftLog raftLog;
+    private final RaftBusiness raftBusiness;
+    private final RaftProperties properties;
+    private final Worker[] workers;
+    private final Thread dispatcher;
+    // whether the entry of an index is applied, by index modulo the window
+    private final AtomicIntegerArray applied = new AtomicIntegerArray(WINDOW);
+    // the readers waiting for an applied index, completed by the dispatcher
+    private final PriorityBlockingQueue<Waiter> waiters = new PriorityBlockingQueue<>(16, Comparator.comparingLong(Waiter::index));
+    // the last dispatched index, only touched by the dispatcher
+    private long dispatchedIndex;
+    private volatile boolean waitingForWorkers = false;
+    private volatile boolean closed = false;
+
+    ApplyPipeline(RaftLog raftLog, RaftBusiness raftBusiness, RaftProperties properties, int threads) {
+        this.raftLog = raftLog;
+        this.raftBusiness = raftBusiness;
+        this.properties = properties;
+        this.dispatchedIndex = properties.lastAppliedLogIndex();
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker("raft-apply-" + i);
+        }
+        this.dispatcher = new Thread(this::dispatch, "raft-apply-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    void start() {
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        dispatcher.start();
+    }
+
+    /**
+     * Called by the raft thread when the committed index has advanced.
+     */
+    void wakeup() {
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * The number of committed entries that are not applied yet.
+     */
+    long applyLag() {
+        return Math.max(0, properties.lastCommittedLogIndex() - properties.lastAppliedLogIndex());
+    }
+
+    /**
+     * Called by any thread.
+     *
+     * @return a future completed once every entry up to the index is applied
+     */
+    CompletableFuture<Void> whenApplied(long index) {
+        Waiter waiter = new Waiter(index);
+        waiters.add(waiter);
+        // the dispatcher may have moved past the index before the waiter was added
+        if (properties.lastAppliedLogIndex() >= index) {
+            waiter.future.complete(null);
+        }
+        return waiter.future;
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            long appliedIndex = advanceApplied();
+            long committedIndex = properties.lastCommittedLogIndex();
+            if (dispatchedIndex == committedIndex) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } else if (dispatchedIndex - appliedIndex >= WINDOW) {
+                awaitApplied(dispatchedIndex - WINDOW + 1);
+            } else {
+                LogRecord logRecord = raftLog.get(dispatchedIndex + 1);
+                if (logRecord.data().length == 0) {
+                    applied.set(slot(logRecord.index()), 1);
+                    dispatchedIndex++;
+                    continue;
+                }
+                Object key = raftBusiness.applyKey(logRecord.data());
+                if (key == null) {
+                    awaitApplied(dispatchedIndex);
+                    if (!apply(logRecord)) {
+                        return;
+                    }
+                } else {
+                    workers[Math.floorMod(key.hashCode(), workers.length)].queue.add(logRecord);
+                }
+                dispatchedIndex++;
+            }
+        }
+    }
+
+    /**
+     * Moves the applied index over the entries that have been applied, called by the dispatcher.
+     */
+    private long advanceApplied() {
+        long index = properties.lastAppliedLogIndex();
+        while (index < dispatchedIndex && applied.get(slot(index + 1)) == 1) {
+            applied.set(slot(++index), 0);
+        }
+        properties.lastAppliedLogIndex(index);
+        for (Waiter waiter = waiters.peek(); waiter != null && waiter.index <= index; waiter = waiters.peek()) {
+            waiters.poll().future.complete(null);
+        }
+        return index;
+    }
+
+    private void awaitApplied(long index) {
+        waitingForWorkers = true;
+        while (!closed && advanceApplied() < index) {
+            LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+        }
+        waitingForWorkers = false;
+    }
+
+    /**
+     * @return false if the entry failed, nothing is applied after it
+     */
+    private boolean apply(LogRecord logRecord) {
+        try {
+            raftBusiness.apply(logRecord.index(), logRecord.data());
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply the entry {}, no later entry is applied.", logRecord.index(), e);
+            closed = true;
+            failWaiters();
+            return false;
+        }
+        applied.set(slot(logRecord.index()), 1);
+        return true;
+    }
+
+    private static int slot(long index) {
+        return (int) (index % WINDOW);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        failWaiters();
+    }
+
+    private void failWaiters() {
+        for (Waiter waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+            waiter.future.completeExceptionally(new FufileException("No more entries are applied."));
+        }
+    }
+
+    private static class Waiter {
+
+        private final long index;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long index) {
+            this.index = index;
+        }
+
+        long index() {
+            return index;
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private final ArrayBlockingQueue<LogRecord> queue = new ArrayBlockingQueue<>(WINDOW);
+
+        Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    LogRecord logRecord = queue.poll(IDLE_PARK_NANOS, TimeUnit.NANOSECONDS);
+                    if (logRecord == null) {
+                        continue;
+                    }
+                    if (!apply(logRecord)) {
+                        return;
+                    }
+                    // let the dispatcher advance the applied index before it idles
+                    if (waitingForWorkers || queue.isEmpty()) {
+                        LockSupport.unpark(dispatcher);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
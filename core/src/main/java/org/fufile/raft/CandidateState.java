@@ -17,11 +17,12 @@
 package org.fufile.raft;
 
 import org.fufile.network.FufileSocketChannel;
-import org.fufile.network.Sender;
 import org.fufile.raft.RaftSystem.RaftProperties;
+import org.fufile.transfer.AppendRequestMessage;
+import org.fufile.transfer.AppendResponseMessage;
 import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.FufileScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,8 +35,8 @@ public class CandidateState extends MembershipStateSpace {
     public CandidateState(RaftProperties properties,
                           RaftSystem system,
                           Map connectedNodes,
-                          TimerWheelUtil timerWheelUtil) {
-        super(logger, properties, system, connectedNodes, timerWheelUtil);
+                          FufileScheduler scheduler) {
+        super(logger, properties, system, connectedNodes, scheduler);
     }
 
     @Override
@@ -45,14 +46,26 @@ public class CandidateState extends MembershipStateSpace {
             handleLeaderHeartbeat(channel);
         } else {
             // reject
-            channel.send(new Sender(new LeaderHeartbeatResponseMessage(false)));
+            system.sendReliably(channel, new LeaderHeartbeatResponseMessage(false));
         }
 
 
     }
 
+    @Override
+    protected void handleAppendRequestMessage(AppendRequestMessage message, FufileSocketChannel channel) {
+        if (message.term() >= properties.term()) {
+            // another node has won the election
+            system.transitionTo(MembershipState.FOLLOWER_STATE, true);
+            system.handleRequestMessage(message, channel);
+        } else {
+            system.sendReliably(channel, new AppendResponseMessage(properties.term(), false,
+                    properties.lastLogIndex(), message.sequence()));
+        }
+    }
+
     private void handleLeaderHeartbeat(FufileSocketChannel channel) {
-        channel.send(new Sender(new LeaderHeartbeatResponseMessage(true)));
+        system.sendReliably(channel, new LeaderHeartbeatResponseMessage(true));
         scheduleRandomElectionTimeoutTask();
         // compare committedIndex
     }
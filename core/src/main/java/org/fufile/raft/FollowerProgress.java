@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.network.FufileSocketChannel;
+
+/**
+ * What the leader knows about the log of one follower.
+ * While probing only one append request is outstanding, once the follower accepts one the leader pipelines
+ * up to the max in-flight requests and advances <tt>nextIndex</tt> as soon as a request is sent.
+ * Requests are numbered per follower and answered in order over one connection,
+ * so the number in flight is the distance between the last sent and the last answered sequence.
+ * A request or its answer may still be lost, if the oldest request in flight is not answered in time
+ * the leader probes the follower again.
+ */
+class FollowerProgress {
+
+    private final String nodeId;
+    // the send times of the requests in flight, by sequence modulo the max in flight
+    private final long[] sentNanos;
+    private FufileSocketChannel channel;
+    private long nextIndex;
+    private long matchIndex = 0;
+    private boolean probing = true;
+    private long sentSequence = 0;
+    private long answeredSequence = 0;
+    // answers to requests sent up to this sequence predate the last reset
+    private long resetSequence = 0;
+    private long lastSentNanos = Long.MIN_VALUE;
+    // the send time of the latest request the follower has answered in this term
+    private long ackedSentNanos = Long.MIN_VALUE;
+
+    FollowerProgress(String nodeId, long nextIndex, int maxInFlight) {
+        this.nodeId = nodeId;
+        this.nextIndex = nextIndex;
+        this.sentNanos = new long[maxInFlight];
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    long nextIndex() {
+        return nextIndex;
+    }
+
+    long matchIndex() {
+        return matchIndex;
+    }
+
+    boolean probing() {
+        return probing;
+    }
+
+    int inFlight() {
+        return (int) (sentSequence - answeredSequence);
+    }
+
+    long lastSentNanos() {
+        return lastSentNanos;
+    }
+
+    /**
+     * The follower still followed this leader after that time.
+     */
+    long ackedSentNanos() {
+        return ackedSentNanos;
+    }
+
+    /**
+     * Starts probing over the channel if the follower has reconnected, the requests of the old connection are lost.
+     */
+    void connectedBy(FufileSocketChannel channel) {
+        if (this.channel != channel) {
+            this.channel = channel;
+            probe(nextIndex);
+        }
+    }
+
+    /**
+     * Falls back to probing from after the match index if the oldest request in flight was sent
+     * more than the timeout before, the requests still in flight are ignored.
+     *
+     * @return true if the request timed out
+     */
+    boolean timeOut(long nowNanos, long timeoutNanos) {
+        if (inFlight() == 0 || nowNanos - sentNanos[(int) ((answeredSequence + 1) % sentNanos.length)] < timeoutNanos) {
+            return false;
+        }
+        probe(matchIndex + 1);
+        return true;
+    }
+
+    long nextSequence() {
+        return sentSequence + 1;
+    }
+
+    /**
+     * Records that the request of the next sequence carrying the entries up to <tt>lastIndex</tt> has been sent.
+     */
+    void sent(long lastIndex) {
+        nextIndex = lastIndex + 1;
+        sentSequence++;
+        lastSentNanos = System.nanoTime();
+        sentNanos[(int) (sentSequence % sentNanos.length)] = lastSentNanos;
+    }
+
+    /**
+     * The match index of an answer that predates the last reset still holds, the follower only ever grows
+     * the part of its log it shares with this leader.
+     */
+    void accepted(long sequence, long matchIndex) {
+        this.matchIndex = Math.max(this.matchIndex, matchIndex);
+        nextIndex = Math.max(nextIndex, this.matchIndex + 1);
+        if (sequence > resetSequence) {
+            answered(sequence);
+            probing = false;
+        }
+    }
+
+    /**
+     * Falls back to probing from after the index the follower hinted, the requests still in flight are ignored.
+     *
+     * @return false if the answer predates the last reset
+     */
+    boolean rejected(long sequence, long hintIndex) {
+        if (sequence <= resetSequence) {
+            return false;
+        }
+        answered(sequence);
+        probe(hintIndex + 1);
+        return true;
+    }
+
+    private void answered(long sequence) {
+        answeredSequence = sequence;
+        ackedSentNanos = Math.max(ackedSentNanos, sentNanos[(int) (sequence % sentNanos.length)]);
+    }
+
+    private void probe(long nextIndex) {
+        this.nextIndex = Math.max(nextIndex, matchIndex + 1);
+        probing = true;
+        resetSequence = sentSequence;
+        answeredSequence = sentSequence;
+    }
+}
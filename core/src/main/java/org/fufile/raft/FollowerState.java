@@ -16,28 +16,48 @@
 
 package org.fufile.raft;
 
+import org.fufile.errors.FufileException;
 import org.fufile.network.FufileSocketChannel;
 import org.fufile.network.Sender;
 import org.fufile.raft.RaftSystem.RaftProperties;
+import org.fufile.transfer.AppendRequestMessage;
+import org.fufile.transfer.AppendResponseMessage;
 import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
+import org.fufile.transfer.ReadIndexRequestMessage;
+import org.fufile.transfer.ReadIndexResponseMessage;
 import org.fufile.transfer.VoteRequestMessage;
 import org.fufile.transfer.VoteResponseMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.FufileScheduler;
+import org.fufile.utils.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class FollowerState extends MembershipStateSpace {
 
     private static final Logger logger = LoggerFactory.getLogger(FollowerState.class);
 
+    private static final long READ_CHECK_INTERVAL_MS = 100;
+
+    // the read index requests sent to the leader, by request id
+    private final Map<Long, PendingRead> pendingReads = new HashMap<>();
+    private long readRequestId = 0;
+    // whether a task that checks the pending reads is scheduled
+    private boolean readCheckScheduled = false;
+
     public FollowerState(RaftProperties properties,
                          RaftSystem system,
                          Map connectedNodes,
-                         TimerWheelUtil timerWheelUtil) {
-        super(logger, properties, system, connectedNodes, timerWheelUtil);
+                         FufileScheduler scheduler) {
+        super(logger, properties, system, connectedNodes, scheduler);
     }
 
     @Override
@@ -51,7 +71,7 @@ public class FollowerState extends MembershipStateSpace {
             }
         } else if (message.term() < properties.term()) {
             // reject
-            channel.send(new Sender(new LeaderHeartbeatResponseMessage(false)));
+            system.sendReliably(channel, new LeaderHeartbeatResponseMessage(false));
         } else {
             acceptNewLeader(channel, message);
         }
@@ -59,7 +79,7 @@ public class FollowerState extends MembershipStateSpace {
 
     private void acceptNewLeader(FufileSocketChannel channel, LeaderHeartbeatRequestMessage leaderHeartbeatRequestMessage) {
         // accept new leader
-        channel.send(new Sender(new LeaderHeartbeatResponseMessage(true)));
+        system.sendReliably(channel, new LeaderHeartbeatResponseMessage(true));
         properties.leaderId(leaderHeartbeatRequestMessage.nodeId());
         properties.term(leaderHeartbeatRequestMessage.term());
         scheduleRandomElectionTimeoutTask();
@@ -70,11 +90,167 @@ public class FollowerState extends MembershipStateSpace {
     }
 
     private void handleLeaderHeartbeat(FufileSocketChannel channel) {
-        channel.send(new Sender(new LeaderHeartbeatResponseMessage(true)));
+        system.sendReliably(channel, new LeaderHeartbeatResponseMessage(true));
         scheduleRandomElectionTimeoutTask();
         // compare committedIndex
     }
 
+    @Override
+    protected void handleAppendRequestMessage(AppendRequestMessage message, FufileSocketChannel channel) {
+        RaftLog raftLog = system.raftLog();
+        if (message.term() < properties.term()) {
+            reject(channel, message, raftLog.lastIndex());
+            return;
+        }
+        if (message.term() > properties.term()) {
+            properties.term(message.term());
+            properties.votedFor(null);
+        }
+        properties.leaderId(channel.nodeId());
+        // the appends of the current leader stand for its heartbeats
+        scheduleRandomElectionTimeoutTask();
+        long prevLogIndex = message.prevLogIndex();
+        if (prevLogIndex > raftLog.lastIndex()) {
+            reject(channel, message, raftLog.lastIndex());
+            return;
+        }
+        int prevLogTerm = raftLog.term(prevLogIndex);
+        if (prevLogTerm != message.prevLogTerm()) {
+            // skip the whole conflicting term instead of probing it one entry at a time
+            long hintIndex = prevLogIndex - 1;
+            while (hintIndex > properties.lastCommittedLogIndex() && raftLog.term(hintIndex) == prevLogTerm) {
+                hintIndex--;
+            }
+            reject(channel, message, hintIndex);
+            return;
+        }
+        long matchIndex;
+        try {
+            matchIndex = append(raftLog, prevLogIndex, message.entries());
+        } catch (IOException e) {
+            throw new FufileException("Failed to append to the raft log.", e);
+        }
+        properties.lastLogIndex(raftLog.lastIndex());
+        properties.lastLogTerm(raftLog.lastTerm());
+        long commitIndex = Math.min(message.leaderCommit(), matchIndex);
+        if (commitIndex > properties.lastCommittedLogIndex()) {
+            properties.lastCommittedLogIndex(commitIndex);
+            system.committed(commitIndex);
+        }
+        system.sendReliably(channel, new AppendResponseMessage(properties.term(), true, matchIndex, message.sequence()));
+    }
+
+    private void reject(FufileSocketChannel channel, AppendRequestMessage message, long hintIndex) {
+        system.sendReliably(channel, new AppendResponseMessage(properties.term(), false, hintIndex, message.sequence()));
+    }
+
+    /**
+     * Appends the entries the log does not have yet, a conflicting entry and all after it are removed first.
+     * A pipelined request may repeat entries an earlier one has appended.
+     *
+     * @return the index of the last entry of the request
+     */
+    private long append(RaftLog raftLog, long prevLogIndex, ByteBuffer entries) throws IOException {
+        long index = prevLogIndex;
+        boolean appended = false;
+        while (entries.hasRemaining()) {
+            LogRecord logRecord = new LogRecord(entries);
+            logRecord.deserialize();
+            index = logRecord.index();
+            if (index <= raftLog.lastIndex()) {
+                if (raftLog.term(index) == logRecord.term()) {
+                    continue;
+                }
+                raftLog.truncateFrom(index);
+            }
+            raftLog.append(logRecord);
+            appended = true;
+        }
+        if (appended) {
+            raftLog.flush();
+        }
+        return index;
+    }
+
+    /**
+     * Asks the leader for its commit index on behalf of a batch of reads.
+     */
+    void requestReadIndex(CompletableFuture<Long> future) {
+        FufileSocketChannel channel = properties.leaderId() == null ? null : connectedNodes.get(properties.leaderId());
+        if (channel == null) {
+            future.completeExceptionally(new FufileException("The leader is unknown or not connected."));
+            return;
+        }
+        long requestId = ++readRequestId;
+        if (!channel.send(new Sender(new ReadIndexRequestMessage(requestId)))) {
+            future.completeExceptionally(new FufileException("Failed to send the read index request to the leader."));
+            return;
+        }
+        pendingReads.put(requestId, new PendingRead(channel, System.nanoTime(), future));
+        scheduleReadCheck();
+    }
+
+    private void scheduleReadCheck() {
+        if (readCheckScheduled) {
+            return;
+        }
+        readCheckScheduled = true;
+        scheduler.schedule(new TimerTask(Math.min(READ_CHECK_INTERVAL_MS, properties.readTimeoutMs)) {
+            @Override
+            public void run() {
+                readCheckScheduled = false;
+                if (system.followerState() == FollowerState.this) {
+                    checkReads();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fails the reads whose response is not expected any more, the connection they were sent on is closed
+     * or they have waited longer than the read timeout.
+     */
+    private void checkReads() {
+        long nowNanos = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.readTimeoutMs);
+        Iterator<PendingRead> iterator = pendingReads.values().iterator();
+        while (iterator.hasNext()) {
+            PendingRead read = iterator.next();
+            if (!read.channel.isOpen() || connectedNodes.get(read.channel.nodeId()) != read.channel) {
+                iterator.remove();
+                read.future.completeExceptionally(new FufileException("The connection to the leader ["
+                        + read.channel.nodeId() + "] is closed before the read index is answered."));
+            } else if (nowNanos - read.sentNanos >= timeoutNanos) {
+                iterator.remove();
+                read.future.completeExceptionally(new FufileException("The leader [" + read.channel.nodeId()
+                        + "] has not answered the read index request in " + properties.readTimeoutMs + " ms."));
+            }
+        }
+        if (!pendingReads.isEmpty()) {
+            scheduleReadCheck();
+        }
+    }
+
+    @Override
+    protected void handleReadIndexResponseMessage(ReadIndexResponseMessage message, FufileSocketChannel channel) {
+        PendingRead read = pendingReads.remove(message.requestId());
+        if (read == null) {
+            return;
+        }
+        if (message.success()) {
+            read.future.complete(message.readIndex());
+        } else {
+            read.future.completeExceptionally(new FufileException("The leader [" + channel.nodeId() + "] refused the read index request."));
+        }
+    }
+
+    void failReads(FufileException e) {
+        for (PendingRead read : pendingReads.values()) {
+            read.future.completeExceptionally(e);
+        }
+        pendingReads.clear();
+    }
+
     @Override
     protected void handleVoteRequestMessage(VoteRequestMessage message, FufileSocketChannel channel) {
         VoteRequestMessage voteRequestMessage = message;
@@ -83,14 +259,26 @@ public class FollowerState extends MembershipStateSpace {
                 || voteRequestMessage.lastLogTerm() == properties.lastLogTerm()
                 && voteRequestMessage.lastLogIndex() >= properties.lastLogIndex());
         if (vote) {
-            channel.send(new Sender(new VoteResponseMessage(true)));
+            system.sendReliably(channel, new VoteResponseMessage(true));
             properties.votedFor(voteRequestMessage.nodeId());
             properties.term(voteRequestMessage.term());
             // wait max elect timeout to elect
             scheduleMaxElectionTimeoutTask();
         } else {
-            channel.send(new Sender(new VoteResponseMessage(false)));
+            system.sendReliably(channel, new VoteResponseMessage(false));
         }
     }
 
+    private static class PendingRead {
+
+        private final FufileSocketChannel channel;
+        private final long sentNanos;
+        private final CompletableFuture<Long> future;
+
+        PendingRead(FufileSocketChannel channel, long sentNanos, CompletableFuture<Long> future) {
+            this.channel = channel;
+            this.sentNanos = sentNanos;
+            this.future = future;
+        }
+    }
 }
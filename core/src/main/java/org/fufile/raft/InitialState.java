@@ -17,14 +17,13 @@
 package org.fufile.raft;
 
 import org.fufile.network.FufileSocketChannel;
-import org.fufile.network.Sender;
 import org.fufile.raft.RaftSystem.RaftProperties;
 import org.fufile.transfer.AppendRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
 import org.fufile.transfer.VoteRequestMessage;
 import org.fufile.transfer.VoteResponseMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.FufileScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,8 +36,8 @@ public class InitialState extends MembershipStateSpace {
     public InitialState(RaftProperties properties,
                         RaftSystem system,
                         Map connectedNodes,
-                        TimerWheelUtil timerWheelUtil) {
-        super(logger, properties, system, connectedNodes, timerWheelUtil);
+                        FufileScheduler scheduler) {
+        super(logger, properties, system, connectedNodes, scheduler);
         scheduleRandomElectionTimeoutTask();
     }
 
@@ -48,7 +47,7 @@ public class InitialState extends MembershipStateSpace {
         properties.leaderId(message.nodeId());
         properties.term(message.term());
         cancelElectionTimeoutTask();
-        channel.send(new Sender(new LeaderHeartbeatResponseMessage(true)));
+        system.sendReliably(channel, new LeaderHeartbeatResponseMessage(true));
         if (message.committedLogIndex() > 0) {
             system.transitionTo(MembershipState.SYNC_STATE, true);
         } else {
@@ -61,7 +60,7 @@ public class InitialState extends MembershipStateSpace {
         properties.votedFor(message.nodeId());
         properties.term(message.term());
         scheduleMaxElectionTimeoutTask();
-        channel.send(new Sender(new VoteResponseMessage(true)));
+        system.sendReliably(channel, new VoteResponseMessage(true));
     }
 
     @Override
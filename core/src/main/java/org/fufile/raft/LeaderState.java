@@ -16,26 +16,331 @@
 
 package org.fufile.raft;
 
+import org.fufile.errors.FufileException;
 import org.fufile.network.FufileSocketChannel;
 import org.fufile.network.Sender;
 import org.fufile.raft.RaftSystem.RaftProperties;
+import org.fufile.transfer.AppendRequestMessage;
+import org.fufile.transfer.AppendResponseMessage;
 import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.transfer.ReadIndexRequestMessage;
+import org.fufile.transfer.ReadIndexResponseMessage;
+import org.fufile.utils.FufileScheduler;
+import org.fufile.utils.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The leader replicates its log to the followers with pipelined append requests, see {@link FollowerProgress}.
+ * It serves read indexes once a majority has answered a request sent after the read arrived,
+ * or with the read lease while a majority has answered one within the heartbeat interval.
+ */
 public class LeaderState extends MembershipStateSpace {
 
-    private static final Logger logger = LoggerFactory.getLogger(InitialState.class);
+    private static final Logger logger = LoggerFactory.getLogger(LeaderState.class);
+
+    private final Map<String, FollowerProgress> progresses = new HashMap<>();
+    // the last index of the leader's own log that has been forced to the disk
+    private long flushedIndex = 0;
+    // in arrival order
+    private final ArrayDeque<PendingRead> pendingReads = new ArrayDeque<>();
+    // whether a task that checks the requests in flight is scheduled
+    private boolean timeoutCheckScheduled = false;
+    // whether a task that fails the reads waiting too long is scheduled
+    private boolean readTimeoutScheduled = false;
 
     public LeaderState(RaftProperties properties,
                        RaftSystem system,
                        Map connectedNodes,
-                       TimerWheelUtil timerWheelUtil) {
-        super(logger, properties, system, connectedNodes, timerWheelUtil);
+                       FufileScheduler scheduler) {
+        super(logger, properties, system, connectedNodes, scheduler);
+    }
+
+    /**
+     * Forgets the followers when this node becomes the leader, they are probed from the end of its log.
+     */
+    void resetProgress() {
+        progresses.clear();
+        flushedIndex = system.raftLog().lastIndex();
+    }
+
+    /**
+     * Fails the reads that wait for a read index, when this node stops leading.
+     */
+    void failReads(FufileException e) {
+        for (PendingRead read = pendingReads.pollFirst(); read != null; read = pendingReads.pollFirst()) {
+            read.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Completes the future with the commit index once this node has been confirmed as the leader after the arrival,
+     * a read that has applied the index sees every write committed before the read arrived.
+     * A leader that has not committed an entry of its term does not know the commit index yet,
+     * it appends an empty entry and the read waits until that is committed.
+     */
+    void readIndex(long arrivalNanos, CompletableFuture<Long> future) {
+        pendingReads.addLast(new PendingRead(arrivalNanos, future));
+        RaftLog raftLog = system.raftLog();
+        if (raftLog.lastTerm() != properties.term()) {
+            try {
+                raftLog.append(properties.term(), new byte[0]);
+            } catch (IOException e) {
+                throw new FufileException("Failed to append to the raft log.", e);
+            }
+        }
+        confirmReads();
+        if (!pendingReads.isEmpty()) {
+            replicate();
+            scheduleReadTimeout();
+        }
+    }
+
+    /**
+     * Schedules the read timeout of the oldest waiting read, the reads are failed
+     * if a majority does not answer before, e.g. this node is partitioned from it.
+     */
+    private void scheduleReadTimeout() {
+        if (readTimeoutScheduled || pendingReads.isEmpty()) {
+            return;
+        }
+        readTimeoutScheduled = true;
+        long delayNanos = pendingReads.peekFirst().arrivalNanos + TimeUnit.MILLISECONDS.toNanos(properties.readTimeoutMs)
+                - System.nanoTime();
+        scheduler.schedule(new TimerTask(Math.max(TimeUnit.NANOSECONDS.toMillis(delayNanos + 999_999), 0)) {
+            @Override
+            public void run() {
+                readTimeoutScheduled = false;
+                if (system.leaderState() == LeaderState.this) {
+                    expireReads();
+                }
+            }
+        });
+    }
+
+    private void expireReads() {
+        long nowNanos = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.readTimeoutMs);
+        for (PendingRead read = pendingReads.peekFirst(); read != null && nowNanos - read.arrivalNanos >= timeoutNanos;
+             read = pendingReads.peekFirst()) {
+            pendingReads.pollFirst().future.completeExceptionally(new FufileException(
+                    "A majority has not confirmed the leadership in " + properties.readTimeoutMs + " ms."));
+        }
+        scheduleReadTimeout();
+    }
+
+    private void confirmReads() {
+        if (pendingReads.isEmpty()
+                || system.raftLog().term(properties.lastCommittedLogIndex()) != properties.term()) {
+            return;
+        }
+        long confirmedNanos = confirmedNanos();
+        if (properties.readLease && confirmedNanos != Long.MIN_VALUE && confirmedNanos != Long.MAX_VALUE
+                && System.nanoTime() - confirmedNanos < TimeUnit.MILLISECONDS.toNanos(properties.heartbeatInterval)) {
+            // no other leader is elected within the heartbeat interval of the last answers of a majority,
+            // each answered append restarts the election timeout of the follower, which is several heartbeat intervals
+            confirmedNanos = Long.MAX_VALUE;
+        }
+        for (PendingRead read = pendingReads.peekFirst(); read != null && read.arrivalNanos <= confirmedNanos;
+             read = pendingReads.peekFirst()) {
+            pendingReads.pollFirst().future.complete(properties.lastCommittedLogIndex());
+        }
+    }
+
+    /**
+     * The latest time a majority has followed this leader after.
+     */
+    private long confirmedNanos() {
+        long[] ackedNanos = new long[properties.membershipSize];
+        Arrays.fill(ackedNanos, Long.MIN_VALUE);
+        ackedNanos[0] = Long.MAX_VALUE;
+        int i = 1;
+        for (FollowerProgress progress : progresses.values()) {
+            if (i == ackedNanos.length) {
+                break;
+            }
+            ackedNanos[i++] = progress.ackedSentNanos();
+        }
+        Arrays.sort(ackedNanos);
+        return ackedNanos[(ackedNanos.length - 1) / 2];
+    }
+
+    /**
+     * Whether a request has to be sent even without entries, so that the follower can confirm the waiting reads.
+     */
+    private boolean confirmsReads(FollowerProgress progress) {
+        PendingRead latest = pendingReads.peekLast();
+        return latest != null && progress.lastSentNanos() < latest.arrivalNanos;
+    }
+
+    /**
+     * Sends the entries that have not been sent yet to the connected followers and then forces the own log,
+     * so that the local flush overlaps the round trips of the followers.
+     */
+    public void replicate() {
+        for (Map.Entry<String, FufileSocketChannel> entry : connectedNodes.entrySet()) {
+            replicate(progress(entry.getKey(), entry.getValue()), entry.getValue());
+        }
+        RaftLog raftLog = system.raftLog();
+        long lastIndex = raftLog.lastIndex();
+        if (lastIndex > flushedIndex) {
+            try {
+                raftLog.flush();
+            } catch (IOException e) {
+                throw new FufileException("Failed to flush the raft log.", e);
+            }
+            flushedIndex = lastIndex;
+            properties.lastLogIndex(lastIndex);
+            properties.lastLogTerm(raftLog.lastTerm());
+            advanceCommitIndex();
+        }
+        confirmReads();
+    }
+
+    private FollowerProgress progress(String nodeId, FufileSocketChannel channel) {
+        FollowerProgress progress = progresses.computeIfAbsent(nodeId,
+                id -> new FollowerProgress(id, system.raftLog().lastIndex() + 1, properties.appendMaxInFlight));
+        progress.connectedBy(channel);
+        return progress;
+    }
+
+    /**
+     * Fills the window of the follower, a probing follower gets a single request even if it has no entries.
+     * So does a follower that has to confirm the waiting reads.
+     */
+    private void replicate(FollowerProgress progress, FufileSocketChannel channel) {
+        RaftLog raftLog = system.raftLog();
+        int maxInFlight = progress.probing() ? 1 : properties.appendMaxInFlight;
+        boolean blocked = false;
+        while (progress.inFlight() < maxInFlight) {
+            long nextIndex = progress.nextIndex();
+            if (!progress.probing() && nextIndex > raftLog.lastIndex() && !confirmsReads(progress)) {
+                break;
+            }
+            ByteBuffer entries = raftLog.read(nextIndex, properties.appendMaxBytes);
+            long lastIndex = nextIndex - 1 + entryCount(entries);
+            AppendRequestMessage message = new AppendRequestMessage(properties.term(), nextIndex - 1,
+                    raftLog.term(nextIndex - 1), properties.lastCommittedLogIndex(), progress.nextSequence(), entries);
+            if (!channel.send(new Sender(message))) {
+                // the send queue is full, the window is refilled by the next answer or the timeout check
+                blocked = true;
+                break;
+            }
+            progress.sent(lastIndex);
+        }
+        if (blocked || progress.inFlight() > 0) {
+            scheduleTimeoutCheck();
+        }
+    }
+
+    private void scheduleTimeoutCheck() {
+        if (timeoutCheckScheduled) {
+            return;
+        }
+        timeoutCheckScheduled = true;
+        scheduler.schedule(new TimerTask(properties.appendTimeoutMs) {
+            @Override
+            public void run() {
+                timeoutCheckScheduled = false;
+                if (system.leaderState() == LeaderState.this) {
+                    checkTimeouts();
+                }
+            }
+        });
+    }
+
+    /**
+     * Probes the followers whose oldest request has not been answered in time, a request or its answer is lost,
+     * and refills the windows that a full send queue has left empty.
+     */
+    private void checkTimeouts() {
+        long nowNanos = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.appendTimeoutMs);
+        for (Map.Entry<String, FufileSocketChannel> entry : connectedNodes.entrySet()) {
+            FollowerProgress progress = progress(entry.getKey(), entry.getValue());
+            if (progress.timeOut(nowNanos, timeoutNanos)) {
+                logger.debug("Node {} has not answered in time, probing after index {}.", entry.getKey(), progress.matchIndex());
+            }
+            replicate(progress, entry.getValue());
+        }
+    }
+
+    private static int entryCount(ByteBuffer entries) {
+        int count = 0;
+        for (int position = entries.position(); position < entries.limit(); position += entries.getInt(position)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Commits the last index a majority stores, if it belongs to the current term.
+     * Entries of earlier terms are committed along with it, never by counting.
+     */
+    private void advanceCommitIndex() {
+        long[] matchIndexes = new long[properties.membershipSize];
+        matchIndexes[0] = flushedIndex;
+        int i = 1;
+        for (FollowerProgress progress : progresses.values()) {
+            if (i == matchIndexes.length) {
+                break;
+            }
+            matchIndexes[i++] = progress.matchIndex();
+        }
+        Arrays.sort(matchIndexes);
+        long index = matchIndexes[(matchIndexes.length - 1) / 2];
+        if (index > properties.lastCommittedLogIndex() && system.raftLog().term(index) == properties.term()) {
+            properties.lastCommittedLogIndex(index);
+            system.committed(index);
+        }
+    }
+
+    @Override
+    protected void handleAppendRequestMessage(AppendRequestMessage message, FufileSocketChannel channel) {
+        if (message.term() > properties.term()) {
+            system.transitionTo(MembershipState.FOLLOWER_STATE, true);
+            system.handleRequestMessage(message, channel);
+        } else {
+            system.sendReliably(channel, new AppendResponseMessage(properties.term(), false,
+                    properties.lastLogIndex(), message.sequence()));
+        }
+    }
+
+    @Override
+    protected void handleAppendResponseMessage(AppendResponseMessage message, FufileSocketChannel channel) {
+        if (message.term() > properties.term()) {
+            // a follower has seen a newer leader
+            properties.term(message.term());
+            system.transitionTo(MembershipState.FOLLOWER_STATE, true);
+            return;
+        }
+        FollowerProgress progress = progress(channel.nodeId(), channel);
+        if (message.success()) {
+            progress.accepted(message.sequence(), message.matchIndex());
+            advanceCommitIndex();
+        } else if (progress.rejected(message.sequence(), message.matchIndex())) {
+            logger.debug("Node {} rejected the entries, probing after index {}.", channel.nodeId(), message.matchIndex());
+        }
+        confirmReads();
+        replicate(progress, channel);
+    }
+
+    @Override
+    protected void handleReadIndexRequestMessage(ReadIndexRequestMessage message, FufileSocketChannel channel) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        future.whenComplete((readIndex, e) -> system.sendReliably(channel, new ReadIndexResponseMessage(properties.term(),
+                e == null, e == null ? readIndex : 0, message.requestId())));
+        readIndex(System.nanoTime(), future);
     }
 
     @Override
@@ -45,7 +350,7 @@ public class LeaderState extends MembershipStateSpace {
             acceptNewLeader(channel, message);
         } else if (message.term() < properties.term()) {
             // reject
-            channel.send(new Sender(new LeaderHeartbeatResponseMessage(false)));
+            system.sendReliably(channel, new LeaderHeartbeatResponseMessage(false));
         } else {
             logger.error("There are two leaders [{}][{}] for the same term {}.", properties.leaderId(),
                     message.nodeId(), properties.term());
@@ -54,7 +359,7 @@ public class LeaderState extends MembershipStateSpace {
 
     private void acceptNewLeader(FufileSocketChannel channel, LeaderHeartbeatRequestMessage leaderHeartbeatRequestMessage) {
         // accept new leader
-        channel.send(new Sender(new LeaderHeartbeatResponseMessage(true)));
+        system.sendReliably(channel, new LeaderHeartbeatResponseMessage(true));
         properties.leaderId(leaderHeartbeatRequestMessage.nodeId());
         properties.term(leaderHeartbeatRequestMessage.term());
         system.transitionTo(MembershipState.FOLLOWER_STATE, true);
@@ -68,4 +373,15 @@ public class LeaderState extends MembershipStateSpace {
     protected void handleLeaderHeartbeatResponseMessage(LeaderHeartbeatResponseMessage message, FufileSocketChannel channel) {
 
     }
+
+    private static class PendingRead {
+
+        private final long arrivalNanos;
+        private final CompletableFuture<Long> future;
+
+        PendingRead(long arrivalNanos, CompletableFuture<Long> future) {
+            this.arrivalNanos = arrivalNanos;
+            this.future = future;
+        }
+    }
 }
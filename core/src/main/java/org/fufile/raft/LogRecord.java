@@ -17,18 +17,104 @@
 package org.fufile.raft;
 
 import org.fufile.transfer.FufileMessage;
+import org.fufile.utils.Crc32C;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 
+/**
+ * An entry of the {@link RaftLog}.
+ * <pre>
+ * int size, int crc32c, long index, int term, data   (size covers the whole record, crc32c what follows it)
+ * </pre>
+ */
 public class LogRecord implements FufileMessage {
+
+    public static final int HEADER_SIZE = 20;
+
+    private long index;
+    private int term;
+    private byte[] data;
+    private ByteBuffer payload;
+
+    public LogRecord(ByteBuffer payload) {
+        this.payload = payload;
+    }
+
+    public LogRecord(long index, int term, byte[] data) {
+        this.index = index;
+        this.term = term;
+        this.data = data;
+    }
+
+    public static int sizeInBytes(int dataLength) {
+        return HEADER_SIZE + dataLength;
+    }
+
+    public int sizeInBytes() {
+        return sizeInBytes(data.length);
+    }
+
     @Override
     public ByteBuffer serialize() {
-        return null;
+        byte[] bytes = new byte[sizeInBytes()];
+        encode(bytes, 0, index, term, data, 0, data.length);
+        return ByteBuffer.wrap(bytes);
     }
 
+    /**
+     * Reads the record from the payload, whose position is at the start of the record.
+     */
     @Override
-    public void deserialize() throws UnsupportedEncodingException {
+    public void deserialize() {
+        int size = payload.getInt();
+        int crc = payload.getInt();
+        if (size < HEADER_SIZE || size - 8 > payload.remaining()) {
+            throw new IllegalArgumentException("Invalid log record size " + size + ".");
+        }
+        byte[] bytes = new byte[size - 8];
+        payload.get(bytes);
+        if (Crc32C.compute(bytes, 0, bytes.length) != crc) {
+            throw new IllegalArgumentException("The checksum of the log record does not match.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        index = buffer.getLong();
+        term = buffer.getInt();
+        data = new byte[buffer.remaining()];
+        buffer.get(data);
+    }
+
+    /**
+     * Encodes a record into <tt>bytes</tt> at <tt>offset</tt>.
+     *
+     * @return the size of the record
+     */
+    public static int encode(byte[] bytes, int offset, long index, int term, byte[] data, int dataOffset, int dataLength) {
+        int size = sizeInBytes(dataLength);
+        putInt(bytes, offset, size);
+        putInt(bytes, offset + 8, (int) (index >>> 32));
+        putInt(bytes, offset + 12, (int) index);
+        putInt(bytes, offset + 16, term);
+        System.arraycopy(data, dataOffset, bytes, offset + HEADER_SIZE, dataLength);
+        putInt(bytes, offset + 4, Crc32C.compute(bytes, offset + 8, size - 8));
+        return size;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    public long index() {
+        return index;
+    }
+
+    public int term() {
+        return term;
+    }
 
+    public byte[] data() {
+        return data;
     }
 }
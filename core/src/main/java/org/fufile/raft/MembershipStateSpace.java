@@ -17,7 +17,6 @@
 package org.fufile.raft;
 
 import org.fufile.network.FufileSocketChannel;
-import org.fufile.network.Sender;
 import org.fufile.raft.RaftSystem.RaftProperties;
 import org.fufile.transfer.AppendRequestMessage;
 import org.fufile.transfer.AppendResponseMessage;
@@ -26,10 +25,12 @@ import org.fufile.transfer.LeaderHeartbeatRequestMessage;
 import org.fufile.transfer.LeaderHeartbeatResponseMessage;
 import org.fufile.transfer.LeaderSyncRequestMessage;
 import org.fufile.transfer.LeaderSyncResponseMessage;
+import org.fufile.transfer.ReadIndexRequestMessage;
+import org.fufile.transfer.ReadIndexResponseMessage;
 import org.fufile.transfer.VoteRequestMessage;
 import org.fufile.transfer.VoteResponseMessage;
+import org.fufile.utils.FufileScheduler;
 import org.fufile.utils.TimerTask;
-import org.fufile.utils.TimerWheelUtil;
 import org.slf4j.Logger;
 
 import java.util.Map;
@@ -41,7 +42,7 @@ public abstract class MembershipStateSpace implements MembershipState {
     protected final RaftProperties properties;
     protected final RaftSystem system;
     protected final Map<String, FufileSocketChannel> connectedNodes;
-    protected final TimerWheelUtil timerWheelUtil;
+    protected final FufileScheduler scheduler;
     private final Random random = new Random();
     protected TimerTask electionTimeoutTask;
 
@@ -49,12 +50,12 @@ public abstract class MembershipStateSpace implements MembershipState {
                                 RaftProperties properties,
                                 RaftSystem system,
                                 Map connectedNodes,
-                                TimerWheelUtil timerWheelUtil) {
+                                FufileScheduler scheduler) {
         this.logger = logger;
         this.properties = properties;
         this.system = system;
         this.connectedNodes = connectedNodes;
-        this.timerWheelUtil = timerWheelUtil;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -67,6 +68,8 @@ public abstract class MembershipStateSpace implements MembershipState {
             handleLeaderSyncRequestMessage((LeaderSyncRequestMessage) message, channel);
         } else if (message instanceof VoteRequestMessage) {
             handleVoteRequestMessage((VoteRequestMessage) message, channel);
+        } else if (message instanceof ReadIndexRequestMessage) {
+            handleReadIndexRequestMessage((ReadIndexRequestMessage) message, channel);
         }
     }
 
@@ -82,6 +85,13 @@ public abstract class MembershipStateSpace implements MembershipState {
     protected void handleVoteRequestMessage(VoteRequestMessage message, FufileSocketChannel channel) {
     }
 
+    /**
+     * Only the leader serves read indexes.
+     */
+    protected void handleReadIndexRequestMessage(ReadIndexRequestMessage message, FufileSocketChannel channel) {
+        system.sendReliably(channel, new ReadIndexResponseMessage(properties.term(), false, 0, message.requestId()));
+    }
+
     @Override
     public void handleResponseMessage(FufileMessage message, FufileSocketChannel channel) {
         if (message instanceof LeaderHeartbeatResponseMessage) {
@@ -92,6 +102,8 @@ public abstract class MembershipStateSpace implements MembershipState {
             handleLeaderSyncResponseMessage((LeaderSyncResponseMessage) message, channel);
         } else if (message instanceof VoteResponseMessage) {
             handleVoteResponseMessage((VoteResponseMessage) message, channel);
+        } else if (message instanceof ReadIndexResponseMessage) {
+            handleReadIndexResponseMessage((ReadIndexResponseMessage) message, channel);
         }
     }
 
@@ -107,13 +119,18 @@ public abstract class MembershipStateSpace implements MembershipState {
     protected void handleVoteResponseMessage(VoteResponseMessage message, FufileSocketChannel channel) {
     }
 
+    protected void handleReadIndexResponseMessage(ReadIndexResponseMessage message, FufileSocketChannel channel) {
+    }
+
     @Override
     public void scheduleRandomElectionTimeoutTask() {
-        timerWheelUtil.schedule(electionTimeoutTask(random.nextInt(10000) + 10000));
+        cancelElectionTimeoutTask();
+        scheduler.schedule(electionTimeoutTask(random.nextInt(10000) + 10000));
     }
 
     protected void scheduleMaxElectionTimeoutTask() {
-        timerWheelUtil.schedule(electionTimeoutTask(20000));
+        cancelElectionTimeoutTask();
+        scheduler.schedule(electionTimeoutTask(20000));
     }
 
     protected TimerTask electionTimeoutTask(long delayMs) {
@@ -127,15 +144,15 @@ public abstract class MembershipStateSpace implements MembershipState {
                     properties.incrementTerm();
                     // send vote rpc to connected servers
                     for (FufileSocketChannel channel : connectedNodes.values()) {
-                        channel.send(new Sender(new VoteRequestMessage(
+                        system.sendReliably(channel, new VoteRequestMessage(
                                 properties.term(),
                                 properties.lastLogTerm(),
-                                properties.lastLogIndex())));
+                                properties.lastLogIndex()));
                     }
 
                 } else {
                     // The server is not eligible for election, and try again in 10s+.
-                    timerWheelUtil.schedule(this);
+                    scheduler.schedule(this);
                 }
             }
         };
@@ -146,7 +163,7 @@ public abstract class MembershipStateSpace implements MembershipState {
 
     protected void cancelElectionTimeoutTask() {
         if (electionTimeoutTask != null) {
-            electionTimeoutTask.cancelled();
+            electionTimeoutTask.cancel();
         }
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.errors.FufileException;
+import org.fufile.utils.FufileScheduler;
+import org.fufile.utils.MpscLinkedQueue;
+import org.fufile.utils.TimerTask;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gathers the proposals of concurrent clients into batches on the leader.
+ * A batch is appended as consecutive entries, forced to the disk with one flush and sent to a follower
+ * in one append request. Any thread may propose, batches are appended by tasks of the raft scheduler,
+ * either when the max batch is waiting or when the oldest proposal has waited the max wait.
+ */
+class ProposalBatcher {
+
+    private final RaftSystem system;
+    private final FufileScheduler scheduler;
+    private final int maxBatch;
+    private final long maxWaitMs;
+    private final MpscLinkedQueue<Proposal> proposals = new MpscLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // whether a task that appends the waiting proposals is scheduled
+    private final AtomicBoolean waiting = new AtomicBoolean();
+    // appended proposals in index order, only touched by the raft thread
+    private final ArrayDeque<Proposal> uncommitted = new ArrayDeque<>();
+
+    ProposalBatcher(RaftSystem system, FufileScheduler scheduler, int maxBatch, long maxWaitMs) {
+        this.system = system;
+        this.scheduler = scheduler;
+        this.maxBatch = maxBatch;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Called by any thread.
+     */
+    CompletableFuture<Long> propose(byte[] data) {
+        Proposal proposal = new Proposal(data);
+        proposals.offer(proposal);
+        if (queued.incrementAndGet() % maxBatch == 0) {
+            scheduler.schedule(appendTask(0));
+        } else if (waiting.compareAndSet(false, true)) {
+            scheduler.schedule(appendTask(maxWaitMs));
+        }
+        return proposal.future;
+    }
+
+    private TimerTask appendTask(long delayMs) {
+        return new TimerTask(delayMs) {
+            @Override
+            public void run() {
+                // proposals offered from now on schedule another task
+                waiting.set(false);
+                appendWaiting();
+            }
+        };
+    }
+
+    /**
+     * Appends the waiting proposals in batches of at most the max batch.
+     */
+    private void appendWaiting() {
+        LeaderState leaderState = system.leaderState();
+        Proposal proposal = proposals.poll();
+        while (proposal != null) {
+            int batch = 0;
+            for (; proposal != null && batch < maxBatch; proposal = proposals.poll()) {
+                queued.decrementAndGet();
+                if (leaderState == null) {
+                    proposal.future.completeExceptionally(new FufileException("This node is not the leader."));
+                    continue;
+                }
+                try {
+                    proposal.index = system.raftLog().append(system.properties().term(), proposal.data);
+                } catch (IOException e) {
+                    proposal.future.completeExceptionally(new FufileException("Failed to append to the raft log.", e));
+                    continue;
+                }
+                uncommitted.addLast(proposal);
+                batch++;
+            }
+            if (batch > 0) {
+                leaderState.replicate();
+            }
+        }
+    }
+
+    /**
+     * Completes the proposals up to the committed index, called by the raft thread.
+     */
+    void committed(long index) {
+        for (Proposal proposal = uncommitted.peekFirst(); proposal != null && proposal.index <= index;
+             proposal = uncommitted.peekFirst()) {
+            uncommitted.pollFirst().future.complete(proposal.index);
+        }
+    }
+
+    /**
+     * Fails the appended proposals that are not committed yet, called by the raft thread when it stops leading.
+     * They may still be committed by the next leader.
+     */
+    void failUncommitted(FufileException e) {
+        for (Proposal proposal = uncommitted.pollFirst(); proposal != null; proposal = uncommitted.pollFirst()) {
+            proposal.future.completeExceptionally(e);
+        }
+    }
+
+    private static class Proposal {
+
+        private final byte[] data;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private long index;
+
+        Proposal(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -16,5 +16,22 @@
 
 package org.fufile.raft;
 
+/**
+ * The state machine the committed entries are applied to, see {@link ApplyPipeline}.
+ * Empty entries are appended by the leader for its own purposes and never applied.
+ */
 public interface RaftBusiness {
+
+    /**
+     * The key that orders the entry, entries of the same key are applied in index order
+     * and entries of different keys may be applied concurrently.
+     *
+     * @return null if the entry has to be applied after all entries before it and before all entries after it
+     */
+    Object applyKey(byte[] data);
+
+    /**
+     * Called by one of the apply threads.
+     */
+    void apply(long index, byte[] data);
 }
@@ -16,5 +16,62 @@
 
 package org.fufile.raft;
 
-public interface RaftLog {
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The replicated log, entries are numbered from 1 without gaps.
+ * It is changed by one thread, other threads may read the entries up to {@link #lastIndex()} meanwhile.
+ */
+public interface RaftLog extends Closeable {
+
+    /**
+     * Appends an entry as the leader.
+     *
+     * @return the index of the entry
+     */
+    long append(int term, byte[] data) throws IOException;
+
+    /**
+     * Appends an entry received from the leader, its index must follow the last index.
+     */
+    void append(LogRecord logRecord) throws IOException;
+
+    /**
+     * @return the entry, or null if it is not in the log
+     */
+    LogRecord get(long index);
+
+    /**
+     * @return the term of the entry, or -1 if it is not in the log
+     */
+    int term(long index);
+
+    /**
+     * The index of the first entry in the log, the last index plus one if the log is empty.
+     */
+    long firstIndex();
+
+    long lastIndex();
+
+    int lastTerm();
+
+    /**
+     * A read-only view of the encoded entries from an index, for sending them to a follower without copying.
+     * It holds whole entries of one segment and at most <tt>maxBytes</tt> unless the first entry is larger.
+     *
+     * @return an empty buffer if the index is after the last index
+     */
+    ByteBuffer read(long fromIndex, int maxBytes);
+
+    /**
+     * Removes the entry at the index and all entries after it, to resolve a conflict with the leader.
+     */
+    void truncateFrom(long index) throws IOException;
+
+    /**
+     * Forces the appended entries to the disk.
+     */
+    void flush() throws IOException;
 }
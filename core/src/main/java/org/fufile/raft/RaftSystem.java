@@ -17,46 +17,73 @@
 package org.fufile.raft;
 
 import org.fufile.config.FufileConfig;
+import org.fufile.errors.FufileException;
 import org.fufile.network.FufileSocketChannel;
+import org.fufile.network.Sender;
 import org.fufile.network.SystemType;
 import org.fufile.transfer.FufileMessage;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.FufileScheduler;
+import org.fufile.utils.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_MAX_BYTES;
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_MAX_IN_FLIGHT;
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_TIMEOUT_MS;
+import static org.fufile.config.ConfigKeys.RAFT_APPLY_THREADS;
+import static org.fufile.config.ConfigKeys.RAFT_MEMBERSHIP_SIZE;
+import static org.fufile.config.ConfigKeys.RAFT_PROPOSE_MAX_BATCH;
+import static org.fufile.config.ConfigKeys.RAFT_PROPOSE_MAX_WAIT_MS;
+import static org.fufile.config.ConfigKeys.RAFT_READ_LEASE;
+import static org.fufile.config.ConfigKeys.RAFT_READ_TIMEOUT_MS;
 
 /**
  * startup
  */
-public class RaftSystem implements SystemType {
+public class RaftSystem implements SystemType, Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(RaftSystem.class);
+    private static final long RESEND_DELAY_MS = 10;
 
     private final RaftProperties properties;
     private final RaftLog raftLog;
     private final RaftBusiness raftBusiness;
     private final Map<String, FufileSocketChannel> connectedNodes;
-    private final TimerWheelUtil timerWheelUtil;
+    private final FufileScheduler scheduler;
+    private final ProposalBatcher proposalBatcher;
+    private final ApplyPipeline applyPipeline;
+    private final ReadIndexBatcher readIndexBatcher;
     private MembershipState membershipState;
     private final Map<String, MembershipState> membershipStates = new HashMap<>();
+    // the messages waiting for room in the send queue of a channel, in send order
+    private final Map<FufileSocketChannel, ArrayDeque<Sender>> unsent = new HashMap<>();
 
     public RaftSystem(FufileConfig config,
                       RaftLog raftLog,
                       RaftBusiness raftBusiness,
                       Map connectedNodes,
-                      TimerWheelUtil timerWheelUtil) {
+                      FufileScheduler scheduler) {
         this.properties = new RaftProperties(config);
         this.raftLog = raftLog;
         this.raftBusiness = raftBusiness;
         this.connectedNodes = connectedNodes;
-        this.timerWheelUtil = timerWheelUtil;
-        this.membershipState = new InitialState(properties, this, connectedNodes, timerWheelUtil);
-        membershipStates.put(MembershipState.LEADER_STATE, new LeaderState(properties, this, connectedNodes, timerWheelUtil));
-        membershipStates.put(MembershipState.CANDIDATE_STATE, new CandidateState(properties, this, connectedNodes, timerWheelUtil));
-        membershipStates.put(MembershipState.FOLLOWER_STATE, new FollowerState(properties, this, connectedNodes, timerWheelUtil));
-        membershipStates.put(MembershipState.SYNC_STATE, new SyncState(properties, this, connectedNodes, timerWheelUtil));
+        this.scheduler = scheduler;
+        this.proposalBatcher = new ProposalBatcher(this, scheduler,
+                config.getInt(RAFT_PROPOSE_MAX_BATCH), config.getLong(RAFT_PROPOSE_MAX_WAIT_MS));
+        this.applyPipeline = new ApplyPipeline(raftLog, raftBusiness, properties, config.getInt(RAFT_APPLY_THREADS));
+        this.readIndexBatcher = new ReadIndexBatcher(this, scheduler);
+        this.membershipState = new InitialState(properties, this, connectedNodes, scheduler);
+        membershipStates.put(MembershipState.LEADER_STATE, new LeaderState(properties, this, connectedNodes, scheduler));
+        membershipStates.put(MembershipState.CANDIDATE_STATE, new CandidateState(properties, this, connectedNodes, scheduler));
+        membershipStates.put(MembershipState.FOLLOWER_STATE, new FollowerState(properties, this, connectedNodes, scheduler));
+        membershipStates.put(MembershipState.SYNC_STATE, new SyncState(properties, this, connectedNodes, scheduler));
     }
 
     @Override
@@ -69,9 +96,91 @@ public class RaftSystem implements SystemType {
         membershipState.handleResponseMessage(message, channel);
     }
 
+    /**
+     * Proposes an entry to be appended to the replicated log, called by any thread.
+     * Concurrent proposals are batched, see {@link ProposalBatcher}.
+     *
+     * @return completes with the index of the entry once it is committed,
+     * or exceptionally if this node is not the leader or stops leading before
+     */
+    public CompletableFuture<Long> propose(byte[] data) {
+        return proposalBatcher.propose(data);
+    }
+
+    /**
+     * Asks for the read index, called by any thread.
+     * The leader confirms it is still leading with a round of append requests, or by its lease if
+     * {@link org.fufile.config.ConfigKeys#RAFT_READ_LEASE} is enabled, a follower asks the leader.
+     *
+     * @return completes with the commit index a linearizable read has to wait to be applied,
+     * or exceptionally if there is no leader or the state changes before
+     */
+    public CompletableFuture<Long> readIndex() {
+        return readIndexBatcher.readIndex();
+    }
+
+    /**
+     * Reads the local state machine linearizably, on the leader or on a follower, called by any thread.
+     * The reader runs on the common pool once the read index has been applied.
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> reader) {
+        return readIndex().thenCompose(applyPipeline::whenApplied).thenApplyAsync(v -> reader.get());
+    }
+
+    /**
+     * Starts applying the committed entries to the {@link RaftBusiness}.
+     */
+    public void start() {
+        applyPipeline.start();
+    }
+
+    /**
+     * Called by the raft thread when the committed index has advanced.
+     */
+    void committed(long index) {
+        proposalBatcher.committed(index);
+        applyPipeline.wakeup();
+    }
+
+    public long lastAppliedLogIndex() {
+        return properties.lastAppliedLogIndex();
+    }
+
+    /**
+     * The number of committed entries that have not been applied yet.
+     */
+    public long applyLag() {
+        return applyPipeline.applyLag();
+    }
+
+    /**
+     * @return null if this node is not the leader
+     */
+    LeaderState leaderState() {
+        return membershipState instanceof LeaderState ? (LeaderState) membershipState : null;
+    }
+
+    /**
+     * @return null if this node is not a follower
+     */
+    FollowerState followerState() {
+        return membershipState instanceof FollowerState ? (FollowerState) membershipState : null;
+    }
+
     @Override
     public void transitionTo(String state, boolean scheduleRandomElectionTimeoutTask) {
+        if (membershipState instanceof LeaderState && !MembershipState.LEADER_STATE.equals(state)) {
+            FufileException e = new FufileException("This node is no longer the leader.");
+            proposalBatcher.failUncommitted(e);
+            ((LeaderState) membershipState).failReads(e);
+        }
+        if (membershipState instanceof FollowerState && !MembershipState.FOLLOWER_STATE.equals(state)) {
+            ((FollowerState) membershipState).failReads(new FufileException("This node is no longer a follower."));
+        }
         this.membershipState = membershipStates.get(state);
+        if (MembershipState.LEADER_STATE.equals(state)) {
+            ((LeaderState) membershipState).resetProgress();
+        }
     }
 
     @Override
@@ -79,6 +188,59 @@ public class RaftSystem implements SystemType {
         return membershipStates.get(state);
     }
 
+    @Override
+    public void close() {
+        applyPipeline.close();
+    }
+
+    /**
+     * Sends a message that must not be dropped, called by the raft thread.
+     * A message that does not fit the send queue of the channel is resent by the scheduler until it fits
+     * or the channel is closed, later messages to the same channel queue up behind it to keep their order.
+     */
+    void sendReliably(FufileSocketChannel channel, FufileMessage message) {
+        Sender sender = new Sender(message);
+        ArrayDeque<Sender> senders = unsent.get(channel);
+        if (senders == null) {
+            if (channel.send(sender)) {
+                return;
+            }
+            senders = new ArrayDeque<>();
+            unsent.put(channel, senders);
+            scheduleResend(channel, senders);
+        }
+        senders.addLast(sender);
+    }
+
+    private void scheduleResend(FufileSocketChannel channel, ArrayDeque<Sender> senders) {
+        scheduler.schedule(new TimerTask(RESEND_DELAY_MS) {
+            @Override
+            public void run() {
+                if (!channel.isOpen()) {
+                    logger.debug("Drop {} messages to the closed channel of {}.", senders.size(), channel.nodeId());
+                    unsent.remove(channel);
+                    return;
+                }
+                while (!senders.isEmpty() && channel.send(senders.peekFirst())) {
+                    senders.pollFirst();
+                }
+                if (senders.isEmpty()) {
+                    unsent.remove(channel);
+                } else {
+                    scheduleResend(channel, senders);
+                }
+            }
+        });
+    }
+
+    RaftLog raftLog() {
+        return raftLog;
+    }
+
+    RaftProperties properties() {
+        return properties;
+    }
+
     class RaftProperties {
         private String leaderId;
         private String votedFor;
@@ -86,16 +248,27 @@ public class RaftSystem implements SystemType {
         private int lastLogTerm = 0;
         private long lastLogIndex = 0;
         private int lastCommittedLogTerm = 0;
-        private long lastCommittedLogIndex = 0;
-        private int lastAppliedLogIndex = 0;
+        // read by the apply threads
+        private volatile long lastCommittedLogIndex = 0;
+        private volatile long lastAppliedLogIndex = 0;
 
         final long heartbeatInterval = 2 * 1000;
         final long minElectionTimeout = 10 * 1000;
         final long maxElectionTimeout = 20 * 1000;
         final int membershipSize;
+        final int appendMaxBytes;
+        final int appendMaxInFlight;
+        final long appendTimeoutMs;
+        final boolean readLease;
+        final long readTimeoutMs;
 
         public RaftProperties(FufileConfig config) {
-            this.membershipSize = 1;
+            this.membershipSize = config.getInt(RAFT_MEMBERSHIP_SIZE);
+            this.appendMaxBytes = config.getInt(RAFT_APPEND_MAX_BYTES);
+            this.appendMaxInFlight = config.getInt(RAFT_APPEND_MAX_IN_FLIGHT);
+            this.appendTimeoutMs = config.getLong(RAFT_APPEND_TIMEOUT_MS);
+            this.readLease = config.getBoolean(RAFT_READ_LEASE);
+            this.readTimeoutMs = config.getLong(RAFT_READ_TIMEOUT_MS);
         }
 
         public void incrementTerm() {
@@ -141,5 +314,21 @@ public class RaftSystem implements SystemType {
         public void lastLogIndex(long lastLogIndex) {
             this.lastLogIndex = lastLogIndex;
         }
+
+        public long lastCommittedLogIndex() {
+            return lastCommittedLogIndex;
+        }
+
+        public void lastCommittedLogIndex(long lastCommittedLogIndex) {
+            this.lastCommittedLogIndex = lastCommittedLogIndex;
+        }
+
+        public long lastAppliedLogIndex() {
+            return lastAppliedLogIndex;
+        }
+
+        public void lastAppliedLogIndex(long lastAppliedLogIndex) {
+            this.lastAppliedLogIndex = lastAppliedLogIndex;
+        }
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.errors.FufileException;
+import org.fufile.utils.FufileScheduler;
+import org.fufile.utils.MpscLinkedQueue;
+import org.fufile.utils.TimerTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands the read index requests of any thread to the raft thread, like the {@link ProposalBatcher} does with proposals.
+ * The requests handed over together share one read index, the leader confirms them with one round of
+ * append requests and a follower asks the leader once for all of them.
+ */
+class ReadIndexBatcher {
+
+    private final RaftSystem system;
+    private final FufileScheduler scheduler;
+    private final MpscLinkedQueue<CompletableFuture<Long>> requests = new MpscLinkedQueue<>();
+    // whether a task that hands over the waiting requests is scheduled
+    private final AtomicBoolean waiting = new AtomicBoolean();
+
+    ReadIndexBatcher(RaftSystem system, FufileScheduler scheduler) {
+        this.system = system;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Called by any thread.
+     */
+    CompletableFuture<Long> readIndex() {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        requests.offer(future);
+        if (waiting.compareAndSet(false, true)) {
+            scheduler.schedule(new TimerTask(0) {
+                @Override
+                public void run() {
+                    waiting.set(false);
+                    handOver();
+                }
+            });
+        }
+        return future;
+    }
+
+    private void handOver() {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (CompletableFuture<Long> future = requests.poll(); future != null; future = requests.poll()) {
+            futures.add(future);
+        }
+        if (futures.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Long> shared = new CompletableFuture<>();
+        shared.whenComplete((readIndex, e) -> {
+            for (CompletableFuture<Long> future : futures) {
+                if (e == null) {
+                    future.complete(readIndex);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        LeaderState leaderState = system.leaderState();
+        FollowerState followerState = system.followerState();
+        if (leaderState != null) {
+            leaderState.readIndex(System.nanoTime(), shared);
+        } else if (followerState != null) {
+            followerState.requestReadIndex(shared);
+        } else {
+            shared.completeExceptionally(new FufileException("There is no leader to serve the read index."));
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.errors.FufileException;
+import org.fufile.utils.Crc32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fufile.config.ConfigKeys.RAFT_LOG_SEGMENT_SIZE;
+
+/**
+ * A {@link RaftLog} in fixed-size segment files that are memory-mapped for reading and writing.
+ * <pre>
+ * segment: int magic, int version, long baseIndex, {@link LogRecord}s, zeros up to the segment size
+ * </pre>
+ * A segment is named by the index of its first entry. Each segment keeps a sparse index of the position
+ * of every {@link #INDEX_INTERVAL}th entry, an entry is found from the nearest indexed one
+ * by skipping at most that many entries. The index is rebuilt when the log is opened,
+ * the entries are read up to the first one that is corrupt or out of order.
+ * Truncated entries are zeroed, so they are not read again after a restart.
+ */
+public class SegmentedRaftLog implements RaftLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedRaftLog.class);
+
+    public static final int MAGIC = ByteBuffer.wrap("FRLG".getBytes()).getInt();
+    public static final int VERSION = 1;
+    public static final int INDEX_INTERVAL = 32;
+    static final int SEGMENT_HEADER_SIZE = 16;
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final int segmentSize;
+    // replaced as a whole when a segment is added or removed
+    private volatile Segment[] segments;
+    private volatile long lastIndex;
+    private int lastTerm;
+    private byte[] scratch = new byte[1024];
+
+    public SegmentedRaftLog(Path dir, FufileConfig config) throws IOException {
+        this(dir, config.getInt(RAFT_LOG_SEGMENT_SIZE));
+    }
+
+    public SegmentedRaftLog(Path dir, int segmentSize) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + LogRecord.HEADER_SIZE) {
+            throw new IllegalArgumentException("The segment size " + segmentSize + " is too small.");
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+        List<Segment> opened = new ArrayList<>();
+        long nextIndex = -1;
+        for (long baseIndex : baseIndexes()) {
+            Segment segment = new Segment(segmentFile(baseIndex), baseIndex, false);
+            if (!segment.valid || nextIndex >= 0 && baseIndex != nextIndex) {
+                // a segment whose header was not written, or that does not follow the entries before it
+                segment.delete();
+                continue;
+            }
+            opened.add(segment);
+            nextIndex = segment.recover();
+        }
+        if (opened.isEmpty()) {
+            opened.add(new Segment(segmentFile(1), 1, true));
+        }
+        segments = opened.toArray(new Segment[0]);
+        Segment last = segments[segments.length - 1];
+        lastIndex = last.lastIndex;
+        lastTerm = lastIndex == 0 ? 0 : termAt(lastIndex);
+    }
+
+    @Override
+    public long append(int term, byte[] data) throws IOException {
+        long index = lastIndex + 1;
+        appendEntry(index, term, data);
+        return index;
+    }
+
+    @Override
+    public void append(LogRecord logRecord) throws IOException {
+        if (logRecord.index() != lastIndex + 1) {
+            throw new FufileException("The log entry " + logRecord.index() + " does not follow the last entry " + lastIndex + ".");
+        }
+        appendEntry(logRecord.index(), logRecord.term(), logRecord.data());
+    }
+
+    private void appendEntry(long index, int term, byte[] data) throws IOException {
+        int size = LogRecord.sizeInBytes(data.length);
+        if (size > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new FufileException("The log entry of " + size + " bytes does not fit in a segment.");
+        }
+        Segment segment = segments[segments.length - 1];
+        if (segment.end + size > segmentSize) {
+            segment = roll(index);
+        }
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(scratch.length * 2, size)];
+        }
+        LogRecord.encode(scratch, 0, index, term, data, 0, data.length);
+        segment.write(index, scratch, size);
+        lastTerm = term;
+        lastIndex = index;
+    }
+
+    private Segment roll(long baseIndex) throws IOException {
+        Segment[] current = segments;
+        current[current.length - 1].buffer.force();
+        Segment segment = new Segment(segmentFile(baseIndex), baseIndex, true);
+        Segment[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = segment;
+        segments = grown;
+        return segment;
+    }
+
+    @Override
+    public LogRecord get(long index) {
+        Segment segment = segmentOf(index);
+        if (segment == null) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(segment.positionOf(index));
+        LogRecord logRecord = new LogRecord(buffer);
+        logRecord.deserialize();
+        return logRecord;
+    }
+
+    @Override
+    public int term(long index) {
+        if (index == 0) {
+            return 0;
+        }
+        if (segmentOf(index) == null) {
+            return -1;
+        }
+        return termAt(index);
+    }
+
+    private int termAt(long index) {
+        Segment segment = segmentOf(index);
+        return segment.buffer.getInt(segment.positionOf(index) + 16);
+    }
+
+    @Override
+    public long firstIndex() {
+        return segments[0].baseIndex;
+    }
+
+    @Override
+    public long lastIndex() {
+        return lastIndex;
+    }
+
+    @Override
+    public int lastTerm() {
+        return lastTerm;
+    }
+
+    @Override
+    public ByteBuffer read(long fromIndex, int maxBytes) {
+        Segment segment = segmentOf(fromIndex);
+        if (segment == null) {
+            return ByteBuffer.allocate(0);
+        }
+        long last = Math.min(lastIndex, segment.lastIndex);
+        int start = segment.positionOf(fromIndex);
+        int end = start + segment.buffer.getInt(start);
+        for (long index = fromIndex + 1; index <= last; index++) {
+            int size = segment.buffer.getInt(end);
+            if (end + size - start > maxBytes) {
+                break;
+            }
+            end += size;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(start).limit(end);
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public void truncateFrom(long index) throws IOException {
+        if (index > lastIndex) {
+            return;
+        }
+        if (index < firstIndex()) {
+            throw new FufileException("The log entry " + index + " is before the first entry " + firstIndex() + ".");
+        }
+        Segment[] current = segments;
+        int keep = current.length;
+        while (keep > 1 && current[keep - 1].baseIndex >= index) {
+            keep--;
+        }
+        Segment[] kept = Arrays.copyOf(current, keep);
+        segments = kept;
+        for (int i = keep; i < current.length; i++) {
+            current[i].delete();
+        }
+        kept[keep - 1].truncateFrom(index);
+        lastIndex = index - 1;
+        lastTerm = lastIndex == 0 ? 0 : termAt(lastIndex);
+    }
+
+    @Override
+    public void flush() {
+        Segment[] current = segments;
+        current[current.length - 1].buffer.force();
+    }
+
+    /**
+     * Forces the entries, the segments stay mapped until they are garbage collected.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * @return the segment holding the entry, or null if the entry is not in the log
+     */
+    private Segment segmentOf(long index) {
+        Segment[] current = segments;
+        if (index < current[0].baseIndex || index > lastIndex) {
+            return null;
+        }
+        int low = 0;
+        int high = current.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (current[middle].baseIndex <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return current[low];
+    }
+
+    private List<Long> baseIndexes() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private Path segmentFile(long baseIndex) {
+        return dir.resolve(String.format("%020d", baseIndex) + SUFFIX);
+    }
+
+    /**
+     * A mapped segment file, only the writer changes it.
+     */
+    private final class Segment {
+
+        private final Path file;
+        private final long baseIndex;
+        private final MappedByteBuffer buffer;
+        private final boolean valid;
+        // the positions of every INDEX_INTERVAL-th entry
+        private int[] positions = new int[64];
+        private int end = SEGMENT_HEADER_SIZE;
+        private volatile long lastIndex;
+
+        private Segment(Path file, long baseIndex, boolean create) throws IOException {
+            this.file = file;
+            this.baseIndex = baseIndex;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+                if (randomAccessFile.length() < segmentSize) {
+                    randomAccessFile.setLength(segmentSize);
+                }
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            lastIndex = baseIndex - 1;
+            if (create) {
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, baseIndex);
+            }
+            valid = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getLong(8) == baseIndex;
+        }
+
+        /**
+         * Reads the entries up to the first invalid one and rebuilds the index.
+         *
+         * @return the index after the last entry
+         */
+        private long recover() {
+            byte[] bytes = new byte[1024];
+            ByteBuffer reader = buffer.duplicate();
+            long index = baseIndex;
+            while (end + LogRecord.HEADER_SIZE <= segmentSize) {
+                int size = buffer.getInt(end);
+                if (size < LogRecord.HEADER_SIZE || size > segmentSize - end || buffer.getLong(end + 8) != index) {
+                    break;
+                }
+                if (bytes.length < size) {
+                    bytes = new byte[Math.max(bytes.length * 2, size)];
+                }
+                reader.position(end);
+                reader.get(bytes, 0, size);
+                if (Crc32C.compute(bytes, 8, size - 8) != buffer.getInt(end + 4)) {
+                    break;
+                }
+                addPosition(index, end);
+                end += size;
+                index++;
+            }
+            lastIndex = index - 1;
+            if (end + 4 <= segmentSize && buffer.getInt(end) != 0) {
+                logger.warn("Dropped the corrupt tail of the raft log segment {} after entry {}.", file, lastIndex);
+                zero(end, segmentSize);
+            }
+            return index;
+        }
+
+        private void write(long index, byte[] bytes, int size) {
+            ByteBuffer writer = buffer.duplicate();
+            writer.position(end);
+            writer.put(bytes, 0, size);
+            addPosition(index, end);
+            end += size;
+            lastIndex = index;
+        }
+
+        private void addPosition(long index, int position) {
+            long offset = index - baseIndex;
+            if (offset % INDEX_INTERVAL == 0) {
+                int slot = (int) (offset / INDEX_INTERVAL);
+                if (slot == positions.length) {
+                    positions = Arrays.copyOf(positions, positions.length * 2);
+                }
+                positions[slot] = position;
+            }
+        }
+
+        private int positionOf(long index) {
+            long offset = index - baseIndex;
+            int position = positions[(int) (offset / INDEX_INTERVAL)];
+            for (long skip = offset % INDEX_INTERVAL; skip > 0; skip--) {
+                position += buffer.getInt(position);
+            }
+            return position;
+        }
+
+        private void truncateFrom(long index) {
+            int position = index > lastIndex ? end : positionOf(index);
+            zero(position, end);
+            end = position;
+            lastIndex = index - 1;
+        }
+
+        private void zero(int from, int to) {
+            ByteBuffer writer = buffer.duplicate();
+            writer.position(from);
+            byte[] zeros = new byte[Math.min(to - from, 1 << 16)];
+            while (writer.position() < to) {
+                writer.put(zeros, 0, Math.min(zeros.length, to - writer.position()));
+            }
+        }
+
+        private void delete() throws IOException {
+            Files.delete(file);
+        }
+    }
+}
@@ -17,7 +17,7 @@
 package org.fufile.raft;
 
 import org.fufile.raft.RaftSystem.RaftProperties;
-import org.fufile.utils.TimerWheelUtil;
+import org.fufile.utils.FufileScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,8 +30,8 @@ public class SyncState extends MembershipStateSpace {
     public SyncState(RaftProperties properties,
                        RaftSystem system,
                        Map connectedNodes,
-                       TimerWheelUtil timerWheelUtil) {
-        super(logger, properties, system, connectedNodes, timerWheelUtil);
+                       FufileScheduler scheduler) {
+        super(logger, properties, system, connectedNodes, scheduler);
     }
 
 }
@@ -16,26 +16,98 @@
 
 package org.fufile.transfer;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 
+/**
+ * Replicates the entries following <tt>prevLogIndex</tt> to a follower, no entries make it a probe.
+ * <pre>
+ * int term, long prevLogIndex, int prevLogTerm, long leaderCommit, long sequence, entries
+ * </pre>
+ * The entries are encoded log records as read from the leader's log.
+ * The sequence numbers the requests to one follower so that the leader can match the responses to them.
+ */
 public class AppendRequestMessage implements FufileMessage {
 
-    private ByteBuffer payload;
+    private static final int BODY_HEADER_SIZE = 32;
 
+    private ByteBuffer payload;
 
+    private int term;
+    private long prevLogIndex;
+    private int prevLogTerm;
+    private long leaderCommit;
+    private long sequence;
+    private ByteBuffer entries;
 
     public AppendRequestMessage(ByteBuffer payload) {
         this.payload = payload;
     }
 
+    public AppendRequestMessage(int term, long prevLogIndex, int prevLogTerm, long leaderCommit, long sequence,
+                                ByteBuffer entries) {
+        this.term = term;
+        this.prevLogIndex = prevLogIndex;
+        this.prevLogTerm = prevLogTerm;
+        this.leaderCommit = leaderCommit;
+        this.sequence = sequence;
+        this.entries = entries;
+    }
+
     @Override
     public ByteBuffer serialize() {
-        return null;
+        ByteBuffer byteBuffer = ByteBuffer.allocate(entries.remaining() + BODY_HEADER_SIZE + 7);
+        byteBuffer.putInt(entries.remaining() + BODY_HEADER_SIZE + 3);
+        // api
+        byteBuffer.putShort((short) 4);
+        // 0:request; 1:response;
+        byteBuffer.put((byte) 0);
+        byteBuffer.putInt(term);
+        byteBuffer.putLong(prevLogIndex);
+        byteBuffer.putInt(prevLogTerm);
+        byteBuffer.putLong(leaderCommit);
+        byteBuffer.putLong(sequence);
+        byteBuffer.put(entries.duplicate());
+        byteBuffer.flip();
+        return byteBuffer;
     }
 
     @Override
-    public void deserialize() throws UnsupportedEncodingException {
+    public void deserialize() {
+        term = payload.getInt();
+        prevLogIndex = payload.getLong();
+        prevLogTerm = payload.getInt();
+        leaderCommit = payload.getLong();
+        sequence = payload.getLong();
+        // the payload is a view of a receive buffer that is reused as soon as the frames are decoded
+        entries = ByteBuffer.allocate(payload.remaining());
+        entries.put(payload);
+        entries.flip();
+    }
+
+    public int term() {
+        return term;
+    }
+
+    public long prevLogIndex() {
+        return prevLogIndex;
+    }
+
+    public int prevLogTerm() {
+        return prevLogTerm;
+    }
+
+    public long leaderCommit() {
+        return leaderCommit;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
 
+    /**
+     * The encoded entries, positioned at the first of them.
+     */
+    public ByteBuffer entries() {
+        return entries.duplicate();
     }
 }
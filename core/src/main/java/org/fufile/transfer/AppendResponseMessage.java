@@ -16,24 +16,72 @@
 
 package org.fufile.transfer;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 
+/**
+ * Answers an {@link AppendRequestMessage} of the same sequence.
+ * On success <tt>matchIndex</tt> is the last index the follower's log is known to share with the leader,
+ * on rejection it is the index the leader should retry after.
+ */
 public class AppendResponseMessage implements FufileMessage {
 
+    private static final int BODY_SIZE = 21;
+
     private ByteBuffer payload;
 
+    private int term;
+    private boolean success;
+    private long matchIndex;
+    private long sequence;
+
     public AppendResponseMessage(ByteBuffer payload) {
         this.payload = payload;
     }
 
+    public AppendResponseMessage(int term, boolean success, long matchIndex, long sequence) {
+        this.term = term;
+        this.success = success;
+        this.matchIndex = matchIndex;
+        this.sequence = sequence;
+    }
+
     @Override
     public ByteBuffer serialize() {
-        return null;
+        ByteBuffer byteBuffer = ByteBuffer.allocate(BODY_SIZE + 7);
+        byteBuffer.putInt(BODY_SIZE + 3);
+        // api
+        byteBuffer.putShort((short) 4);
+        // 0:request; 1:response;
+        byteBuffer.put((byte) 1);
+        byteBuffer.putInt(term);
+        byteBuffer.put((byte) (success ? 1 : 0));
+        byteBuffer.putLong(matchIndex);
+        byteBuffer.putLong(sequence);
+        byteBuffer.flip();
+        return byteBuffer;
     }
 
     @Override
-    public void deserialize() throws UnsupportedEncodingException {
+    public void deserialize() {
+        term = payload.getInt();
+        success = payload.get() == 1;
+        matchIndex = payload.getLong();
+        sequence = payload.getLong();
+    }
+
+    public int term() {
+        return term;
+    }
+
+    public boolean success() {
+        return success;
+    }
+
+    public long matchIndex() {
+        return matchIndex;
+    }
 
+    public long sequence() {
+        return sequence;
     }
 }
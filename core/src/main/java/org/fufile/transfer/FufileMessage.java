@@ -25,5 +25,10 @@ public interface FufileMessage {
 
     ByteBuffer serialize();
 
+    /**
+     * Decodes the payload the message was created with, once, while the frame is decoded.
+     * The payload is a view of a pooled receive buffer that is reused right afterwards,
+     * so anything the message keeps has to be copied out of it.
+     */
     void deserialize() throws UnsupportedEncodingException;
 }
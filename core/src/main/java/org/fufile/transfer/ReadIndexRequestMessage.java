@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.transfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Asks the leader for an index a linearizable read may be served at, once the asking node has applied it.
+ * <pre>
+ * long requestId
+ * </pre>
+ */
+public class ReadIndexRequestMessage implements FufileMessage {
+
+    private static final int BODY_SIZE = 8;
+
+    private ByteBuffer payload;
+
+    private long requestId;
+
+    public ReadIndexRequestMessage(ByteBuffer payload) {
+        this.payload = payload;
+    }
+
+    public ReadIndexRequestMessage(long requestId) {
+        this.requestId = requestId;
+    }
+
+    @Override
+    public ByteBuffer serialize() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(BODY_SIZE + 7);
+        byteBuffer.putInt(BODY_SIZE + 3);
+        // api
+        byteBuffer.putShort((short) 5);
+        // 0:request; 1:response;
+        byteBuffer.put((byte) 0);
+        byteBuffer.putLong(requestId);
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    @Override
+    public void deserialize() {
+        requestId = payload.getLong();
+    }
+
+    public long requestId() {
+        return requestId;
+    }
+}
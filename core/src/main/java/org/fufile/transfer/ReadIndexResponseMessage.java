@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.transfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Answers a {@link ReadIndexRequestMessage} of the same request id, it fails if the node is not the leader.
+ * <pre>
+ * int term, boolean success, long readIndex, long requestId
+ * </pre>
+ */
+public class ReadIndexResponseMessage implements FufileMessage {
+
+    private static final int BODY_SIZE = 21;
+
+    private ByteBuffer payload;
+
+    private int term;
+    private boolean success;
+    private long readIndex;
+    private long requestId;
+
+    public ReadIndexResponseMessage(ByteBuffer payload) {
+        this.payload = payload;
+    }
+
+    public ReadIndexResponseMessage(int term, boolean success, long readIndex, long requestId) {
+        this.term = term;
+        this.success = success;
+        this.readIndex = readIndex;
+        this.requestId = requestId;
+    }
+
+    @Override
+    public ByteBuffer serialize() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(BODY_SIZE + 7);
+        byteBuffer.putInt(BODY_SIZE + 3);
+        // api
+        byteBuffer.putShort((short) 5);
+        // 0:request; 1:response;
+        byteBuffer.put((byte) 1);
+        byteBuffer.putInt(term);
+        byteBuffer.put((byte) (success ? 1 : 0));
+        byteBuffer.putLong(readIndex);
+        byteBuffer.putLong(requestId);
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    @Override
+    public void deserialize() {
+        term = payload.getInt();
+        success = payload.get() == 1;
+        readIndex = payload.getLong();
+        requestId = payload.getLong();
+    }
+
+    public int term() {
+        return term;
+    }
+
+    public boolean success() {
+        return success;
+    }
+
+    public long readIndex() {
+        return readIndex;
+    }
+
+    public long requestId() {
+        return requestId;
+    }
+}
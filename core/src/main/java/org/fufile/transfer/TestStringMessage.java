@@ -52,10 +52,11 @@ public class TestStringMessage implements FufileMessage {
         byte[] bytes = new byte[payload.remaining()];
         payload.get(bytes);
         message = new String(bytes, "utf-8");
+        // the payload goes back to the buffer pool
+        payload = null;
     }
 
-    public String message() throws UnsupportedEncodingException {
-        deserialize();
+    public String message() {
         return message;
     }
 }
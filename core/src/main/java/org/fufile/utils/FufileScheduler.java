@@ -16,15 +16,10 @@
 
 package org.fufile.utils;
 
-public class FufileScheduler {
-
-
-
-
-
-
-
-
-
+/**
+ * Schedules {@link TimerTask}s to be run after their delay.
+ */
+public interface FufileScheduler {
 
+    void schedule(TimerTask task);
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.utils;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hierarchical hashed timing wheel whose buckets are intrusive doubly-linked lists of {@link TimerTask}s.
+ * Any thread may schedule or cancel a task, both are handed to the wheel thread through lock-free queues,
+ * a task cancelled by the wheel thread itself is unlinked at once. Unlinking a task from its bucket is O(1),
+ * so cancelled tasks do not stay in the wheel until their deadline.
+ * <p>
+ * Level n has the same number of buckets as level 0, each spanning wheelSize^n ticks. A task is linked into
+ * the lowest level that covers its deadline, and whenever a lower level completes a rotation the next bucket
+ * of the level above is cascaded down. Deadlines beyond the top level wait in its farthest bucket and are
+ * placed again when that bucket cascades, so there is no maximum delay.
+ * Expired tasks are offered to the expired task queue, which must be unbounded.
+ */
+public class HashedTimerWheel implements FufileScheduler, Runnable {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final long range;
+    private final TimerTask[] buckets;
+    private final Queue<TimerTask> expiredTasks;
+    private final MpscLinkedQueue<TimerTask> submissions = new MpscLinkedQueue<>();
+    private final MpscLinkedQueue<TimerTask> cancellations = new MpscLinkedQueue<>();
+    private final long startMs;
+    private long currentTick = 0;
+    private volatile Thread worker;
+    private Runnable wakeup;
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private volatile long expired = 0;
+
+    /**
+     * A single level wheel.
+     */
+    public HashedTimerWheel(long tickMs, int wheelSize, Queue<TimerTask> expiredTasks) {
+        this(tickMs, wheelSize, 1, expiredTasks);
+    }
+
+    /**
+     * @param wheelSize the number of buckets per level, rounded up to a power of two
+     * @param levels    the number of levels, the wheel covers tickMs * wheelSize^levels without re-placing tasks
+     */
+    public HashedTimerWheel(long tickMs, int wheelSize, int levels, Queue<TimerTask> expiredTasks) {
+        if (tickMs <= 0 || wheelSize <= 1 || levels <= 0) {
+            throw new IllegalArgumentException("The tick and the levels must be positive and the wheel size greater than 1.");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.bits = Integer.numberOfTrailingZeros(this.wheelSize);
+        if (bits * levels > 62) {
+            throw new IllegalArgumentException("The wheel range exceeds 2^62 ticks.");
+        }
+        this.mask = this.wheelSize - 1;
+        this.levels = levels;
+        this.range = 1L << (bits * levels);
+        this.buckets = new TimerTask[this.wheelSize * levels];
+        this.expiredTasks = expiredTasks;
+        this.startMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Called by any thread, a task must not be scheduled again before it expires.
+     * Cancelled tasks are ignored.
+     */
+    @Override
+    public void schedule(TimerTask task) {
+        if (task.cancelled()) {
+            return;
+        }
+        if (!task.compareAndSetState(TimerTask.INIT, TimerTask.SCHEDULED)
+                && !task.compareAndSetState(TimerTask.EXPIRED, TimerTask.SCHEDULED)) {
+            throw new IllegalStateException("The task is already scheduled.");
+        }
+        task.executeMs(System.currentTimeMillis() + Math.max(task.delayMs(), 0));
+        task.wheel(this);
+        scheduled.incrementAndGet();
+        submissions.offer(task);
+        if (wakeup != null && Thread.currentThread() != worker) {
+            wakeup.run();
+        }
+    }
+
+    /**
+     * Sets the hook run after a thread other than the wheel thread schedules a task,
+     * used when the wheel is advanced by a loop that blocks until its next deadline.
+     */
+    public void wakeup(Runnable wakeup) {
+        this.wakeup = wakeup;
+    }
+
+    /**
+     * The time the wheel next needs to be advanced, called by the wheel thread after {@link #advance}.
+     * Only the buckets of the lowest level are scanned, when they are empty the next cascade is returned.
+     * @return -1 if no task is pending
+     */
+    public long nextAdvanceMs() {
+        if (pending() <= 0 && submissions.isEmpty()) {
+            return -1;
+        }
+        if (!submissions.isEmpty()) {
+            return System.currentTimeMillis();
+        }
+        for (long tick = currentTick; tick < currentTick + wheelSize; tick++) {
+            if (buckets[(int) (tick & mask)] != null || (tick & mask) == 0) {
+                return tickStartMs(tick);
+            }
+        }
+        return tickStartMs(currentTick + wheelSize);
+    }
+
+    void cancel(TimerTask task) {
+        cancelled.incrementAndGet();
+        if (Thread.currentThread() == worker) {
+            unlink(task);
+        } else {
+            cancellations.offer(task);
+        }
+    }
+
+    /**
+     * Moves the wheel to the given time, called by the wheel thread only.
+     * @return the number of expired tasks
+     */
+    public int advance(long nowMs) {
+        if (worker == null) {
+            worker = Thread.currentThread();
+        }
+        TimerTask task;
+        while ((task = submissions.poll()) != null) {
+            // a task cancelled before it was linked is dropped here
+            if (task.state() == TimerTask.SCHEDULED) {
+                link(task);
+            }
+        }
+        while ((task = cancellations.poll()) != null) {
+            unlink(task);
+        }
+        int expiredNum = 0;
+        while (tickStartMs(currentTick) <= nowMs) {
+            cascade();
+            expiredNum += expireBucket((int) (currentTick & mask));
+            currentTick++;
+        }
+        expired += expiredNum;
+        return expiredNum;
+    }
+
+    @Override
+    public void run() {
+        for (; ; ) {
+            advance(System.currentTimeMillis());
+            long waitMs = tickStartMs(currentTick) - System.currentTimeMillis();
+            if (waitMs > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(waitMs));
+            }
+        }
+    }
+
+    private void link(TimerTask task) {
+        // the task expires at the end of the tick its deadline falls in
+        long deadlineTick = Math.max(deadlineTick(task), currentTick);
+        long delta = deadlineTick - currentTick;
+        if (delta >= range) {
+            // wait in the farthest bucket of the top level
+            deadlineTick = currentTick + range - 1;
+            delta = range - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        int index = level * wheelSize + (int) ((deadlineTick >>> (bits * level)) & mask);
+        task.bucket = index;
+        task.prev = null;
+        task.next = buckets[index];
+        if (buckets[index] != null) {
+            buckets[index].prev = task;
+        }
+        buckets[index] = task;
+    }
+
+    /**
+     * Moves the tasks of the upper level buckets that start at the current tick down to the lower levels,
+     * from the highest level whose bucket starts here, so that every task cascades as far as it can.
+     */
+    private void cascade() {
+        if (currentTick == 0) {
+            return;
+        }
+        int level = 0;
+        while (level + 1 < levels && (currentTick & ((1L << (bits * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            int index = level * wheelSize + (int) ((currentTick >>> (bits * level)) & mask);
+            TimerTask task = buckets[index];
+            buckets[index] = null;
+            while (task != null) {
+                TimerTask next = task.next;
+                task.bucket = -1;
+                link(task);
+                task = next;
+            }
+        }
+    }
+
+    private void unlink(TimerTask task) {
+        if (task.bucket < 0) {
+            return;
+        }
+        if (task.prev == null) {
+            buckets[task.bucket] = task.next;
+        } else {
+            task.prev.next = task.next;
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        task.prev = null;
+        task.next = null;
+        task.bucket = -1;
+    }
+
+    private int expireBucket(int index) {
+        int expiredNum = 0;
+        TimerTask task = buckets[index];
+        while (task != null) {
+            TimerTask next = task.next;
+            if (deadlineTick(task) > currentTick) {
+                // parked beyond the range of a single level wheel
+                unlink(task);
+                link(task);
+            } else {
+                unlink(task);
+                if (task.compareAndSetState(TimerTask.SCHEDULED, TimerTask.EXPIRED)) {
+                    expiredTasks.offer(task);
+                    expiredNum++;
+                }
+            }
+            task = next;
+        }
+        return expiredNum;
+    }
+
+    private long deadlineTick(TimerTask task) {
+        return (task.executeMs() - startMs + tickMs - 1) / tickMs;
+    }
+
+    private long tickStartMs(long tick) {
+        return startMs + tick * tickMs;
+    }
+
+    /**
+     * The number of tasks that are scheduled but have neither expired nor been cancelled.
+     */
+    public long pending() {
+        return scheduled.get() - expired - cancelled.get();
+    }
+
+    public long expired() {
+        return expired;
+    }
+
+    public long cancelled() {
+        return cancelled.get();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An unbounded lock-free queue for many producer threads and a single consumer thread.
+ * A producer swaps itself in as the tail with one atomic exchange and then links the previous tail to itself,
+ * so offering never blocks and never fails. Only the consumer thread may call {@link #poll()}.
+ * Between the exchange and the link the element is not yet visible to the consumer,
+ * producers that need the consumer to notice it should signal after {@link #offer} returns.
+ */
+public class MpscLinkedQueue<E> {
+
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;
+
+    public MpscLinkedQueue() {
+        Node<E> stub = new Node<>(null);
+        head = stub;
+        tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Called by any thread.
+     */
+    public void offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        Node<E> node = new Node<>(element);
+        Node<E> prev = tail.getAndSet(node);
+        Node.NEXT.lazySet(prev, node);
+    }
+
+    /**
+     * Called by the consumer thread only.
+     * @return null if the queue is empty
+     */
+    public E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E element = next.element;
+        // the node becomes the new stub
+        next.element = null;
+        head = next;
+        return element;
+    }
+
+    /**
+     * Called by the consumer thread only.
+     */
+    public E peek() {
+        Node<E> next = head.next;
+        return next == null ? null : next.element;
+    }
+
+    /**
+     * Called by the consumer thread only.
+     * An element whose producer has not linked it yet already counts, although {@link #poll()} may not return it yet.
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    private static class Node<E> {
+
+        // class literals are raw, the updater is shared by the nodes of every element type
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        private E element;
+        private volatile Node<E> next;
+
+        Node(E element) {
+            this.element = element;
+        }
+    }
+}
@@ -16,11 +16,27 @@
 
 package org.fufile.utils;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 public abstract class TimerTask implements Runnable {
 
+    static final int INIT = 0;
+    static final int SCHEDULED = 1;
+    static final int EXPIRED = 2;
+    static final int CANCELLED = 3;
+    private static final AtomicIntegerFieldUpdater<TimerTask> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(TimerTask.class, "state");
+
     private long delayMs;
     private long executeMs;
-    private boolean cancelled = false;
+    private volatile boolean cancelled = false;
+
+    private volatile int state = INIT;
+    private volatile HashedTimerWheel wheel;
+    // the intrusive bucket links of HashedTimerWheel, only touched by the wheel thread
+    TimerTask prev;
+    TimerTask next;
+    int bucket = -1;
 
     public TimerTask(long delayMs) {
         this.delayMs = delayMs;
@@ -48,5 +64,21 @@ public abstract class TimerTask implements Runnable {
 
     public void cancel() {
         this.cancelled = true;
+        HashedTimerWheel wheel = this.wheel;
+        if (wheel != null && STATE.compareAndSet(this, SCHEDULED, CANCELLED)) {
+            wheel.cancel(this);
+        }
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+        return STATE.compareAndSet(this, expect, update);
+    }
+
+    int state() {
+        return state;
+    }
+
+    void wheel(HashedTimerWheel wheel) {
+        this.wheel = wheel;
     }
 }
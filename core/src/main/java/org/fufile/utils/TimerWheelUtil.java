@@ -22,7 +22,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class TimerWheelUtil implements Runnable {
+public class TimerWheelUtil implements FufileScheduler, Runnable {
 
     private final TimerWheel lowerWheel;
     private final TimerWheel upperWheel;
@@ -38,6 +38,7 @@ public class TimerWheelUtil implements Runnable {
         this.tasks = tasks;
     }
 
+    @Override
     public void schedule(TimerTask task) {
         if (task.delayMs() <= 0L) {
             if (!tasks.offer(task)) {
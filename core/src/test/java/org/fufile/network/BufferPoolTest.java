@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A set of tests for the BufferPool.
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testReuseSizeClass() {
+        BufferPool pool = new BufferPool(false, 1024, 4);
+        ByteBuffer buffer = pool.allocate(100);
+        Assertions.assertEquals(128, buffer.capacity());
+        Assertions.assertEquals(100, buffer.remaining());
+        Assertions.assertEquals(1, pool.outstanding());
+        pool.release(buffer);
+        Assertions.assertEquals(0, pool.outstanding());
+
+        ByteBuffer reused = pool.allocate(65);
+        Assertions.assertSame(buffer, reused);
+        Assertions.assertEquals(65, reused.remaining());
+        Assertions.assertEquals(1, pool.hits());
+        Assertions.assertEquals(1, pool.misses());
+        Assertions.assertEquals(0.5, pool.hitRate());
+    }
+
+    @Test
+    public void testOversizedBufferIsNotPooled() {
+        BufferPool pool = new BufferPool(true, 1024, 4);
+        ByteBuffer buffer = pool.allocate(4096);
+        Assertions.assertFalse(buffer.isDirect());
+        pool.release(buffer);
+        Assertions.assertNotSame(buffer, pool.allocate(4096));
+        Assertions.assertTrue(pool.allocate(10).isDirect());
+        Assertions.assertEquals(0, pool.hits());
+        Assertions.assertEquals(2, pool.outstanding());
+    }
+
+    @Test
+    public void testFreeListIsBounded() {
+        BufferPool pool = new BufferPool(false, 1024, 1);
+        ByteBuffer first = pool.allocate(64);
+        ByteBuffer second = pool.allocate(64);
+        pool.release(first);
+        pool.release(second);
+        Assertions.assertSame(first, pool.allocate(64));
+        Assertions.assertNotSame(second, pool.allocate(64));
+    }
+}
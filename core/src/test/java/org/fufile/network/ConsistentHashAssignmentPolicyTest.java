@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of tests for the ConsistentHashAssignmentPolicy.
+ */
+public class ConsistentHashAssignmentPolicyTest {
+
+    @Test
+    public void testSameKeySameHandler() {
+        // the policy only reads the number of handlers
+        SocketHandler[] handlers = new SocketHandler[4];
+        HandlerAssignmentPolicy policy = new ConsistentHashAssignmentPolicy();
+        int[] assigned = new int[handlers.length];
+        for (int i = 0; i < 4000; i++) {
+            int handler = policy.assign("node-" + i, handlers);
+            Assertions.assertEquals(handler, policy.assign("node-" + i, handlers));
+            assigned[handler]++;
+        }
+        for (int count : assigned) {
+            Assertions.assertTrue(count > 500, "keys are spread unevenly: " + count);
+        }
+    }
+
+    @Test
+    public void testAddHandlerMovesFewKeys() {
+        HandlerAssignmentPolicy policy = new ConsistentHashAssignmentPolicy();
+        int moved = 0;
+        for (int i = 0; i < 4000; i++) {
+            int before = policy.assign("10.0.0." + i, new SocketHandler[4]);
+            int after = policy.assign("10.0.0." + i, new SocketHandler[5]);
+            if (before != after) {
+                moved++;
+            }
+        }
+        // about one fifth of the keys belong to the new handler
+        Assertions.assertTrue(moved < 4000 * 2 / 5, "too many keys moved: " + moved);
+    }
+}
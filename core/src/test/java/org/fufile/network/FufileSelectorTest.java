@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A set of tests for the blocking select and the wakeup of the FufileSelector.
+ */
+public class FufileSelectorTest {
+
+    private static final long MAX_BLOCK_MS = 10000;
+    // far less than the select timeout, but generous for a loaded machine
+    private static final long WAKEUP_MS = 2000;
+
+    private final AtomicBoolean pendingTasks = new AtomicBoolean();
+    private SocketSelector selector;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void init() {
+        selector = new SocketSelector();
+        selector.pendingTasks(pendingTasks::get);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        selector.close();
+    }
+
+    @Test
+    public void testConnectionWakesUpBlockedSelect() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             SocketChannel client = SocketChannel.open(server.getLocalAddress());
+             SocketChannel accepted = server.accept()) {
+            accepted.configureBlocking(false);
+            Future<Long> handled = executor.submit(() -> {
+                selector.pool(MAX_BLOCK_MS);
+                selector.registerNewConnections();
+                return System.nanoTime();
+            });
+            // let the selector block
+            Thread.sleep(100);
+            long handedOver = System.nanoTime();
+            selector.allocateNewConnections(new FufileSocketChannel("1", accepted, true));
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(handled.get(MAX_BLOCK_MS, TimeUnit.MILLISECONDS) - handedOver);
+            Assertions.assertTrue(elapsedMs < WAKEUP_MS, elapsedMs + " ms");
+            Assertions.assertEquals(1, selector.channelCount());
+        }
+    }
+
+    @Test
+    public void testTaskWakesUpBlockedSelect() throws Exception {
+        Future<Long> handled = executor.submit(() -> {
+            selector.pool(MAX_BLOCK_MS);
+            return System.nanoTime();
+        });
+        Thread.sleep(100);
+        long handedOver = System.nanoTime();
+        // as the task queue of a handler does
+        pendingTasks.set(true);
+        selector.wakeup();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(handled.get(MAX_BLOCK_MS, TimeUnit.MILLISECONDS) - handedOver);
+        Assertions.assertTrue(elapsedMs < WAKEUP_MS, elapsedMs + " ms");
+    }
+
+    /**
+     * Work handed over after a select returned but before the next one resets the flag only finds the flag set,
+     * it does not wake up the selector again, so the next select has to see the work itself.
+     */
+    @Test
+    public void testWorkHandedOverBetweenSelects() throws Exception {
+        Future<Integer> woken = executor.submit(() -> selector.pool(MAX_BLOCK_MS));
+        Thread.sleep(100);
+        selector.wakeup();
+        woken.get(MAX_BLOCK_MS, TimeUnit.MILLISECONDS);
+        pendingTasks.set(true);
+        selector.wakeup();
+        long start = System.nanoTime();
+        selector.pool(MAX_BLOCK_MS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsedMs < WAKEUP_MS, elapsedMs + " ms");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import org.fufile.errors.IllegalNetDataException;
+import org.fufile.transfer.AppendRequestMessage;
+import org.fufile.transfer.TestStringMessage;
+import org.fufile.utils.EchoServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A set of tests for the frame decoding and the send queue of FufileSocketChannel.
+ */
+public class FufileSocketChannelTest {
+
+    private EchoServer server;
+    private SocketSelector selector;
+
+    @BeforeEach
+    public void init() throws Exception {
+        server = new EchoServer();
+        server.start();
+        // a small receive buffer, so that frames straddle reads and some never fit
+        selector = new EchoSelector(new BufferPool(false, 1024 * 1024, 8), 1024, 256);
+        selector.connect("1", new InetSocketAddress("localhost", server.getPort()));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        selector.close();
+        server.close();
+    }
+
+    /**
+     * Tests that pipelined frames are decoded in batches and in order.
+     */
+    @Test
+    @Timeout(30)
+    public void testPipelinedFrames() throws Exception {
+        String largeMessage = createString(3000);
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String message = i % 50 == 7 ? largeMessage + i : "number:" + i;
+            sent.add(message);
+            Assertions.assertTrue(selector.send("1", new Sender(new TestStringMessage(message))));
+        }
+        List<String> received = new ArrayList<>();
+        int batches = 0;
+        while (received.size() < sent.size()) {
+            selector.doPool(100);
+            Iterator<FufileSocketChannel> iterator = selector.getReceive().iterator();
+            while (iterator.hasNext()) {
+                FufileSocketChannel channel = iterator.next();
+                batches++;
+                for (Receiver receiver : channel.receivers()) {
+                    received.add(((TestStringMessage) receiver.message()).message());
+                }
+                channel.completeReceive();
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(sent, received);
+        Assertions.assertTrue(batches < sent.size());
+    }
+
+    /**
+     * Tests that the entries of append requests stay intact after the receive buffers are reused,
+     * for requests that fit the receive buffer and for requests that do not.
+     */
+    @Test
+    @Timeout(30)
+    public void testAppendEntriesOutliveReceiveBuffers() throws Exception {
+        List<byte[]> sent = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] entries = new byte[i % 5 == 0 ? 2000 + i : 20 + i % 40];
+            Arrays.fill(entries, (byte) i);
+            sent.add(entries);
+            Assertions.assertTrue(selector.send("1", new Sender(new AppendRequestMessage(1, i, 1, 0, i, ByteBuffer.wrap(entries)))));
+        }
+        List<AppendRequestMessage> received = new ArrayList<>();
+        while (received.size() < sent.size()) {
+            selector.doPool(100);
+            Iterator<FufileSocketChannel> iterator = selector.getReceive().iterator();
+            while (iterator.hasNext()) {
+                FufileSocketChannel channel = iterator.next();
+                for (Receiver receiver : channel.receivers()) {
+                    received.add((AppendRequestMessage) receiver.message());
+                }
+                channel.completeReceive();
+                iterator.remove();
+            }
+        }
+        for (int i = 0; i < sent.size(); i++) {
+            AppendRequestMessage message = received.get(i);
+            Assertions.assertEquals(i, message.sequence());
+            ByteBuffer entries = message.entries();
+            byte[] bytes = new byte[entries.remaining()];
+            entries.get(bytes);
+            Assertions.assertArrayEquals(sent.get(i), bytes);
+        }
+    }
+
+    @Test
+    public void testIllegalFrameSize() throws Exception {
+        for (int size : new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE - 2, FufileSocketChannel.MAX_FRAME_SIZE + 1, 2, 0, -1}) {
+            try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+                 SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel accepted = server.accept()) {
+                ByteBuffer frame = ByteBuffer.allocate(16);
+                frame.putInt(size).putShort((short) 1).put((byte) 0).flip();
+                while (frame.hasRemaining()) {
+                    client.write(frame);
+                }
+                FufileSocketChannel channel = new FufileSocketChannel("1", accepted, false);
+                Assertions.assertThrows(IllegalNetDataException.class, channel::read, "size " + size);
+            }
+        }
+    }
+
+    @Test
+    public void testSendQueueBackpressure() {
+        for (int i = 0; i < 1024; i++) {
+            Assertions.assertTrue(selector.send("1", new Sender(new TestStringMessage("number:" + i))));
+        }
+        Assertions.assertFalse(selector.send("1", new Sender(new TestStringMessage("overflow"))));
+    }
+
+    private String createString(int len) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+
+    private static class EchoSelector extends SocketSelector {
+
+        EchoSelector(BufferPool bufferPool, int sendQueueSize, int receiveBufferSize) {
+            super("0", new HashMap<>(), bufferPool, sendQueueSize, receiveBufferSize);
+        }
+
+        @Override
+        protected boolean doConnect(SocketChannel channel, InetSocketAddress address) throws IOException {
+            channel.configureBlocking(true);
+            boolean connected = super.doConnect(channel, address);
+            channel.configureBlocking(false);
+            return connected;
+        }
+
+        @Override
+        protected void sendHeartbeat(FufileSocketChannel channel) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.network;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of tests for the IdleStrategy implementations.
+ */
+public class IdleStrategyTest {
+
+    @Test
+    public void testBlocking() {
+        IdleStrategy idleStrategy = IdleStrategy.of(IdleStrategy.BLOCKING, 500);
+        Assertions.assertTrue(idleStrategy instanceof BlockingIdleStrategy);
+        // a busy loop selects without blocking, an idle loop blocks until woken up
+        Assertions.assertEquals(0, idleStrategy.idle(3));
+        Assertions.assertEquals(500, idleStrategy.idle(0));
+        Assertions.assertEquals(500, idleStrategy.idle(0));
+        Assertions.assertEquals(0, idleStrategy.idle(1));
+    }
+
+    @Test
+    public void testSpinYield() {
+        IdleStrategy idleStrategy = IdleStrategy.of(IdleStrategy.SPIN_YIELD, 500);
+        Assertions.assertTrue(idleStrategy instanceof SpinYieldIdleStrategy);
+        // it never blocks, an idle loop spins and then yields
+        Assertions.assertEquals(0, idleStrategy.idle(3));
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(0, idleStrategy.idle(0));
+        }
+        Assertions.assertEquals(0, idleStrategy.idle(1));
+    }
+
+    @Test
+    public void testBusySpin() {
+        IdleStrategy idleStrategy = IdleStrategy.of(IdleStrategy.BUSY_SPIN, 500);
+        Assertions.assertEquals(0, idleStrategy.idle(0));
+        Assertions.assertEquals(0, idleStrategy.idle(1));
+    }
+
+    @Test
+    public void testUnknown() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IdleStrategy.of("sleeping", 500));
+    }
+}
@@ -26,8 +26,11 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Random;
 
@@ -77,17 +80,20 @@ public class SocketSelectorTest {
             Iterator<FufileSocketChannel> iterator = selectable.getReceive().iterator();
             while (iterator.hasNext()) {
                 FufileSocketChannel channel = iterator.next();
-                TestStringMessage message = (TestStringMessage) channel.getReceiver().message();
-                String[] messageArray = message.message().split(":");
-                Assertions.assertEquals("number", messageArray[0]);
-                Integer number = Integer.parseInt(messageArray[1]);
-                int channelId = Integer.parseInt(channel.nodeId());
-                int receivedNumber = receiveCount[channelId];
-                Assertions.assertEquals(receivedNumber, number);
-                receiveCount[channelId] = receivedNumber + 1;
-                if (receiveCount[channelId] != sendNumber) {
-                    selectable.send(channel.nodeId(), new Sender(new TestStringMessage("number:" + receiveCount[channelId])));
+                for (Receiver receiver : channel.receivers()) {
+                    TestStringMessage message = (TestStringMessage) receiver.message();
+                    String[] messageArray = message.message().split(":");
+                    Assertions.assertEquals("number", messageArray[0]);
+                    Integer number = Integer.parseInt(messageArray[1]);
+                    int channelId = Integer.parseInt(channel.nodeId());
+                    int receivedNumber = receiveCount[channelId];
+                    Assertions.assertEquals(receivedNumber, number);
+                    receiveCount[channelId] = receivedNumber + 1;
+                    if (receiveCount[channelId] != sendNumber) {
+                        selectable.send(channel.nodeId(), new Sender(new TestStringMessage("number:" + receiveCount[channelId])));
+                    }
                 }
+                channel.completeReceive();
                 iterator.remove();
             }
         }
@@ -111,7 +117,7 @@ public class SocketSelectorTest {
             selectable.doPool(0);
             if (!selectable.getReceive().isEmpty()) {
                 TestStringMessage message = (TestStringMessage) selectable.getReceive().toArray(
-                        new FufileSocketChannel[0])[0].getReceiver().message();
+                        new FufileSocketChannel[0])[0].receivers().get(0).message();
                 receive = message.message();
                 break;
             }
@@ -119,6 +125,81 @@ public class SocketSelectorTest {
         Assertions.assertEquals(data, receive);
     }
 
+    /**
+     * Tests that a channel migrated to another selector keeps its queued sends and its partially read frame.
+     */
+    @Test
+    public void testMigrationKeepsQueuedSendsAndPartialFrame() throws Exception {
+        BufferPool sourcePool = new BufferPool(false, 1024 * 1024, 8);
+        BufferPool targetPool = new BufferPool(false, 1024 * 1024, 8);
+        try (ServerSocketChannel peerServer = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             BlockingConnectionSelector source = new BlockingConnectionSelector(sourcePool);
+             BlockingConnectionSelector target = new BlockingConnectionSelector(targetPool)) {
+            source.connect("1", (InetSocketAddress) peerServer.getLocalAddress());
+            try (SocketChannel peer = peerServer.accept()) {
+                FufileSocketChannel channel = source.connectedNodes.get("1");
+                // the frame is larger than the receive buffer, so its head is moved into a dedicated payload buffer
+                String data = createRandomString(600);
+                ByteBuffer frame = new Sender(new TestStringMessage(data)).payload();
+                ByteBuffer head = frame.duplicate();
+                head.limit(300);
+                writeFully(peer, head);
+                frame.position(300);
+                while (sourcePool.outstanding() < 2) {
+                    source.doPool(100);
+                }
+                Assertions.assertTrue(channel.receivers().isEmpty());
+
+                ByteBuffer expected = ByteBuffer.allocate(1024);
+                for (int i = 0; i < 10; i++) {
+                    Sender sender = new Sender(new TestStringMessage("number:" + i));
+                    expected.put(sender.payload().duplicate());
+                    Assertions.assertTrue(source.send("1", sender));
+                }
+                expected.flip();
+                Assertions.assertEquals(10, channel.queuedSends());
+
+                source.deregister(channel);
+                Assertions.assertEquals(0, source.channelCount());
+                Assertions.assertEquals(0, sourcePool.outstanding());
+                target.adoptConnection(channel);
+                target.registerNewConnections();
+                Assertions.assertEquals(1, target.channelCount());
+                Assertions.assertEquals(2, targetPool.outstanding());
+
+                writeFully(peer, frame);
+                String received = null;
+                while (received == null || channel.queuedSends() > 0) {
+                    target.doPool(100);
+                    Iterator<FufileSocketChannel> iterator = target.getReceive().iterator();
+                    while (iterator.hasNext()) {
+                        FufileSocketChannel receivedChannel = iterator.next();
+                        Assertions.assertSame(channel, receivedChannel);
+                        Assertions.assertEquals(1, receivedChannel.receivers().size());
+                        received = ((TestStringMessage) receivedChannel.receivers().get(0).message()).message();
+                        receivedChannel.completeReceive();
+                        iterator.remove();
+                    }
+                }
+                Assertions.assertEquals(data, received);
+                Assertions.assertEquals(1, targetPool.outstanding());
+
+                ByteBuffer sent = ByteBuffer.allocate(expected.remaining());
+                while (sent.hasRemaining()) {
+                    peer.read(sent);
+                }
+                sent.flip();
+                Assertions.assertEquals(expected, sent);
+            }
+        }
+    }
+
+    private void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
     private String createRandomString(int len) {
         String str = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
         Random random = new Random();
@@ -145,6 +226,10 @@ public class SocketSelectorTest {
             super();
         }
 
+        public BlockingConnectionSelector(BufferPool bufferPool) {
+            super("0", new HashMap<>(), bufferPool, FufileSocketChannel.DEFAULT_SEND_QUEUE_SIZE, 256);
+        }
+
         @Override
         protected boolean doConnect(SocketChannel channel, InetSocketAddress address) throws IOException {
             channel.configureBlocking(true);
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.config.FufileConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of tests for the ApplyPipeline.
+ * The data of an entry is its apply key, an empty key has none.
+ */
+public class ApplyPipelineTest {
+
+    private static final String BARRIER = "barrier";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testOrder() throws Exception {
+        AtomicLong appliedCount = new AtomicLong();
+        AtomicInteger violations = new AtomicInteger();
+        Map<Object, Long> lastIndexes = new ConcurrentHashMap<>();
+        RaftBusiness raftBusiness = new KeyedBusiness() {
+            @Override
+            public void apply(long index, byte[] data) {
+                Object key = applyKey(data);
+                if (key == null) {
+                    // everything before a barrier is applied and nothing after it
+                    if (appliedCount.get() != index - 1) {
+                        violations.incrementAndGet();
+                    }
+                } else {
+                    Long lastIndex = lastIndexes.put(key, index);
+                    if (lastIndex != null && lastIndex > index) {
+                        violations.incrementAndGet();
+                    }
+                }
+                appliedCount.incrementAndGet();
+            }
+        };
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, 1024 * 1024);
+             RaftSystem system = system(raftLog, raftBusiness)) {
+            for (int i = 1; i <= 20000; i++) {
+                raftLog.append(1, data(i % 1000 == 0 ? BARRIER : "key-" + i % 7));
+            }
+            system.start();
+            // commit in steps, as the leader does
+            for (long index = 1000; index <= 20000; index += 1000) {
+                system.properties().lastCommittedLogIndex(index);
+                system.committed(index);
+            }
+            awaitApplied(system, 20000);
+            Assertions.assertEquals(0, violations.get());
+            Assertions.assertEquals(20000, appliedCount.get());
+            Assertions.assertEquals(0, system.applyLag());
+        }
+    }
+
+    @Test
+    public void testDisjointKeysInParallel() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger waited = new AtomicInteger();
+        RaftBusiness raftBusiness = new KeyedBusiness() {
+            @Override
+            public void apply(long index, byte[] data) {
+                if (index == 1) {
+                    // the entry of key b after it is applied meanwhile
+                    try {
+                        if (latch.await(10, TimeUnit.SECONDS)) {
+                            waited.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    latch.countDown();
+                }
+            }
+        };
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, 1024 * 1024);
+             RaftSystem system = system(raftLog, raftBusiness)) {
+            raftLog.append(1, data("a"));
+            raftLog.append(1, data("b"));
+            system.start();
+            system.properties().lastCommittedLogIndex(2);
+            system.committed(2);
+            awaitApplied(system, 2);
+            Assertions.assertEquals(1, waited.get());
+        }
+    }
+
+    private static RaftSystem system(RaftLog raftLog, RaftBusiness raftBusiness) {
+        return new RaftSystem(new FufileConfig(new Properties()), raftLog, raftBusiness, new HashMap<>(), task -> {
+        });
+    }
+
+    private static void awaitApplied(RaftSystem system, long index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (system.lastAppliedLogIndex() < index && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(index, system.lastAppliedLogIndex());
+    }
+
+    private static byte[] data(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private abstract static class KeyedBusiness implements RaftBusiness {
+
+        @Override
+        public Object applyKey(byte[] data) {
+            String key = new String(data, StandardCharsets.UTF_8);
+            return BARRIER.equals(key) ? null : key;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.network.FufileSocketChannel;
+import org.fufile.network.Receiver;
+import org.fufile.network.Sender;
+import org.fufile.utils.TimerTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_MAX_BYTES;
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_MAX_IN_FLIGHT;
+import static org.fufile.config.ConfigKeys.RAFT_APPEND_TIMEOUT_MS;
+import static org.fufile.config.ConfigKeys.RAFT_MEMBERSHIP_SIZE;
+
+/**
+ * A set of tests for the LeaderState.
+ * The nodes are connected by in-memory links that deliver a message one round after it was sent,
+ * the scheduled tasks are collected and run by the test.
+ */
+public class LeaderStateTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<RaftLog> raftLogs = new ArrayList<>();
+    private final List<Link> links = new ArrayList<>();
+    private final List<TimerTask> tasks = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (RaftLog raftLog : raftLogs) {
+            raftLog.close();
+        }
+    }
+
+    @Test
+    public void testPipelinedReplication() throws Exception {
+        int rounds = replicate("serial", 1);
+        int pipelinedRounds = replicate("pipelined", 8);
+        Assertions.assertTrue(pipelinedRounds * 4 < rounds, pipelinedRounds + " vs " + rounds + " rounds");
+    }
+
+    private int replicate(String name, int maxInFlight) throws IOException {
+        RaftSystem leader = node(name + "-1", maxInFlight);
+        RaftSystem follower2 = node(name + "-2", maxInFlight);
+        RaftSystem follower3 = node(name + "-3", maxInFlight);
+        connect(leader, "2", follower2);
+        connect(leader, "3", follower3);
+        becomeLeader(leader, 1);
+        for (int i = 1; i <= 2000; i++) {
+            leader.raftLog().append(1, data(i));
+        }
+        LeaderState leaderState = (LeaderState) leader.membershipState(MembershipState.LEADER_STATE);
+        leaderState.replicate();
+        int rounds = deliverAll();
+        Assertions.assertEquals(2000, leader.properties().lastCommittedLogIndex());
+        assertSameLog(leader.raftLog(), follower2.raftLog());
+        assertSameLog(leader.raftLog(), follower3.raftLog());
+        return rounds;
+    }
+
+    @Test
+    public void testProbeConflictingFollower() throws Exception {
+        RaftSystem leader = node("1", 8);
+        RaftSystem follower2 = node("2", 8);
+        RaftSystem follower3 = node("3", 8);
+        connect(leader, "2", follower2);
+        connect(leader, "3", follower3);
+        // follower 2 holds a longer suffix of an old leader of term 2, follower 3 holds nothing
+        for (int i = 1; i <= 300; i++) {
+            follower2.raftLog().append(i <= 10 ? 1 : 2, data(i <= 10 ? i : -i));
+        }
+        for (int i = 1; i <= 100; i++) {
+            leader.raftLog().append(i <= 10 ? 1 : 3, data(i));
+        }
+        becomeLeader(leader, 3);
+        ((LeaderState) leader.membershipState(MembershipState.LEADER_STATE)).replicate();
+        deliverAll();
+        Assertions.assertEquals(100, leader.properties().lastCommittedLogIndex());
+        Assertions.assertEquals(3, follower2.properties().term());
+        assertSameLog(leader.raftLog(), follower2.raftLog());
+        assertSameLog(leader.raftLog(), follower3.raftLog());
+
+        // new entries are committed to the followers with the next request
+        leader.raftLog().append(3, data(101));
+        ((LeaderState) leader.membershipState(MembershipState.LEADER_STATE)).replicate();
+        deliverAll();
+        Assertions.assertEquals(101, leader.properties().lastCommittedLogIndex());
+        Assertions.assertEquals(100, follower2.properties().lastCommittedLogIndex());
+        assertSameLog(leader.raftLog(), follower2.raftLog());
+    }
+
+    @Test
+    public void testRetransmitAfterLostAnswers() throws Exception {
+        RaftSystem leader = node("1", 4);
+        RaftSystem follower2 = node("2", 4);
+        RaftSystem follower3 = node("3", 4);
+        connect(leader, "2", follower2);
+        connect(leader, "3", follower3);
+        tasks.clear();
+        becomeLeader(leader, 1);
+        LeaderState leaderState = (LeaderState) leader.membershipState(MembershipState.LEADER_STATE);
+        for (int i = 1; i <= 100; i++) {
+            leader.raftLog().append(1, data(i));
+        }
+        leaderState.replicate();
+        // the first answers of follower 2 get through, the rest are lost and its window stays full
+        deliverAll();
+        Link fromFollower2 = links.get(1);
+        fromFollower2.dropping = true;
+        for (int i = 101; i <= 400; i++) {
+            leader.raftLog().append(1, data(i));
+            leaderState.replicate();
+        }
+        deliverAll();
+        fromFollower2.dropping = false;
+        for (int i = 401; i <= 500; i++) {
+            leader.raftLog().append(1, data(i));
+        }
+        leaderState.replicate();
+        deliverAll();
+        Assertions.assertEquals(500, leader.properties().lastCommittedLogIndex());
+        Assertions.assertTrue(follower2.raftLog().lastIndex() < 500);
+
+        // the timeout probes follower 2 again
+        Thread.sleep(5);
+        runTasks();
+        deliverAll();
+        assertSameLog(leader.raftLog(), follower2.raftLog());
+        assertSameLog(leader.raftLog(), follower3.raftLog());
+    }
+
+    @Test
+    public void testAppendsRestartElectionTimeout() throws Exception {
+        RaftSystem leader = node("1", 8);
+        RaftSystem follower2 = node("2", 8);
+        RaftSystem follower3 = node("3", 8);
+        connect(leader, "2", follower2);
+        connect(leader, "3", follower3);
+        // the followers are connected to the leader, so an expired election timeout starts an election
+        connectedNodes(follower2).put("1", links.get(1));
+        connectedNodes(follower3).put("1", links.get(3));
+        tasks.clear();
+        becomeLeader(leader, 1);
+        FollowerState followerState2 = (FollowerState) follower2.membershipState(MembershipState.FOLLOWER_STATE);
+        FollowerState followerState3 = (FollowerState) follower3.membershipState(MembershipState.FOLLOWER_STATE);
+        followerState2.scheduleRandomElectionTimeoutTask();
+        followerState3.scheduleRandomElectionTimeoutTask();
+        TimerTask[] timeouts = {followerState2.electionTimeoutTask, followerState3.electionTimeoutTask};
+        LeaderState leaderState = (LeaderState) leader.membershipState(MembershipState.LEADER_STATE);
+        for (int i = 1; i <= 100; i++) {
+            leader.raftLog().append(1, data(i));
+            leaderState.replicate();
+            deliverAll();
+        }
+        Assertions.assertEquals(100, leader.properties().lastCommittedLogIndex());
+
+        // the timeouts scheduled before the appends expire, the restarted ones have not
+        Assertions.assertNotSame(timeouts[0], followerState2.electionTimeoutTask);
+        Assertions.assertNotSame(timeouts[1], followerState3.electionTimeoutTask);
+        for (TimerTask timeout : timeouts) {
+            if (!timeout.cancelled()) {
+                timeout.run();
+            }
+        }
+        deliverAll();
+        Assertions.assertNotNull(follower2.followerState());
+        Assertions.assertNotNull(follower3.followerState());
+        Assertions.assertEquals(1, follower2.properties().term());
+        Assertions.assertEquals(1, follower3.properties().term());
+        Assertions.assertSame(leaderState, leader.leaderState());
+    }
+
+    /**
+     * Runs the collected tasks that have not been cancelled, as the handler thread does.
+     */
+    private void runTasks() {
+        List<TimerTask> tasks = new ArrayList<>(this.tasks);
+        this.tasks.clear();
+        for (TimerTask task : tasks) {
+            if (!task.cancelled()) {
+                task.run();
+            }
+        }
+    }
+
+    private RaftSystem node(String name, int maxInFlight) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(RAFT_MEMBERSHIP_SIZE, "3");
+        properties.setProperty(RAFT_APPEND_MAX_BYTES, "4096");
+        properties.setProperty(RAFT_APPEND_MAX_IN_FLIGHT, String.valueOf(maxInFlight));
+        properties.setProperty(RAFT_APPEND_TIMEOUT_MS, "1");
+        RaftLog raftLog = new SegmentedRaftLog(dir.resolve(name), 1024 * 1024);
+        raftLogs.add(raftLog);
+        RaftSystem system = new RaftSystem(new FufileConfig(properties), raftLog, null, new HashMap<>(), tasks::add);
+        system.transitionTo(MembershipState.FOLLOWER_STATE, false);
+        return system;
+    }
+
+    private void connect(RaftSystem leader, String followerId, RaftSystem follower) {
+        Link toFollower = new Link(followerId, follower);
+        Link toLeader = new Link("1", leader);
+        toFollower.reverse = toLeader;
+        toLeader.reverse = toFollower;
+        links.add(toFollower);
+        links.add(toLeader);
+        connectedNodes(leader).put(followerId, toFollower);
+    }
+
+    private static Map<String, FufileSocketChannel> connectedNodes(RaftSystem system) {
+        return ((LeaderState) system.membershipState(MembershipState.LEADER_STATE)).connectedNodes;
+    }
+
+    private static void becomeLeader(RaftSystem leader, int term) {
+        leader.properties().term(term);
+        leader.transitionTo(MembershipState.LEADER_STATE, false);
+    }
+
+    /**
+     * Delivers rounds of messages until no message is left.
+     *
+     * @return the number of rounds
+     */
+    private int deliverAll() throws IOException {
+        int rounds = 0;
+        while (true) {
+            int[] queued = new int[links.size()];
+            int total = 0;
+            for (int i = 0; i < links.size(); i++) {
+                queued[i] = links.get(i).queue.size();
+                total += queued[i];
+            }
+            if (total == 0) {
+                return rounds;
+            }
+            for (int i = 0; i < links.size(); i++) {
+                links.get(i).deliver(queued[i]);
+            }
+            rounds++;
+        }
+    }
+
+    private static void assertSameLog(RaftLog expected, RaftLog actual) {
+        Assertions.assertEquals(expected.lastIndex(), actual.lastIndex());
+        for (long i = 1; i <= expected.lastIndex(); i++) {
+            Assertions.assertEquals(expected.term(i), actual.term(i));
+            Assertions.assertArrayEquals(expected.get(i).data(), actual.get(i).data());
+        }
+    }
+
+    private static byte[] data(long i) {
+        byte[] bytes = new byte[100];
+        byte[] name = ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(name, 0, bytes, 0, name.length);
+        return bytes;
+    }
+
+    /**
+     * One direction of a connection, the node id is the node at the other end.
+     */
+    private static class Link extends FufileSocketChannel {
+
+        private final RaftSystem target;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private Link reverse;
+        private boolean dropping = false;
+
+        Link(String nodeId, RaftSystem target) {
+            super(nodeId, null, false);
+            this.target = target;
+        }
+
+        @Override
+        public boolean send(Sender sender) {
+            return dropping || queue.offerLast(sender.payload());
+        }
+
+        void deliver(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer payload = queue.pollFirst();
+                // skip the length
+                payload.getInt();
+                Receiver receiver = new Receiver(payload);
+                if (receiver.messageType == Receiver.REQUEST) {
+                    target.handleRequestMessage(receiver.message(), reverse);
+                } else {
+                    target.handleResponseMessage(receiver.message(), reverse);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.utils.TimerTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.fufile.config.ConfigKeys.RAFT_MEMBERSHIP_SIZE;
+import static org.fufile.config.ConfigKeys.RAFT_PROPOSE_MAX_BATCH;
+
+/**
+ * A set of tests for the ProposalBatcher.
+ * The scheduled tasks are collected and run by the test, no election ever times out.
+ */
+public class ProposalBatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<TimerTask> tasks = new ArrayList<>();
+    private CountingRaftLog raftLog;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        raftLog.close();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        RaftSystem system = system(1, 4);
+        system.transitionTo(MembershipState.LEADER_STATE, false);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            futures.add(system.propose(data(i)));
+        }
+        // the waiting task and one for each full batch
+        Assertions.assertEquals(3, tasks.size());
+        Assertions.assertFalse(futures.get(0).isDone());
+        runTasks();
+        for (int i = 1; i <= 10; i++) {
+            Assertions.assertEquals(i, futures.get(i - 1).get());
+            Assertions.assertArrayEquals(data(i), raftLog.get(i).data());
+        }
+        Assertions.assertEquals(3, raftLog.flushes);
+        Assertions.assertEquals(10, system.properties().lastCommittedLogIndex());
+    }
+
+    @Test
+    public void testNotLeader() throws Exception {
+        RaftSystem system = system(1, 4);
+        CompletableFuture<Long> future = system.propose(data(1));
+        runTasks();
+        Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertEquals(0, raftLog.lastIndex());
+
+        // without followers the entries of a group of three are not committed until the leadership is lost
+        system = system(3, 4);
+        system.transitionTo(MembershipState.LEADER_STATE, false);
+        future = system.propose(data(1));
+        runTasks();
+        Assertions.assertFalse(future.isDone());
+        system.transitionTo(MembershipState.FOLLOWER_STATE, false);
+        Assertions.assertThrows(ExecutionException.class, future::get);
+    }
+
+    private RaftSystem system(int membershipSize, int maxBatch) throws IOException {
+        if (raftLog != null) {
+            raftLog.close();
+        }
+        Properties properties = new Properties();
+        properties.setProperty(RAFT_MEMBERSHIP_SIZE, String.valueOf(membershipSize));
+        properties.setProperty(RAFT_PROPOSE_MAX_BATCH, String.valueOf(maxBatch));
+        raftLog = new CountingRaftLog(new SegmentedRaftLog(dir.resolve("log-" + membershipSize), 1024 * 1024));
+        RaftSystem system = new RaftSystem(new FufileConfig(properties), raftLog, null, new HashMap<>(), tasks::add);
+        // drop the election timeout
+        tasks.clear();
+        return system;
+    }
+
+    private void runTasks() {
+        for (TimerTask task : tasks) {
+            task.run();
+        }
+        tasks.clear();
+    }
+
+    private static byte[] data(long i) {
+        return ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class CountingRaftLog implements RaftLog {
+
+        private final RaftLog raftLog;
+        private int flushes = 0;
+
+        CountingRaftLog(RaftLog raftLog) {
+            this.raftLog = raftLog;
+        }
+
+        @Override
+        public long append(int term, byte[] data) throws IOException {
+            return raftLog.append(term, data);
+        }
+
+        @Override
+        public void append(LogRecord logRecord) throws IOException {
+            raftLog.append(logRecord);
+        }
+
+        @Override
+        public LogRecord get(long index) {
+            return raftLog.get(index);
+        }
+
+        @Override
+        public int term(long index) {
+            return raftLog.term(index);
+        }
+
+        @Override
+        public long firstIndex() {
+            return raftLog.firstIndex();
+        }
+
+        @Override
+        public long lastIndex() {
+            return raftLog.lastIndex();
+        }
+
+        @Override
+        public int lastTerm() {
+            return raftLog.lastTerm();
+        }
+
+        @Override
+        public ByteBuffer read(long fromIndex, int maxBytes) {
+            return raftLog.read(fromIndex, maxBytes);
+        }
+
+        @Override
+        public void truncateFrom(long index) throws IOException {
+            raftLog.truncateFrom(index);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+            raftLog.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            raftLog.close();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.network.FufileSocketChannel;
+import org.fufile.network.Receiver;
+import org.fufile.network.Sender;
+import org.fufile.utils.TimerTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.fufile.config.ConfigKeys.RAFT_APPLY_THREADS;
+import static org.fufile.config.ConfigKeys.RAFT_MEMBERSHIP_SIZE;
+import static org.fufile.config.ConfigKeys.RAFT_READ_LEASE;
+import static org.fufile.config.ConfigKeys.RAFT_READ_TIMEOUT_MS;
+
+/**
+ * A set of tests for the ReadIndex reads.
+ * The nodes are connected by in-memory links that deliver a message one round after it was sent,
+ * the scheduled tasks are collected and run by the test.
+ */
+public class ReadIndexTest {
+
+    private static final long READ_TIMEOUT_MS = 500;
+
+    @TempDir
+    Path dir;
+
+    private final List<TimerTask> tasks = new ArrayList<>();
+    private final List<RaftSystem> systems = new ArrayList<>();
+    private final List<RaftLog> raftLogs = new ArrayList<>();
+    private final List<Link> links = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (RaftSystem system : systems) {
+            system.close();
+        }
+        for (RaftLog raftLog : raftLogs) {
+            raftLog.close();
+        }
+    }
+
+    @Test
+    public void testFollowerRead() throws Exception {
+        Business business = new Business();
+        RaftSystem leader = node("1", false, null);
+        RaftSystem follower = node("2", false, business);
+        connect(leader, "2", follower);
+        connect(leader, "3", node("3", false, null));
+        tasks.clear();
+        becomeLeader(leader, 1);
+        for (int i = 1; i <= 10; i++) {
+            leader.raftLog().append(1, data(i));
+        }
+        leaderState(leader).replicate();
+        deliverAll();
+        Assertions.assertEquals(10, leader.properties().lastCommittedLogIndex());
+
+        CompletableFuture<Integer> read = follower.read(business::size);
+        runTasks();
+        // the request, a round of append requests and the response
+        Assertions.assertEquals(4, deliverAll());
+        Assertions.assertEquals(10, read.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLeaseRead() throws Exception {
+        for (boolean readLease : new boolean[] {false, true}) {
+            RaftSystem leader = node("lease-" + readLease + "-1", readLease, null);
+            connect(leader, "2", node("lease-" + readLease + "-2", readLease, null));
+            connect(leader, "3", node("lease-" + readLease + "-3", readLease, null));
+            tasks.clear();
+            becomeLeader(leader, 1);
+            leader.raftLog().append(1, data(1));
+            leaderState(leader).replicate();
+            deliverAll();
+
+            CompletableFuture<Long> readIndex = leader.readIndex();
+            runTasks();
+            // within the lease the read needs no round of append requests
+            Assertions.assertEquals(readLease, readIndex.isDone());
+            deliverAll();
+            Assertions.assertEquals(1, readIndex.get());
+            links.clear();
+        }
+    }
+
+    @Test
+    public void testNewLeader() throws Exception {
+        Business business = new Business();
+        RaftSystem leader = node("1", false, business);
+        connect(leader, "2", node("2", false, null));
+        connect(leader, "3", node("3", false, null));
+        tasks.clear();
+        // the entries of the old term are not known to be committed before an entry of the new term is
+        for (int i = 1; i <= 5; i++) {
+            leader.raftLog().append(1, data(i));
+        }
+        becomeLeader(leader, 2);
+        CompletableFuture<Integer> read = leader.read(business::size);
+        runTasks();
+        Assertions.assertEquals(2, leader.raftLog().lastTerm());
+        Assertions.assertEquals(6, leader.raftLog().lastIndex());
+        deliverAll();
+        // the empty entry is not applied
+        Assertions.assertEquals(5, read.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(6, leader.lastAppliedLogIndex());
+    }
+
+    /**
+     * Tests that a follower read fails once the leader has not answered it for the read timeout,
+     * or once the connection to the leader is closed.
+     */
+    @Test
+    public void testUnansweredFollowerRead() throws Exception {
+        RaftSystem leader = node("1", false, null);
+        RaftSystem follower = node("2", false, null);
+        connect(leader, "2", follower);
+        connect(leader, "3", node("3", false, null));
+        tasks.clear();
+        becomeLeader(leader, 1);
+        Link toLeader = links.get(1);
+
+        // the request is lost
+        CompletableFuture<Long> readIndex = follower.readIndex();
+        runTasks();
+        toLeader.queue.clear();
+        runTasks();
+        Assertions.assertFalse(readIndex.isDone());
+        Thread.sleep(READ_TIMEOUT_MS + 100);
+        runTasks();
+        Assertions.assertTrue(readIndex.isCompletedExceptionally());
+
+        readIndex = follower.readIndex();
+        runTasks();
+        toLeader.open = false;
+        runTasks();
+        Assertions.assertTrue(readIndex.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests that a leader read fails once a majority has not confirmed the leadership for the read timeout.
+     */
+    @Test
+    public void testUnconfirmedLeaderRead() throws Exception {
+        RaftSystem leader = node("1", false, null);
+        connect(leader, "2", node("2", false, null));
+        connect(leader, "3", node("3", false, null));
+        tasks.clear();
+        becomeLeader(leader, 1);
+        leader.raftLog().append(1, data(1));
+        leaderState(leader).replicate();
+        deliverAll();
+
+        // the followers stop answering
+        CompletableFuture<Long> readIndex = leader.readIndex();
+        runTasks();
+        for (Link link : links) {
+            link.queue.clear();
+        }
+        Assertions.assertFalse(readIndex.isDone());
+        Thread.sleep(READ_TIMEOUT_MS + 100);
+        runTasks();
+        Assertions.assertTrue(readIndex.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testNoLeader() throws Exception {
+        RaftSystem follower = node("1", false, null);
+        tasks.clear();
+        CompletableFuture<Long> readIndex = follower.readIndex();
+        runTasks();
+        Assertions.assertTrue(readIndex.isCompletedExceptionally());
+    }
+
+    private RaftSystem node(String name, boolean readLease, RaftBusiness raftBusiness) throws IOException {
+        RaftLog raftLog = new SegmentedRaftLog(dir.resolve(name), 1024 * 1024);
+        raftLogs.add(raftLog);
+        Properties properties = new Properties();
+        properties.setProperty(RAFT_MEMBERSHIP_SIZE, "3");
+        properties.setProperty(RAFT_APPLY_THREADS, "2");
+        properties.setProperty(RAFT_READ_LEASE, String.valueOf(readLease));
+        properties.setProperty(RAFT_READ_TIMEOUT_MS, String.valueOf(READ_TIMEOUT_MS));
+        RaftSystem system = new RaftSystem(new FufileConfig(properties), raftLog, raftBusiness, new HashMap<>(), tasks::add);
+        system.transitionTo(MembershipState.FOLLOWER_STATE, false);
+        systems.add(system);
+        if (raftBusiness != null) {
+            system.start();
+        }
+        return system;
+    }
+
+    private void connect(RaftSystem leader, String followerId, RaftSystem follower) {
+        Link toFollower = new Link(followerId, follower);
+        Link toLeader = new Link("1", leader);
+        toFollower.reverse = toLeader;
+        toLeader.reverse = toFollower;
+        links.add(toFollower);
+        links.add(toLeader);
+        connectedNodes(leader).put(followerId, toFollower);
+        connectedNodes(follower).put("1", toLeader);
+        follower.properties().leaderId("1");
+    }
+
+    private static Map<String, FufileSocketChannel> connectedNodes(RaftSystem system) {
+        return ((LeaderState) system.membershipState(MembershipState.LEADER_STATE)).connectedNodes;
+    }
+
+    private static LeaderState leaderState(RaftSystem system) {
+        return (LeaderState) system.membershipState(MembershipState.LEADER_STATE);
+    }
+
+    private static void becomeLeader(RaftSystem leader, int term) {
+        leader.properties().term(term);
+        leader.transitionTo(MembershipState.LEADER_STATE, false);
+    }
+
+    /**
+     * Runs the collected tasks, the election timeouts are far longer than a test and stay pending.
+     */
+    private void runTasks() {
+        List<TimerTask> tasks = new ArrayList<>(this.tasks);
+        this.tasks.clear();
+        for (TimerTask task : tasks) {
+            if (isElectionTimeout(task)) {
+                this.tasks.add(task);
+            } else if (!task.cancelled()) {
+                task.run();
+            }
+        }
+    }
+
+    private boolean isElectionTimeout(TimerTask task) {
+        for (RaftSystem system : systems) {
+            if (((MembershipStateSpace) system.membershipState(MembershipState.FOLLOWER_STATE)).electionTimeoutTask == task) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delivers rounds of messages until no message is left.
+     *
+     * @return the number of rounds
+     */
+    private int deliverAll() throws IOException {
+        int rounds = 0;
+        while (true) {
+            int[] queued = new int[links.size()];
+            int total = 0;
+            for (int i = 0; i < links.size(); i++) {
+                queued[i] = links.get(i).queue.size();
+                total += queued[i];
+            }
+            if (total == 0) {
+                return rounds;
+            }
+            for (int i = 0; i < links.size(); i++) {
+                links.get(i).deliver(queued[i]);
+            }
+            rounds++;
+        }
+    }
+
+    private static byte[] data(long i) {
+        return ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Business implements RaftBusiness {
+
+        private final List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Object applyKey(byte[] data) {
+            return null;
+        }
+
+        @Override
+        public void apply(long index, byte[] data) {
+            applied.add(index);
+        }
+
+        int size() {
+            return applied.size();
+        }
+    }
+
+    /**
+     * One direction of a connection, the node id is the node at the other end.
+     */
+    private static class Link extends FufileSocketChannel {
+
+        private final RaftSystem target;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private Link reverse;
+        private boolean open = true;
+
+        Link(String nodeId, RaftSystem target) {
+            super(nodeId, null, false);
+            this.target = target;
+        }
+
+        @Override
+        public boolean send(Sender sender) {
+            return queue.offerLast(sender.payload());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        void deliver(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer payload = queue.pollFirst();
+                // skip the length
+                payload.getInt();
+                Receiver receiver = new Receiver(payload);
+                if (receiver.messageType == Receiver.REQUEST) {
+                    target.handleRequestMessage(receiver.message(), reverse);
+                } else {
+                    target.handleResponseMessage(receiver.message(), reverse);
+                }
+            }
+        }
+    }
+}
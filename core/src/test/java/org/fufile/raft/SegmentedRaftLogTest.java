@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.raft;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A set of tests for the SegmentedRaftLog.
+ */
+public class SegmentedRaftLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAppendAndReopen() throws Exception {
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, SEGMENT_SIZE)) {
+            Assertions.assertEquals(0, raftLog.lastIndex());
+            Assertions.assertEquals(1, raftLog.firstIndex());
+            for (int i = 1; i <= 1000; i++) {
+                Assertions.assertEquals(i, raftLog.append(i / 100, data(i)));
+            }
+            assertEntries(raftLog, 1000);
+        }
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, SEGMENT_SIZE)) {
+            Assertions.assertEquals(1000, raftLog.lastIndex());
+            Assertions.assertEquals(10, raftLog.lastTerm());
+            assertEntries(raftLog, 1000);
+            Assertions.assertNull(raftLog.get(1001));
+            Assertions.assertEquals(-1, raftLog.term(1001));
+            Assertions.assertEquals(0, raftLog.term(0));
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, SEGMENT_SIZE)) {
+            for (int i = 1; i <= 1000; i++) {
+                raftLog.append(1, data(i));
+            }
+            long next = 1;
+            while (next <= 1000) {
+                ByteBuffer buffer = raftLog.read(next, 500);
+                Assertions.assertTrue(buffer.remaining() > 0 && buffer.remaining() <= 500);
+                while (buffer.hasRemaining()) {
+                    LogRecord logRecord = new LogRecord(buffer);
+                    logRecord.deserialize();
+                    Assertions.assertEquals(next, logRecord.index());
+                    Assertions.assertArrayEquals(data(next), logRecord.data());
+                    next++;
+                }
+            }
+            Assertions.assertEquals(0, raftLog.read(1001, 500).remaining());
+        }
+    }
+
+    @Test
+    public void testTruncateFrom() throws Exception {
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, SEGMENT_SIZE)) {
+            for (int i = 1; i <= 1000; i++) {
+                raftLog.append(1, data(i));
+            }
+            // across segments, then within a segment
+            raftLog.truncateFrom(300);
+            Assertions.assertEquals(299, raftLog.lastIndex());
+            raftLog.truncateFrom(250);
+            Assertions.assertEquals(249, raftLog.lastIndex());
+            Assertions.assertEquals(1, raftLog.lastTerm());
+            for (int i = 250; i <= 400; i++) {
+                raftLog.append(new LogRecord(i, 2, data(-i)));
+            }
+            Assertions.assertThrows(RuntimeException.class, () -> raftLog.append(new LogRecord(500, 2, data(500))));
+        }
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, SEGMENT_SIZE)) {
+            // the truncated entries do not come back
+            Assertions.assertEquals(400, raftLog.lastIndex());
+            Assertions.assertEquals(2, raftLog.lastTerm());
+            Assertions.assertArrayEquals(data(249), raftLog.get(249).data());
+            Assertions.assertArrayEquals(data(-250), raftLog.get(250).data());
+            Assertions.assertEquals(2, raftLog.term(400));
+            raftLog.truncateFrom(1);
+            Assertions.assertEquals(0, raftLog.lastIndex());
+            Assertions.assertEquals(1, raftLog.append(3, data(1)));
+        }
+    }
+
+    private static void assertEntries(RaftLog raftLog, int count) {
+        for (int i = 1; i <= count; i++) {
+            LogRecord logRecord = raftLog.get(i);
+            Assertions.assertEquals(i, logRecord.index());
+            Assertions.assertEquals(i / 100, logRecord.term());
+            Assertions.assertEquals(i / 100, raftLog.term(i));
+            Assertions.assertArrayEquals(data(i), logRecord.data());
+        }
+    }
+
+    private static byte[] data(long i) {
+        return ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A set of tests for the Crc32C.
+ */
+public class Crc32CTest {
+
+    @Test
+    public void testKnownValues() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Assertions.assertEquals(0xe3069283, Crc32C.compute(check, 0, check.length));
+        Assertions.assertEquals(0x8a9136aa, Crc32C.compute(new byte[32], 0, 32));
+        Assertions.assertEquals(0, Crc32C.compute(check, 0, 0));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        byte[] bytes = new byte[1000];
+        new Random(0).nextBytes(bytes);
+        Crc32C crc = new Crc32C();
+        crc.update(bytes, 0, 3);
+        for (int i = 3; i < 20; i++) {
+            crc.update(bytes[i]);
+        }
+        crc.update(bytes, 20, bytes.length - 20);
+        Assertions.assertEquals(Crc32C.compute(bytes, 0, bytes.length), (int) crc.getValue());
+    }
+}
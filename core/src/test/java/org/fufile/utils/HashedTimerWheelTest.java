@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of tests for the HashedTimerWheel, the wheel is advanced by the test thread with explicit time.
+ */
+public class HashedTimerWheelTest {
+
+    @Test
+    public void testExpireAfterDeadline() {
+        Queue<TimerTask> expired = new ArrayDeque<>();
+        HashedTimerWheel wheel = new HashedTimerWheel(10, 8, expired);
+        long start = System.currentTimeMillis();
+        TimerTask near = task(25);
+        // beyond one rotation of 80ms
+        TimerTask far = task(300);
+        wheel.schedule(near);
+        wheel.schedule(far);
+        wheel.advance(start);
+        Assertions.assertTrue(expired.isEmpty());
+        Assertions.assertEquals(2, wheel.pending());
+
+        wheel.advance(start + 50);
+        Assertions.assertSame(near, expired.poll());
+        Assertions.assertTrue(near.executeMs() <= start + 50);
+
+        wheel.advance(start + 250);
+        Assertions.assertTrue(expired.isEmpty());
+        wheel.advance(start + 320);
+        Assertions.assertSame(far, expired.poll());
+        Assertions.assertEquals(2, wheel.expired());
+        Assertions.assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void testCancelUnlinksTask() {
+        Queue<TimerTask> expired = new ArrayDeque<>();
+        HashedTimerWheel wheel = new HashedTimerWheel(10, 8, expired);
+        long start = System.currentTimeMillis();
+        TimerTask cancelledBeforeLink = task(20);
+        TimerTask cancelledAfterLink = task(20);
+        TimerTask kept = task(20);
+        wheel.schedule(cancelledBeforeLink);
+        cancelledBeforeLink.cancel();
+        wheel.schedule(cancelledAfterLink);
+        wheel.schedule(kept);
+        wheel.advance(start);
+        // cancelled by the wheel thread itself, unlinked at once
+        cancelledAfterLink.cancel();
+        Assertions.assertEquals(2, wheel.cancelled());
+        Assertions.assertEquals(1, wheel.pending());
+
+        wheel.advance(start + 100);
+        Assertions.assertSame(kept, expired.poll());
+        Assertions.assertTrue(expired.isEmpty());
+        // a cancelled task cannot be scheduled again
+        wheel.schedule(cancelledAfterLink);
+        wheel.advance(start + 200);
+        Assertions.assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void testRescheduleExpiredTask() {
+        Queue<TimerTask> expired = new ArrayDeque<>();
+        HashedTimerWheel wheel = new HashedTimerWheel(10, 8, expired);
+        long start = System.currentTimeMillis();
+        TimerTask task = task(10);
+        wheel.schedule(task);
+        Assertions.assertThrows(IllegalStateException.class, () -> wheel.schedule(task));
+        wheel.advance(start + 30);
+        Assertions.assertSame(task, expired.poll());
+        wheel.schedule(task);
+        wheel.advance(start + 60);
+        Assertions.assertSame(task, expired.poll());
+    }
+
+    @Test
+    public void testHierarchicalLevels() {
+        Queue<TimerTask> expired = new ArrayDeque<>();
+        // 4 buckets per level and 3 levels cover 64 ticks, longer delays are parked in the top level
+        HashedTimerWheel wheel = new HashedTimerWheel(2, 4, 3, expired);
+        long start = System.currentTimeMillis();
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            wheel.schedule(task(random.nextInt(1000)));
+        }
+        wheel.schedule(task(0));
+        int expiredNum = 0;
+        for (long now = start; now <= start + 1100; now++) {
+            wheel.advance(now);
+            TimerTask task;
+            while ((task = expired.poll()) != null) {
+                Assertions.assertTrue(task.executeMs() <= now, "expired early");
+                Assertions.assertTrue(now - task.executeMs() <= 2, "expired more than one tick late");
+                expiredNum++;
+            }
+        }
+        Assertions.assertEquals(2001, expiredNum);
+        Assertions.assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void testNextAdvance() throws InterruptedException {
+        Queue<TimerTask> expired = new ArrayDeque<>();
+        HashedTimerWheel wheel = new HashedTimerWheel(10, 8, 2, expired);
+        AtomicInteger wakeups = new AtomicInteger();
+        wheel.wakeup(wakeups::incrementAndGet);
+        long start = System.currentTimeMillis();
+        wheel.advance(start);
+        Assertions.assertEquals(-1, wheel.nextAdvanceMs());
+
+        // scheduled by the wheel thread itself
+        wheel.schedule(task(35));
+        Assertions.assertEquals(0, wakeups.get());
+        wheel.advance(start);
+        long next = wheel.nextAdvanceMs();
+        Assertions.assertTrue(next >= start + 35 && next <= start + 50, "next advance at " + (next - start));
+
+        Thread other = new Thread(() -> wheel.schedule(task(5)));
+        other.start();
+        other.join();
+        Assertions.assertEquals(1, wakeups.get());
+        Assertions.assertTrue(wheel.nextAdvanceMs() <= System.currentTimeMillis());
+    }
+
+    private static TimerTask task(long delayMs) {
+        return new TimerTask(delayMs) {
+            @Override
+            public void run() {
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields of a snapshot block from a byte array.
+ */
+final class BlockCursor {
+
+    private final byte[] bytes;
+    private int position;
+
+    BlockCursor(byte[] bytes, int position) {
+        this.bytes = bytes;
+        this.position = position;
+    }
+
+    byte readByte() {
+        return bytes[position++];
+    }
+
+    int varInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    String string(int length) {
+        String string = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return string;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void skip(int length) {
+        position += length;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.errors.FufileException;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.FrozenTree;
+import org.fufile.tree.TreeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import static org.fufile.config.ConfigKeys.CHECKPOINT_INTERVAL_MS;
+
+/**
+ * Keeps the {@link FileTree} recoverable from a checkpoint and the tail of the {@link FileLog}.
+ * Every change of the tree goes through this class, which appends it to the log once it succeeded.
+ * A checkpoint freezes the tree at the sequence of the last appended record, writes the frozen tree
+ * as a block snapshot in the background and then deletes the log segments the snapshot covers,
+ * so a restart loads the latest checkpoint and only replays the records after it.
+ * Changes of the same path must not race, as the log has to hold them in the order they were applied.
+ */
+public class CheckpointManager implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointManager.class);
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path dir;
+    private final FileTree fileTree;
+    private final FileLog fileLog;
+    private final long intervalMs;
+    private final SnapshotWriter snapshotWriter = new SnapshotWriter();
+    // changes hold the read lock, so a checkpoint freezes the tree and reads the log sequence between two changes
+    private final StampedLock changeLock = new StampedLock();
+    private final Object checkpointLock = new Object();
+    private ScheduledExecutorService scheduler;
+    private volatile long checkpointSequence = 0;
+    // set under the checkpoint lock, no checkpoint starts after it
+    private volatile boolean closed = false;
+
+    public CheckpointManager(Path dir, FileTree fileTree, FileLog fileLog, FufileConfig config) throws IOException {
+        this(dir, fileTree, fileLog, config.getLong(CHECKPOINT_INTERVAL_MS));
+    }
+
+    public CheckpointManager(Path dir, FileTree fileTree, FileLog fileLog, long intervalMs) throws IOException {
+        this.dir = dir;
+        this.fileTree = fileTree;
+        this.fileLog = fileLog;
+        this.intervalMs = intervalMs;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Loads the latest checkpoint into the empty tree and replays the log after it.
+     *
+     * @return the sequence of the last record applied
+     */
+    public long recover() throws IOException {
+        Path checkpoint = latestCheckpoint();
+        long sequence = 0;
+        if (checkpoint != null) {
+            sequence = SnapshotReader.readLogIndex(checkpoint);
+            new SnapshotLoader(ForkJoinPool.commonPool()).load(checkpoint, fileTree);
+        }
+        checkpointSequence = sequence;
+        long last = fileLog.replay(sequence, fileTree);
+        logger.info("Recovered the tree from checkpoint {} and {} log records.", sequence, last - sequence);
+        return last;
+    }
+
+    /**
+     * Takes checkpoints in the background from now on.
+     */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (fileLog.lastSequence() > checkpointSequence) {
+                    checkpoint();
+                }
+            } catch (Exception e) {
+                if (!closed) {
+                    logger.error("Failed to write a checkpoint.", e);
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a node and appends it to the log.
+     */
+    public TreeNode createFileOrDirNode(String path, boolean isFile, Durability durability) throws IOException {
+        TreeNode treeNode;
+        long sequence;
+        long stamp = changeLock.readLock();
+        try {
+            treeNode = fileTree.createFileOrDirNode(path, isFile);
+            sequence = fileLog.appendCreate(path, isFile, Durability.NONE);
+        } finally {
+            changeLock.unlockRead(stamp);
+        }
+        fileLog.await(sequence, durability);
+        return treeNode;
+    }
+
+    /**
+     * Removes a node and appends it to the log.
+     */
+    public void removeFileOrDirNode(String path, boolean isFile, Durability durability) throws IOException {
+        long sequence;
+        long stamp = changeLock.readLock();
+        try {
+            fileTree.removeFileOrDirNode(path, isFile);
+            sequence = fileLog.appendRemove(path, isFile, Durability.NONE);
+        } finally {
+            changeLock.unlockRead(stamp);
+        }
+        fileLog.await(sequence, durability);
+    }
+
+    /**
+     * Writes a checkpoint of the current tree and deletes what it replaces, the changes go on meanwhile.
+     * The checkpoint sequence is published once the replaced checkpoints and log segments are deleted.
+     *
+     * @return the log sequence the checkpoint covers
+     */
+    public long checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            if (closed) {
+                throw new FufileException("The checkpoint manager is closed.");
+            }
+            FrozenTree frozenTree;
+            long stamp = changeLock.writeLock();
+            try {
+                frozenTree = fileTree.freeze(fileLog.lastSequence());
+            } finally {
+                changeLock.unlockWrite(stamp);
+            }
+            long sequence = frozenTree.logIndex();
+            Path file = checkpointFile(sequence);
+            Path tmp = dir.resolve(file.getFileName() + ".tmp");
+            try {
+                // the covered records must be durable before the log segments are deleted
+                fileLog.sync();
+                snapshotWriter.write(frozenTree, tmp);
+            } finally {
+                frozenTree.close();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+                for (Path old : files) {
+                    if (!old.equals(file)) {
+                        Files.delete(old);
+                    }
+                }
+            }
+            int segments = fileLog.truncateBefore(sequence + 1);
+            checkpointSequence = sequence;
+            logger.info("Wrote checkpoint {} and deleted {} log segments.", sequence, segments);
+            return sequence;
+        }
+    }
+
+    public long checkpointSequence() {
+        return checkpointSequence;
+    }
+
+    private Path latestCheckpoint() throws IOException {
+        Path latest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (latest == null || file.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private Path checkpointFile(long sequence) {
+        return dir.resolve(PREFIX + String.format("%020d", sequence) + SUFFIX);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be forced on every platform
+        }
+    }
+
+    /**
+     * Stops taking checkpoints, a checkpoint that is running is finished first,
+     * so the log may be closed once this returns.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        synchronized (checkpointLock) {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+/**
+ * How far an append to the {@link FileLog} has gone when it returns.
+ */
+public enum Durability {
+
+    /**
+     * Buffered in memory, written by the next append that waits or by closing the log.
+     */
+    NONE("none"),
+
+    /**
+     * Written to the file, it survives a crash of the process.
+     */
+    WRITE("write"),
+
+    /**
+     * Forced to the disk, it survives a power failure. Concurrent appends share one force.
+     */
+    SYNC("sync");
+
+    private final String name;
+
+    Durability(String name) {
+        this.name = name;
+    }
+
+    public static Durability of(String name) {
+        for (Durability durability : values()) {
+            if (durability.name.equals(name)) {
+                return durability;
+            }
+        }
+        throw new IllegalArgumentException("Unknown durability " + name + ".");
+    }
+}
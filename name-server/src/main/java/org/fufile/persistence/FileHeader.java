@@ -20,12 +20,20 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
+/**
+ * The header of a snapshot file, since version {@link #LOG_INDEX_VERSION} it records the index of the last log entry
+ * the snapshot covers.
+ */
 public class FileHeader implements Serialize {
 
+    public static final int LOG_INDEX_VERSION = 3;
+
     private int magic;
 
     private int version;
 
+    private long logIndex;
+
     public FileHeader() {
     }
 
@@ -34,16 +42,35 @@ public class FileHeader implements Serialize {
         this.version = version;
     }
 
+    public FileHeader(int magic, int version, long logIndex) {
+        this.magic = magic;
+        this.version = version;
+        this.logIndex = logIndex;
+    }
+
+    /**
+     * The size of the serialized header.
+     */
+    public int size() {
+        return version >= LOG_INDEX_VERSION ? 16 : 8;
+    }
+
     @Override
     public void serialize(DataOutputStream dataOutputStream) throws IOException {
         dataOutputStream.writeInt(magic);
         dataOutputStream.writeInt(version);
+        if (version >= LOG_INDEX_VERSION) {
+            dataOutputStream.writeLong(logIndex);
+        }
     }
 
     @Override
     public void deserialize(DataInputStream dataInputStream) throws IOException {
         magic = dataInputStream.readInt();
         version = dataInputStream.readInt();
+        if (version >= LOG_INDEX_VERSION) {
+            logIndex = dataInputStream.readLong();
+        }
     }
 
     public int getMagic() {
@@ -61,4 +88,12 @@ public class FileHeader implements Serialize {
     public void setVersion(int version) {
         this.version = version;
     }
+
+    public long getLogIndex() {
+        return logIndex;
+    }
+
+    public void setLogIndex(long logIndex) {
+        this.logIndex = logIndex;
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2021 The Fufile Project
+ * Copyright 2022 The Fufile Project
  *
  * The Fufile Project licenses this file to you under the Apache License,
  * version 2.0 (the "License"); you may not use this file except in compliance
@@ -16,6 +16,538 @@
 
 package org.fufile.persistence;
 
-public class FileLog {
+import org.fufile.config.FufileConfig;
+import org.fufile.errors.FufileException;
+import org.fufile.tree.TreeHandler;
+import org.fufile.utils.Crc32C;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fufile.config.ConfigKeys.FILE_LOG_DURABILITY;
+import static org.fufile.config.ConfigKeys.FILE_LOG_SEGMENT_SIZE;
+
+/**
+ * The append-only edit log of the tree operations, an operation is appended after it succeeded on the tree.
+ * <pre>
+ * segment: int magic, int version, long baseSequence, records, zeros up to the segment size
+ * record:  int length, int crc32c, long sequence, byte operation, path   (length and crc32c cover the rest)
+ * </pre>
+ * The log is a directory of segments numbered in order, a segment is zero-filled to its full size
+ * in the background before it is used, so a force never has to update the size of the file.
+ * Records are numbered by a sequence without gaps. Concurrent appends are collected into one batch,
+ * the first appender that has to wait writes the whole batch and forces it once for every waiting appender,
+ * the others collect the next batch meanwhile.
+ * After a crash, the records of the last segment are read up to the first record that is incomplete,
+ * corrupt or out of sequence, the following appends overwrite it.
+ */
+public class FileLog implements Closeable {
+
+    public static final int MAGIC = ByteBuffer.wrap("FLOG".getBytes()).getInt();
+    public static final int VERSION = 1;
+    public static final byte CREATE_DIR = 0;
+    public static final byte CREATE_FILE = 1;
+    public static final byte REMOVE_DIR = 2;
+    public static final byte REMOVE_FILE = 3;
+    static final int SEGMENT_HEADER_SIZE = 16;
+    // int length, int crc32c, long sequence, byte operation
+    static final int RECORD_HEADER_SIZE = 17;
+    private static final String SUFFIX = ".log";
+    private static final int INITIAL_BATCH_SIZE = 1 << 16;
+    private static final int ZERO_FILL_SIZE = 1 << 20;
+
+    private final Path dir;
+    private final long segmentSize;
+    private final Durability durability;
+    private final ExecutorService preallocator;
+    private final Object lock = new Object();
+
+    // guarded by the lock
+    private byte[] batch = new byte[INITIAL_BATCH_SIZE];
+    private byte[] spareBatch = new byte[INITIAL_BATCH_SIZE];
+    private int batchLength = 0;
+    private long lastSequence;
+    private long writtenSequence;
+    private long syncedSequence;
+    private long syncRequested = 0;
+    private boolean flushing = false;
+    private boolean closed = false;
+    private IOException failure;
+
+    // used by the flushing appender only, the index is read by truncation
+    private FileChannel segment;
+    private volatile long segmentIndex;
+    private long position;
+    private Future<FileChannel> nextSegment;
+
+    public FileLog(Path dir, FufileConfig config) throws IOException {
+        this(dir, config.getLong(FILE_LOG_SEGMENT_SIZE), Durability.of(config.getString(FILE_LOG_DURABILITY)));
+    }
+
+    /**
+     * Opens the log in the directory and recovers the end of the last segment.
+     *
+     * @param durability the durability of the appends that do not give their own
+     */
+    public FileLog(Path dir, long segmentSize, Durability durability) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + 256 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The segment size " + segmentSize + " is out of range.");
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+        Files.createDirectories(dir);
+        preallocator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-log-preallocator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Long> indexes = segmentIndexes();
+        long active = -1;
+        for (int i = indexes.size() - 1; i >= 0 && active < 0; i--) {
+            try (FileChannel channel = FileChannel.open(segmentFile(indexes.get(i)), StandardOpenOption.READ)) {
+                if (readBaseSequence(channel) > 0) {
+                    active = indexes.get(i);
+                }
+            }
+        }
+        if (active < 0) {
+            segmentIndex = indexes.isEmpty() ? 0 : indexes.get(indexes.size() - 1);
+            segment = preallocate(segmentIndex);
+            startSegment(1);
+            lastSequence = 0;
+        } else {
+            segmentIndex = active;
+            segment = FileChannel.open(segmentFile(active), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Scan scan = scan(segment, readBaseSequence(segment), 0, null);
+            position = scan.position;
+            lastSequence = scan.lastSequence;
+            // the appends reuse the sequences after the last valid record,
+            // so an old record behind it must not be read as the next one after a restart
+            zeroFill(segment, position, segmentSize);
+            segment.force(true);
+        }
+        writtenSequence = lastSequence;
+        syncedSequence = lastSequence;
+        nextSegment = preallocator.submit(() -> preallocate(segmentIndex + 1));
+    }
+
+    public long appendCreate(String path, boolean isFile) throws IOException {
+        return append(isFile ? CREATE_FILE : CREATE_DIR, path, durability);
+    }
+
+    public long appendCreate(String path, boolean isFile, Durability durability) throws IOException {
+        return append(isFile ? CREATE_FILE : CREATE_DIR, path, durability);
+    }
+
+    public long appendRemove(String path, boolean isFile) throws IOException {
+        return append(isFile ? REMOVE_FILE : REMOVE_DIR, path, durability);
+    }
+
+    public long appendRemove(String path, boolean isFile, Durability durability) throws IOException {
+        return append(isFile ? REMOVE_FILE : REMOVE_DIR, path, durability);
+    }
+
+    /**
+     * Appends a record and waits until it is as durable as requested.
+     *
+     * @return the sequence of the record
+     */
+    public long append(byte operation, String path, Durability durability) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_SIZE + bytes.length;
+        if (length > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new FufileException("The path is too long for a log segment.");
+        }
+        long sequence;
+        synchronized (lock) {
+            checkOpen();
+            sequence = ++lastSequence;
+            if (batchLength + length > batch.length) {
+                byte[] grown = new byte[Math.max(batch.length * 2, batchLength + length)];
+                System.arraycopy(batch, 0, grown, 0, batchLength);
+                batch = grown;
+            }
+            int offset = batchLength;
+            SerializeUtils.putInt(batch, offset, length);
+            SerializeUtils.putInt(batch, offset + 8, (int) (sequence >>> 32));
+            SerializeUtils.putInt(batch, offset + 12, (int) sequence);
+            batch[offset + 16] = operation;
+            System.arraycopy(bytes, 0, batch, offset + RECORD_HEADER_SIZE, bytes.length);
+            SerializeUtils.putInt(batch, offset + 4, Crc32C.compute(batch, offset + 8, length - 8));
+            batchLength += length;
+            if (durability == Durability.SYNC) {
+                syncRequested = sequence;
+            }
+        }
+        if (durability != Durability.NONE) {
+            flush(sequence, durability);
+        }
+        return sequence;
+    }
+
+    /**
+     * Forces every record appended so far to the disk.
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = lastSequence;
+            syncRequested = sequence;
+        }
+        flush(sequence, Durability.SYNC);
+    }
+
+    public long lastSequence() {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+    /**
+     * Waits until the record of the sequence is as durable as requested,
+     * for a record that was appended with {@link Durability#NONE}.
+     */
+    public void await(long sequence, Durability durability) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        if (durability == Durability.SYNC) {
+            synchronized (lock) {
+                syncRequested = Math.max(syncRequested, sequence);
+            }
+        }
+        flush(sequence, durability);
+    }
+
+    private void flush(long sequence, Durability durability) throws IOException {
+        byte[] flushBatch;
+        int flushLength;
+        long flushSequence;
+        boolean sync;
+        synchronized (lock) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("The file log failed to write.", failure);
+                }
+                if ((durability == Durability.SYNC ? syncedSequence : writtenSequence) >= sequence) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the file log.");
+                }
+            }
+            // this appender writes the batch for everyone, new appends go to the spare batch meanwhile
+            flushing = true;
+            flushBatch = batch;
+            flushLength = batchLength;
+            flushSequence = lastSequence;
+            sync = syncRequested > syncedSequence;
+            batch = spareBatch;
+            batchLength = 0;
+        }
+        IOException error = null;
+        try {
+            write(flushBatch, flushLength);
+            if (sync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            flushing = false;
+            spareBatch = flushBatch;
+            if (error == null) {
+                writtenSequence = flushSequence;
+                if (sync) {
+                    syncedSequence = flushSequence;
+                }
+            } else {
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Writes whole records to the current segment, rolling to the next segment when one does not fit.
+     */
+    private void write(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int end = offset;
+            while (end < length && position + (end - offset) + SerializeUtils.getInt(bytes, end) <= segmentSize) {
+                end += SerializeUtils.getInt(bytes, end);
+            }
+            if (end == offset) {
+                long sequence = ((long) SerializeUtils.getInt(bytes, offset + 8) << 32)
+                        | (SerializeUtils.getInt(bytes, offset + 12) & 0xffffffffL);
+                roll(sequence);
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, end - offset);
+            while (buffer.hasRemaining()) {
+                position += segment.write(buffer, position);
+            }
+            offset = end;
+        }
+    }
+
+    private void roll(long baseSequence) throws IOException {
+        // the records of a segment are durable before any record of the next one
+        segment.force(false);
+        segment.close();
+        try {
+            segment = nextSegment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while preallocating a log segment.");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to preallocate a log segment.", e.getCause());
+        }
+        segmentIndex++;
+        startSegment(baseSequence);
+        long index = segmentIndex + 1;
+        nextSegment = preallocator.submit(() -> preallocate(index));
+    }
+
+    private void startSegment(long baseSequence) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(baseSequence).flip();
+        while (header.hasRemaining()) {
+            segment.write(header, header.position());
+        }
+        position = SEGMENT_HEADER_SIZE;
+    }
+
+    private FileChannel preallocate(long index) throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile(index), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < segmentSize) {
+            zeroFill(channel, size, segmentSize);
+            channel.force(true);
+            syncDirectory();
+        }
+        return channel;
+    }
+
+    private static void zeroFill(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(ZERO_FILL_SIZE, Math.max(0, to - from)));
+        while (from < to) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), to - from));
+            from += channel.write(zeros, from);
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be forced on every platform
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold records before the sequence, the current segment is always kept.
+     * The log must not be closed meanwhile.
+     *
+     * @return the number of segments deleted
+     */
+    public int truncateBefore(long sequence) throws IOException {
+        long active;
+        synchronized (lock) {
+            checkOpen();
+            active = segmentIndex;
+        }
+        List<Long> indexes = segmentIndexes();
+        int deleted = 0;
+        for (int i = 0; i + 1 < indexes.size() && indexes.get(i + 1) <= active; i++) {
+            long nextBaseSequence;
+            try (FileChannel channel = FileChannel.open(segmentFile(indexes.get(i + 1)), StandardOpenOption.READ)) {
+                nextBaseSequence = readBaseSequence(channel);
+            }
+            if (nextBaseSequence == 0 || nextBaseSequence > sequence) {
+                break;
+            }
+            Files.delete(segmentFile(indexes.get(i)));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Applies the records after a sequence to the tree, before anything is appended.
+     * The log must hold every record after the sequence.
+     *
+     * @return the sequence of the last record
+     */
+    public long replay(long afterSequence, TreeHandler treeHandler) throws IOException {
+        long last = afterSequence;
+        for (long index : segmentIndexes()) {
+            if (index > segmentIndex) {
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(segmentFile(index), StandardOpenOption.READ)) {
+                long baseSequence = readBaseSequence(channel);
+                if (baseSequence > last + 1) {
+                    throw new FufileException("The log has no records from " + (last + 1) + " to " + (baseSequence - 1) + ".");
+                }
+                if (baseSequence > 0) {
+                    last = Math.max(last, scan(channel, baseSequence, afterSequence, treeHandler).lastSequence);
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Reads the records of a segment up to the first one that is not valid,
+     * the records after <tt>afterSequence</tt> are applied to the tree if one is given.
+     */
+    private Scan scan(FileChannel channel, long baseSequence, long afterSequence, TreeHandler treeHandler) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        byte[] record = new byte[256];
+        int position = SEGMENT_HEADER_SIZE;
+        long sequence = baseSequence - 1;
+        while (position + RECORD_HEADER_SIZE <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length < RECORD_HEADER_SIZE || length > buffer.limit() - position) {
+                break;
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(record.length * 2, length)];
+            }
+            buffer.position(position);
+            buffer.get(record, 0, length);
+            long recordSequence = ((long) SerializeUtils.getInt(record, 8) << 32) | (SerializeUtils.getInt(record, 12) & 0xffffffffL);
+            if (Crc32C.compute(record, 8, length - 8) != SerializeUtils.getInt(record, 4) || recordSequence != sequence + 1) {
+                break;
+            }
+            sequence = recordSequence;
+            if (treeHandler != null && sequence > afterSequence) {
+                apply(record[16], new String(record, RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE, StandardCharsets.UTF_8),
+                        treeHandler);
+            }
+            position += length;
+        }
+        return new Scan(position, sequence);
+    }
+
+    static void apply(byte operation, String path, TreeHandler treeHandler) {
+        switch (operation) {
+            case CREATE_DIR:
+            case CREATE_FILE:
+                treeHandler.createFileOrDirNode(path, operation == CREATE_FILE);
+                break;
+            case REMOVE_DIR:
+            case REMOVE_FILE:
+                treeHandler.removeFileOrDirNode(path, operation == REMOVE_FILE);
+                break;
+            default:
+                throw new FufileException("Unknown log operation " + operation + ".");
+        }
+    }
+
+    /**
+     * @return the base sequence of the segment, or 0 if it has not been started
+     */
+    private static long readBaseSequence(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return 0;
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            return 0;
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new FufileException("Unsupported log segment version " + header.getInt(4) + ".");
+        }
+        return header.getLong(8);
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private Path segmentFile(long index) {
+        return dir.resolve(String.format("%020d", index) + SUFFIX);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new FufileException("The file log is closed.");
+        }
+    }
+
+    /**
+     * Forces the appended records and closes the segments.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            sync();
+        } finally {
+            preallocator.shutdown();
+            segment.close();
+            try {
+                nextSegment.get().close();
+            } catch (InterruptedException | ExecutionException e) {
+                // the next segment is preallocated again when the log is opened
+            }
+        }
+    }
+
+    private static final class Scan {
+
+        private final int position;
+        private final long lastSequence;
+
+        private Scan(int position, long lastSequence) {
+            this.position = position;
+            this.lastSequence = lastSequence;
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2021 The Fufile Project
+ * Copyright 2022 The Fufile Project
  *
  * The Fufile Project licenses this file to you under the Apache License,
  * version 2.0 (the "License"); you may not use this file except in compliance
@@ -18,5 +18,38 @@ package org.fufile.persistence;
 
 public class SerializeUtils {
 
+    /**
+     * Writes an unsigned LEB128 varint.
+     *
+     * @return the position after the varint
+     */
+    public static int putVarInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
 
+    public static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void putInt(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+    }
+
+    public static int getInt(byte[] buffer, int position) {
+        return buffer[position] << 24 | (buffer[position + 1] & 0xff) << 16
+                | (buffer[position + 2] & 0xff) << 8 | buffer[position + 3] & 0xff;
+    }
 }
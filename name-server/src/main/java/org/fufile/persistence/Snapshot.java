@@ -16,24 +16,31 @@
 
 package org.fufile.persistence;
 
+import org.fufile.errors.FufileException;
 import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeHandler;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.DataInputStream;
 import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 
 public class Snapshot {
 
     public static final int SNAP_MAGIC = ByteBuffer.wrap("FPSS".getBytes()).getInt();
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private DataOutputStream snapshotStream = null;
 
     private String snapshotDir;
 
-    private FileTree fileTree;
+    private TreeHandler fileTree;
 
     private FileHeader fileHeader;
 
@@ -45,7 +52,7 @@ public class Snapshot {
         this.fileTree = new FileTree();
     }
 
-    public Snapshot(String snapshotDir, FileTree fileTree) {
+    public Snapshot(String snapshotDir, TreeHandler fileTree) {
         this.snapshotDir = snapshotDir;
         this.fileTree = fileTree;
         fileHeader = new FileHeader(SNAP_MAGIC, 0);
@@ -53,17 +60,34 @@ public class Snapshot {
 
     public void createClusterSnapshot() throws IOException {
         FileOutputStream fileOutputStream = new FileOutputStream(snapshotDir);
-        snapshotStream = new DataOutputStream(fileOutputStream);
+        snapshotStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream, BUFFER_SIZE));
         fileHeader.serialize(snapshotStream);
         fileTree.clusterSerialize(snapshotStream);
         snapshotStream.close();
     }
 
+    /**
+     * Writes the tree in the checksummed block format of {@link SnapshotWriter}.
+     *
+     * @return the number of records written
+     */
+    public long createBlockSnapshot(SnapshotWriter snapshotWriter) throws IOException {
+        if (!(fileTree instanceof FileTree)) {
+            throw new FufileException("Block snapshots are written from a FileTree.");
+        }
+        return snapshotWriter.write((FileTree) fileTree, Paths.get(snapshotDir));
+    }
+
     public void readSnapshot() throws IOException {
         FileInputStream fileInputStream = new FileInputStream(snapshotDir);
-        DataInputStream dataInputStream = new DataInputStream(fileInputStream);
-        FileHeader fileHeader = new FileHeader();
-        fileHeader.deserialize(dataInputStream);
-        fileTree.deserialize(dataInputStream);
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(fileInputStream, BUFFER_SIZE))) {
+            FileHeader fileHeader = new FileHeader();
+            fileHeader.deserialize(dataInputStream);
+            if (SnapshotReader.isBlockFormat(fileHeader.getVersion())) {
+                new SnapshotReader().read(dataInputStream, fileHeader.getVersion(), fileTree);
+            } else {
+                fileTree.deserialize(dataInputStream);
+            }
+        }
     }
 }
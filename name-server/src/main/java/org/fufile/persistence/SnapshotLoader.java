@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.tree.DirNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.fufile.utils.Crc32C;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a {@link FileTree} from a block snapshot of {@link SnapshotWriter} in time linear in the number of records.
+ * The file is memory-mapped and the blocks are found through the footer. Within a block the records are in preorder,
+ * so each one is appended to the directory of the previous record at its depth, without resolving a path.
+ * Directories are presized from the child counts written since version 2.
+ * The blocks are independent, so with a pool they are loaded in parallel, otherwise in the calling thread.
+ */
+public class SnapshotLoader {
+
+    // blocks are mapped in segments of at most this size
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    private static final int TRAILER_SIZE = 8;
+    private static final int BLOCKS_PER_TASK = 4;
+
+    private final ForkJoinPool pool;
+
+    public SnapshotLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public SnapshotLoader() {
+        this(null);
+    }
+
+    /**
+     * @return the number of records loaded
+     */
+    public long load(Path file, FileTree fileTree) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = read(channel, 0, 8);
+            int version = header.getInt(4);
+            if (header.getInt(0) != Snapshot.SNAP_MAGIC || !SnapshotReader.isBlockFormat(version)) {
+                throw new FufileException("The file " + file + " is not a block snapshot.");
+            }
+            long footerOffset = read(channel, size - TRAILER_SIZE, TRAILER_SIZE).getLong(0);
+            if (footerOffset < 8 || footerOffset > size - TRAILER_SIZE - 20) {
+                throw new FufileException("The snapshot " + file + " has no valid footer.");
+            }
+            ByteBuffer footer = read(channel, footerOffset, (int) (size - TRAILER_SIZE - footerOffset));
+            if (footer.getInt(0) != SnapshotWriter.END_MARKER
+                    || Crc32C.compute(footer.array(), 4, footer.limit() - 8) != footer.getInt(footer.limit() - 4)) {
+                throw new FufileException("The footer of the snapshot " + file + " is corrupt.");
+            }
+            long recordCount = footer.getLong(4);
+            int blockCount = footer.getInt(12);
+            long[] offsets = new long[blockCount + 1];
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = footer.getLong(16 + i * 8);
+            }
+            offsets[blockCount] = footerOffset;
+
+            Blocks blocks = new Blocks(channel, offsets, version, fileTree);
+            long records;
+            if (pool == null) {
+                records = blocks.load(0, blockCount);
+            } else {
+                try {
+                    records = pool.submit(blocks.new LoadTask(0, blockCount)).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new FufileException("Interrupted while loading the snapshot " + file + ".", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new FufileException("Failed to load the snapshot " + file + ".", e.getCause());
+                }
+            }
+            if (records != recordCount) {
+                throw new FufileException("The snapshot " + file + " has " + records + " records, the footer counts " + recordCount + ".");
+            }
+            return records;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new FufileException("The snapshot ends unexpectedly.");
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * The mapped blocks of one snapshot.
+     */
+    private static final class Blocks {
+
+        private final long[] offsets;
+        private final int version;
+        private final FileTree fileTree;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private final int[] segmentOfBlock;
+        private final long[] segmentStarts;
+
+        private Blocks(FileChannel channel, long[] offsets, int version, FileTree fileTree) throws IOException {
+            this.offsets = offsets;
+            this.version = version;
+            this.fileTree = fileTree;
+            int blockCount = offsets.length - 1;
+            segmentOfBlock = new int[blockCount];
+            List<Long> starts = new ArrayList<>();
+            int first = 0;
+            while (first < blockCount) {
+                int last = first + 1;
+                while (last < blockCount && offsets[last + 1] - offsets[first] <= MAX_SEGMENT_SIZE) {
+                    last++;
+                }
+                for (int i = first; i < last; i++) {
+                    segmentOfBlock[i] = segments.size();
+                }
+                starts.add(offsets[first]);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offsets[first], offsets[last] - offsets[first]));
+                first = last;
+            }
+            segmentStarts = new long[starts.size()];
+            for (int i = 0; i < segmentStarts.length; i++) {
+                segmentStarts[i] = starts.get(i);
+            }
+        }
+
+        private long load(int from, int to) {
+            byte[] block = new byte[0];
+            DirNode[] dirs = new DirNode[16];
+            long records = 0;
+            for (int i = from; i < to; i++) {
+                int segment = segmentOfBlock[i];
+                ByteBuffer buffer = segments.get(segment).duplicate();
+                buffer.position((int) (offsets[i] - segmentStarts[segment]));
+                int length = buffer.getInt();
+                int crc = buffer.getInt();
+                if (length < 4 || length > offsets[i + 1] - offsets[i] - 8) {
+                    throw new FufileException("The snapshot block " + i + " has an invalid length " + length + ".");
+                }
+                if (block.length < length) {
+                    block = new byte[length];
+                }
+                buffer.get(block, 0, length);
+                if (Crc32C.compute(block, 0, length) != crc) {
+                    throw new FufileException("The checksum of snapshot block " + i + " does not match.");
+                }
+                dirs = decode(block, dirs);
+                records += SerializeUtils.getInt(block, 0);
+            }
+            return records;
+        }
+
+        /**
+         * Appends the records of a block, the array of directories by depth is returned grown if needed.
+         */
+        private DirNode[] decode(byte[] block, DirNode[] dirs) {
+            int count = SerializeUtils.getInt(block, 0);
+            BlockCursor cursor = new BlockCursor(block, 4);
+            int baseLength = cursor.varInt();
+            dirs[0] = baseLength == 0 ? fileTree.getRootDirNode() : fileTree.getOrCreateDirNode(cursor.string(baseLength));
+            for (int i = 0; i < count; i++) {
+                boolean isFile = cursor.readByte() == SnapshotWriter.FILE;
+                int depth = cursor.varInt();
+                int nameLength = cursor.varInt();
+                int nameOffset = cursor.position();
+                cursor.skip(nameLength);
+                int childCount = !isFile && version >= 2 ? cursor.varInt() : 0;
+                TreeNode treeNode = fileTree.appendChild(dirs[depth - 1], block, nameOffset, nameLength, isFile, childCount);
+                if (!isFile) {
+                    if (depth >= dirs.length) {
+                        DirNode[] grown = new DirNode[Math.max(dirs.length * 2, depth + 1)];
+                        System.arraycopy(dirs, 0, grown, 0, dirs.length);
+                        dirs = grown;
+                    }
+                    dirs[depth] = (DirNode) treeNode;
+                }
+            }
+            return dirs;
+        }
+
+        /**
+         * Loads a range of blocks, splitting it while it is large.
+         */
+        private final class LoadTask extends RecursiveTask<Long> {
+
+            private final int from;
+            private final int to;
+
+            private LoadTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Long compute() {
+                if (to - from <= BLOCKS_PER_TASK) {
+                    return load(from, to);
+                }
+                int middle = (from + to) >>> 1;
+                LoadTask right = new LoadTask(middle, to);
+                right.fork();
+                return new LoadTask(from, middle).compute() + right.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.tree.TreeHandler;
+import org.fufile.utils.Crc32C;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a snapshot in the format of {@link SnapshotWriter} into a {@link TreeHandler},
+ * the checksum of every block and of the footer is verified.
+ */
+public class SnapshotReader {
+
+    /**
+     * @return the number of records read
+     */
+    public long read(Path file, TreeHandler treeHandler) throws IOException {
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            FileHeader fileHeader = new FileHeader();
+            fileHeader.deserialize(dataInputStream);
+            if (fileHeader.getMagic() != Snapshot.SNAP_MAGIC || !isBlockFormat(fileHeader.getVersion())) {
+                throw new FufileException("The file " + file + " is not a block snapshot.");
+            }
+            return read(dataInputStream, fileHeader.getVersion(), treeHandler);
+        }
+    }
+
+    public static boolean isBlockFormat(int version) {
+        return version >= 1 && version <= SnapshotWriter.BLOCK_FORMAT_VERSION;
+    }
+
+    /**
+     * The log index a block snapshot was taken at, 0 before {@link FileHeader#LOG_INDEX_VERSION}.
+     */
+    public static long readLogIndex(Path file) throws IOException {
+        try (DataInputStream dataInputStream = new DataInputStream(Files.newInputStream(file))) {
+            FileHeader fileHeader = new FileHeader();
+            fileHeader.deserialize(dataInputStream);
+            if (fileHeader.getMagic() != Snapshot.SNAP_MAGIC || !isBlockFormat(fileHeader.getVersion())) {
+                throw new FufileException("The file " + file + " is not a block snapshot.");
+            }
+            return fileHeader.getLogIndex();
+        }
+    }
+
+    /**
+     * Reads the blocks and the footer that follow the file header.
+     */
+    public long read(DataInputStream dataInputStream, int version, TreeHandler treeHandler) throws IOException {
+        long records = 0;
+        int blocks = 0;
+        byte[] block = new byte[0];
+        StringBuilder path = new StringBuilder();
+        int[] prefixLengths = new int[16];
+        while (true) {
+            int length = dataInputStream.readInt();
+            if (length == SnapshotWriter.END_MARKER) {
+                break;
+            }
+            int crc = dataInputStream.readInt();
+            if (length < 4) {
+                throw new FufileException("The snapshot block " + blocks + " has an invalid length " + length + ".");
+            }
+            if (block.length < length) {
+                block = new byte[length];
+            }
+            dataInputStream.readFully(block, 0, length);
+            if (Crc32C.compute(block, 0, length) != crc) {
+                throw new FufileException("The checksum of snapshot block " + blocks + " does not match.");
+            }
+            int count = SerializeUtils.getInt(block, 0);
+            BlockCursor cursor = new BlockCursor(block, 4);
+            // the base path of the block
+            path.setLength(0);
+            path.append(cursor.string(cursor.varInt()));
+            prefixLengths[0] = path.length();
+            for (int i = 0; i < count; i++) {
+                boolean isFile = cursor.readByte() == SnapshotWriter.FILE;
+                int depth = cursor.varInt();
+                int nameLength = cursor.varInt();
+                if (depth >= prefixLengths.length) {
+                    int[] grown = new int[Math.max(prefixLengths.length * 2, depth + 1)];
+                    System.arraycopy(prefixLengths, 0, grown, 0, prefixLengths.length);
+                    prefixLengths = grown;
+                }
+                path.setLength(prefixLengths[depth - 1]);
+                path.append('/').append(cursor.string(nameLength));
+                if (!isFile && version >= 2) {
+                    // the child count is only a hint for presizing
+                    cursor.varInt();
+                }
+                prefixLengths[depth] = path.length();
+                try {
+                    treeHandler.createFileOrDirNode(path.toString(), isFile);
+                } catch (NodeAlreadyExistsException e) {
+                    // a directory is created with its first descendant when that is read first
+                    if (isFile) {
+                        throw e;
+                    }
+                }
+            }
+            records += count;
+            blocks++;
+        }
+        long recordCount = dataInputStream.readLong();
+        int blockCount = dataInputStream.readInt();
+        Crc32C footerCrc = new Crc32C();
+        footerCrc.updateInt((int) (recordCount >>> 32));
+        footerCrc.updateInt((int) recordCount);
+        footerCrc.updateInt(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            long offset = dataInputStream.readLong();
+            footerCrc.updateInt((int) (offset >>> 32));
+            footerCrc.updateInt((int) offset);
+        }
+        if ((int) footerCrc.getValue() != dataInputStream.readInt() || recordCount != records || blockCount != blocks) {
+            throw new FufileException("The snapshot footer does not match its blocks.");
+        }
+        return records;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.tree.DirNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.FrozenTree;
+import org.fufile.tree.TreeNode;
+import org.fufile.utils.Crc32C;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a {@link FileTree} in the block snapshot format.
+ * <pre>
+ * header:  {@link FileHeader}, with the log index since version 3
+ * block:   int length, int crc32c, int recordCount, payload      (crc32c and length cover recordCount and payload)
+ * payload: varint baseLength, base path, records
+ * record:  byte type (0 directory, 1 file), varint depth below the base, varint nameLength, name,
+ *          and for a directory varint childCount since version 2, so a loader can presize it
+ * footer:  int -1, long recordCount, int blockCount, long[] blockOffsets, int crc32c, long footerOffset
+ * </pre>
+ * The records of a block are in preorder and only carry the name relative to their parent,
+ * a block names the directory it starts in, so blocks can be decoded in any order.
+ * Subtrees are encoded into blocks in parallel on a {@link ForkJoinPool}
+ * while the calling thread streams the finished blocks to a {@link FileChannel}.
+ * Directories are written too, so empty directories survive.
+ * The tree is written from a {@link FrozenTree}, so the snapshot is the state at its log index
+ * even though the tree keeps changing.
+ */
+public class SnapshotWriter {
+
+    public static final int BLOCK_FORMAT_VERSION = 3;
+    public static final int END_MARKER = -1;
+    static final int BLOCK_HEADER_SIZE = 12;
+    static final byte DIR = 0;
+    static final byte FILE = 1;
+    private static final int BLOCK_SIZE = 1 << 18;
+    // a directory with more children is encoded by its own tasks
+    private static final int SPLIT_SIZE = 1024;
+    private static final int QUEUED_BLOCKS = 64;
+
+    private final ForkJoinPool pool;
+
+    public SnapshotWriter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public SnapshotWriter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Freezes the tree for the time of writing, the snapshot is tagged with log index 0.
+     *
+     * @return the number of records written
+     */
+    public long write(FileTree fileTree, Path file) throws IOException {
+        try (FrozenTree frozenTree = fileTree.freeze(0)) {
+            return write(frozenTree, file);
+        }
+    }
+
+    /**
+     * @return the number of records written
+     */
+    public long write(FrozenTree frozenTree, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Encoding encoding = new Encoding(frozenTree);
+            FileHeader fileHeader = new FileHeader(Snapshot.SNAP_MAGIC, BLOCK_FORMAT_VERSION, frozenTree.logIndex());
+            ByteArrayOutputStream header = new ByteArrayOutputStream(fileHeader.size());
+            fileHeader.serialize(new DataOutputStream(header));
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+
+            TreeNode[] children = frozenTree.children(frozenTree.getRootDirNode());
+            ForkJoinTask<Void> task = pool.submit(encoding.new EncodeTask(new byte[0], children, 0, children.length));
+            List<Long> offsets = new ArrayList<>();
+            long records = 0;
+            try {
+                while (true) {
+                    Block block = encoding.blocks.poll(10, TimeUnit.MILLISECONDS);
+                    if (block == null) {
+                        if (!task.isDone()) {
+                            continue;
+                        }
+                        // nothing is added after the task is done
+                        block = encoding.blocks.poll();
+                        if (block == null) {
+                            break;
+                        }
+                    }
+                    offsets.add(channel.position());
+                    writeFully(channel, ByteBuffer.wrap(block.bytes, 0, block.length));
+                    records += block.records;
+                }
+                task.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while writing the snapshot " + file + ".");
+            } catch (ExecutionException e) {
+                throw new FufileException("Failed to encode the snapshot " + file + ".", e.getCause());
+            } finally {
+                encoding.aborted = true;
+            }
+
+            long footerOffset = channel.position();
+            ByteBuffer footer = ByteBuffer.allocate(4 + 8 + 4 + offsets.size() * 8 + 4 + 8);
+            footer.putInt(END_MARKER).putLong(records).putInt(offsets.size());
+            for (long offset : offsets) {
+                footer.putLong(offset);
+            }
+            footer.putInt(Crc32C.compute(footer.array(), 4, footer.position() - 4));
+            footer.putLong(footerOffset).flip();
+            writeFully(channel, footer);
+            channel.force(true);
+            return records;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Block {
+
+        private final byte[] bytes;
+        private final int length;
+        private final int records;
+
+        private Block(byte[] bytes, int length, int records) {
+            this.bytes = bytes;
+            this.length = length;
+            this.records = records;
+        }
+    }
+
+    /**
+     * The state of one snapshot shared by its encoding tasks.
+     */
+    private static final class Encoding {
+
+        private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+        private final FrozenTree frozenTree;
+        private volatile boolean aborted = false;
+
+        private Encoding(FrozenTree frozenTree) {
+            this.frozenTree = frozenTree;
+        }
+
+        private void emit(Block block) {
+            try {
+                while (!blocks.offer(block, 10, TimeUnit.MILLISECONDS)) {
+                    if (aborted) {
+                        throw new CancellationException("The snapshot writer stopped.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while queueing a snapshot block.");
+            }
+        }
+
+        /**
+         * Encodes the subtrees of a range of children of the directory at <tt>basePath</tt>.
+         */
+        private final class EncodeTask extends RecursiveAction {
+
+            private final byte[] basePath;
+            private final TreeNode[] children;
+            private final int from;
+            private final int to;
+
+            private EncodeTask(byte[] basePath, TreeNode[] children, int from, int to) {
+                this.basePath = basePath;
+                this.children = children;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > SPLIT_SIZE) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new EncodeTask(basePath, children, from, middle), new EncodeTask(basePath, children, middle, to));
+                    return;
+                }
+                BlockEncoder encoder = new BlockEncoder(basePath);
+                List<EncodeTask> forked = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    encode(encoder, children[i], 1, forked);
+                }
+                encoder.flush();
+                for (EncodeTask task : forked) {
+                    task.join();
+                }
+            }
+
+            private void encode(BlockEncoder encoder, TreeNode treeNode, int depth, List<EncodeTask> forked) {
+                if (!(treeNode instanceof DirNode)) {
+                    encoder.record(treeNode, depth, 0);
+                } else {
+                    TreeNode[] childNodes = frozenTree.children((DirNode) treeNode);
+                    encoder.record(treeNode, depth, childNodes.length);
+                    if (childNodes.length > SPLIT_SIZE) {
+                        EncodeTask task = new EncodeTask(encoder.path(depth), childNodes, 0, childNodes.length);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        for (TreeNode childNode : childNodes) {
+                            encode(encoder, childNode, depth + 1, forked);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Encodes the records of one task into blocks of about {@link #BLOCK_SIZE} bytes.
+         */
+        private final class BlockEncoder {
+
+            private final byte[] taskPath;
+            // the names from the task directory down to the current record
+            private byte[][] names = new byte[16][];
+            private byte[] buffer = new byte[BLOCK_SIZE + 1024];
+            private int position = 0;
+            private int records = 0;
+            private int baseDepth = 0;
+
+            private BlockEncoder(byte[] taskPath) {
+                this.taskPath = taskPath;
+            }
+
+            private void record(TreeNode treeNode, int depth, int childCount) {
+                if (position == 0 || position >= BLOCK_SIZE || depth <= baseDepth) {
+                    // the block is full or the record is not below the directory the block starts in
+                    flush();
+                    start(depth - 1);
+                }
+                byte[] name = treeNode.getName();
+                if (depth > names.length) {
+                    byte[][] grown = new byte[names.length * 2][];
+                    System.arraycopy(names, 0, grown, 0, names.length);
+                    names = grown;
+                }
+                names[depth - 1] = name;
+                ensure(1 + 5 + 5 + name.length + 5);
+                boolean isDir = treeNode instanceof DirNode;
+                buffer[position++] = isDir ? DIR : FILE;
+                position = SerializeUtils.putVarInt(buffer, position, depth - baseDepth);
+                position = SerializeUtils.putVarInt(buffer, position, name.length);
+                System.arraycopy(name, 0, buffer, position, name.length);
+                position += name.length;
+                if (isDir) {
+                    position = SerializeUtils.putVarInt(buffer, position, childCount);
+                }
+                records++;
+            }
+
+            /**
+             * The path of the task directory followed by the first <tt>depth</tt> names.
+             */
+            private byte[] path(int depth) {
+                int length = taskPath.length;
+                for (int i = 0; i < depth; i++) {
+                    length += 1 + names[i].length;
+                }
+                byte[] path = new byte[length];
+                System.arraycopy(taskPath, 0, path, 0, taskPath.length);
+                int p = taskPath.length;
+                for (int i = 0; i < depth; i++) {
+                    path[p++] = '/';
+                    System.arraycopy(names[i], 0, path, p, names[i].length);
+                    p += names[i].length;
+                }
+                return path;
+            }
+
+            private void start(int depth) {
+                baseDepth = depth;
+                byte[] base = path(depth);
+                position = BLOCK_HEADER_SIZE;
+                ensure(5 + base.length);
+                position = SerializeUtils.putVarInt(buffer, position, base.length);
+                System.arraycopy(base, 0, buffer, position, base.length);
+                position += base.length;
+            }
+
+            private void ensure(int size) {
+                if (position + size > buffer.length) {
+                    byte[] grown = new byte[Math.max(buffer.length * 2, position + size)];
+                    System.arraycopy(buffer, 0, grown, 0, position);
+                    buffer = grown;
+                }
+            }
+
+            private void flush() {
+                if (records == 0) {
+                    return;
+                }
+                SerializeUtils.putInt(buffer, 0, position - 8);
+                SerializeUtils.putInt(buffer, 8, records);
+                SerializeUtils.putInt(buffer, 4, Crc32C.compute(buffer, 8, position - 8));
+                emit(new Block(buffer, position, records));
+                buffer = new byte[BLOCK_SIZE + 1024];
+                position = 0;
+                records = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.errors.NodeNotFoundException;
+import org.fufile.raft.RaftBusiness;
+import org.fufile.tree.TreeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Applies the replicated changes of the tree.
+ * An entry is a {@link FileLog} operation followed by the UTF-8 path, it is keyed by the top-level directory
+ * of the path, so the top-level subtrees are changed in parallel and the root alone is changed in order.
+ * Creating an existing node or removing a missing one fails the same way on every replica,
+ * such a failure is the result of the entry and is reported to the rejection listener,
+ * any other failure stops applying.
+ */
+public class TreeStateMachine implements RaftBusiness {
+
+    private static final Logger logger = LoggerFactory.getLogger(TreeStateMachine.class);
+
+    private final TreeHandler treeHandler;
+    private final ObjLongConsumer<FufileException> rejectionListener;
+
+    public TreeStateMachine(TreeHandler treeHandler) {
+        this(treeHandler, (e, index) -> logger.debug("The entry {} is rejected: {}", index, e.getMessage()));
+    }
+
+    /**
+     * @param rejectionListener called by the apply threads with the failure and the index of a rejected entry
+     */
+    public TreeStateMachine(TreeHandler treeHandler, ObjLongConsumer<FufileException> rejectionListener) {
+        this.treeHandler = treeHandler;
+        this.rejectionListener = rejectionListener;
+    }
+
+    public static byte[] encode(byte operation, String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = operation;
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+
+    /**
+     * @return the first name of the path, or null for the root
+     */
+    @Override
+    public Object applyKey(byte[] data) {
+        // skip the operation and every leading slash, as the path cursor of the tree does
+        int start = 1;
+        while (start < data.length && data[start] == '/') {
+            start++;
+        }
+        int end = start;
+        while (end < data.length && data[end] != '/') {
+            end++;
+        }
+        return end == start ? null : new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void apply(long index, byte[] data) {
+        try {
+            FileLog.apply(data[0], new String(data, 1, data.length - 1, StandardCharsets.UTF_8), treeHandler);
+        } catch (NodeAlreadyExistsException | NodeNotFoundException e) {
+            rejectionListener.accept(e, index);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The children of a {@link DirNode}, an open-addressing hash table with linear probing keyed by name and node type,
+ * a file and a directory of the same name may coexist.
+ * Insert, lookup and remove are amortized O(1), removal shifts the following entries back instead of
+ * leaving tombstones, so lookups never slow down after many removes.
+ * The index is guarded by its {@link DirNode}, lookups read the table only once and
+ * always terminate, so they may race with a writer as long as the result is validated afterwards.
+ */
+public class ChildIndex implements Iterable<TreeNode> {
+
+    private static final int MIN_CAPACITY = 4;
+    private static final int FILE_SEED = 0x5bd1e995;
+
+    private TreeNode[] slots;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public ChildIndex() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize the number of children the index holds without growing
+     */
+    public ChildIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 2 / 3 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        slots = new TreeNode[capacity];
+        mask = capacity - 1;
+        // the maximum load factor is 2/3
+        resizeThreshold = capacity * 2 / 3;
+    }
+
+    public TreeNode get(String name, boolean isFile) {
+        return find(name, 0, name.length(), Names.hash(name, 0, name.length()), isFile);
+    }
+
+    /**
+     * Looks up the current name of the cursor without materializing it.
+     */
+    TreeNode get(PathCursor cursor, boolean isFile) {
+        return find(cursor.path(), cursor.start(), cursor.end(), cursor.hash(), isFile);
+    }
+
+    private TreeNode find(String path, int start, int end, int hash, boolean isFile) {
+        TreeNode[] slots = this.slots;
+        int mask = slots.length - 1;
+        for (int i = slot(hash, isFile, mask); ; i = (i + 1) & mask) {
+            TreeNode node = slots[i];
+            if (node == null || node.getHash() == hash && (node instanceof FileNode) == isFile
+                    && Names.matches(node.getName(), path, start, end)) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * @return false if a node of the same name and type already exists
+     */
+    public boolean add(TreeNode node) {
+        boolean isFile = node instanceof FileNode;
+        int hash = node.getHash();
+        int i = slot(hash, isFile);
+        for (; slots[i] != null; i = (i + 1) & mask) {
+            TreeNode other = slots[i];
+            if (other.getHash() == hash && (other instanceof FileNode) == isFile
+                    && Arrays.equals(other.getName(), node.getName())) {
+                return false;
+            }
+        }
+        slots[i] = node;
+        if (++size > resizeThreshold) {
+            resize(slots.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return the removed node, or null if there is no such node
+     */
+    public TreeNode remove(String name, boolean isFile) {
+        TreeNode node = get(name, isFile);
+        return node != null && remove(node) ? node : null;
+    }
+
+    /**
+     * Removes the given node instance.
+     *
+     * @return false if the node is not in the index
+     */
+    public boolean remove(TreeNode node) {
+        for (int i = slot(node); slots[i] != null; i = (i + 1) & mask) {
+            if (slots[i] == node) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeAt(int i) {
+        // shift back the entries of the probe sequence that would no longer be reachable
+        for (int j = (i + 1) & mask; slots[j] != null; j = (j + 1) & mask) {
+            int home = slot(slots[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = null;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * A copy of the children, in table order.
+     */
+    public TreeNode[] toArray() {
+        TreeNode[] nodes = new TreeNode[size];
+        int n = 0;
+        for (TreeNode node : slots) {
+            if (node != null) {
+                nodes[n++] = node;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Iterates the children in table order, the index must not be modified during the iteration.
+     */
+    @Override
+    public Iterator<TreeNode> iterator() {
+        return new Iterator<TreeNode>() {
+
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < slots.length && slots[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < slots.length;
+            }
+
+            @Override
+            public TreeNode next() {
+                if (next >= slots.length) {
+                    throw new NoSuchElementException();
+                }
+                TreeNode node = slots[next];
+                next = advance(next + 1);
+                return node;
+            }
+        };
+    }
+
+    private void resize(int capacity) {
+        // fill the new table before publishing it to racing lookups
+        TreeNode[] table = new TreeNode[capacity];
+        int newMask = capacity - 1;
+        for (TreeNode node : slots) {
+            if (node != null) {
+                int i = slot(node.getHash(), node instanceof FileNode, newMask);
+                while (table[i] != null) {
+                    i = (i + 1) & newMask;
+                }
+                table[i] = node;
+            }
+        }
+        slots = table;
+        mask = newMask;
+        resizeThreshold = capacity * 2 / 3;
+    }
+
+    private int slot(TreeNode node) {
+        return slot(node.getHash(), node instanceof FileNode, mask);
+    }
+
+    private int slot(int hash, boolean isFile) {
+        return slot(hash, isFile, mask);
+    }
+
+    private static int slot(int hash, boolean isFile, int mask) {
+        int h = (isFile ? hash ^ FILE_SEED : hash) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
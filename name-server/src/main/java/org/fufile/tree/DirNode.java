@@ -19,21 +19,26 @@ package org.fufile.tree;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Directory node.
+ * The children are guarded by a {@link StampedLock}, lookups first try an optimistic read
+ * and only take the read lock if a writer interfered, so readers never write shared state.
+ * While the tree is frozen, the first change of the children copies them for the {@link FrozenTree}.
  */
 public class DirNode extends TreeNode {
 
-    private List<TreeNode> childNodeList;
+    private static final TreeNode[] EMPTY_CHILDREN = new TreeNode[0];
 
-    public DirNode(String nodeName, String dir, TreeNode parentNode) {
-        super(nodeName, dir, parentNode);
-    }
+    private final StampedLock lock = new StampedLock();
+    private ChildIndex children;
+    private volatile boolean removed = false;
+    // the children as each open frozen tree saw them, if they have changed since it was taken
+    private FrozenCopy frozenCopies;
 
-    public DirNode(String dir) {
-        super(dir.substring(dir.lastIndexOf("/") + 1), dir);
+    public DirNode(byte[] name, TreeNode parentNode) {
+        super(name, parentNode);
     }
 
     @Override
@@ -48,11 +53,228 @@ public class DirNode extends TreeNode {
         super.deserialize(dataInputStream);
     }
 
-    public List<TreeNode> getChildNodeList() {
-        return childNodeList;
+    /**
+     * The children without locking, for single-threaded use.
+     *
+     * @return null if no child has ever been added
+     */
+    public ChildIndex getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns the children, creating the index on the first child, the write lock must be held.
+     */
+    public ChildIndex getOrCreateChildren() {
+        if (children == null) {
+            children = new ChildIndex();
+        }
+        return children;
+    }
+
+    /**
+     * Looks up the current name of the cursor.
+     */
+    TreeNode getChild(PathCursor cursor, boolean isFile) {
+        long stamp = lock.tryOptimisticRead();
+        ChildIndex children = this.children;
+        TreeNode node = children == null ? null : children.get(cursor, isFile);
+        if (lock.validate(stamp)) {
+            return node;
+        }
+        stamp = lock.readLock();
+        try {
+            children = this.children;
+            return children == null ? null : children.get(cursor, isFile);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the directory of the current name of the cursor, adding it if it does not exist.
+     */
+    DirNode getOrAddDir(PathCursor cursor, NameCache nameCache, FrozenTree[] frozen) {
+        DirNode dirNode = (DirNode) getChild(cursor, false);
+        if (dirNode != null) {
+            return dirNode;
+        }
+        long stamp = lock.writeLock();
+        try {
+            ChildIndex children = getOrCreateChildren();
+            dirNode = (DirNode) children.get(cursor, false);
+            if (dirNode == null) {
+                copyIfFrozen(frozen);
+                dirNode = new DirNode(nameCache.intern(cursor), this);
+                children.add(dirNode);
+            }
+            return dirNode;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sizes the children for the expected number before any child is added.
+     */
+    void presize(int expectedChildren) {
+        long stamp = lock.writeLock();
+        try {
+            if (children == null) {
+                children = new ChildIndex(expectedChildren);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the child, or returns the existing child of the same name and type.
+     */
+    TreeNode addOrGetChild(TreeNode treeNode, FrozenTree[] frozen) {
+        long stamp = lock.writeLock();
+        try {
+            copyIfFrozen(frozen);
+            ChildIndex children = getOrCreateChildren();
+            if (children.add(treeNode)) {
+                return treeNode;
+            }
+            return children.get(treeNode.getNodeName(), treeNode instanceof FileNode);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return false if a node of the same name and type already exists
+     */
+    boolean addChild(TreeNode treeNode, FrozenTree[] frozen) {
+        long stamp = lock.writeLock();
+        try {
+            copyIfFrozen(frozen);
+            return getOrCreateChildren().add(treeNode);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the child, a removed directory is marked so that concurrent creates below it retry.
+     *
+     * @return false if the node is no longer a child
+     */
+    boolean removeChild(TreeNode treeNode, FrozenTree[] frozen) {
+        long stamp = lock.writeLock();
+        try {
+            copyIfFrozen(frozen);
+            if (children == null || !children.remove(treeNode)) {
+                return false;
+            }
+            if (treeNode instanceof DirNode) {
+                ((DirNode) treeNode).removed = true;
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public void setChildNodeList(List<TreeNode> childNodeList) {
-        this.childNodeList = childNodeList;
+    /**
+     * Whether this directory or one of its ancestors has been removed from the tree.
+     */
+    boolean isDetached() {
+        for (TreeNode node = this; node != null; node = node.getParentNode()) {
+            if (((DirNode) node).removed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A consistent copy of the children.
+     */
+    public TreeNode[] snapshotChildren() {
+        long stamp = lock.readLock();
+        try {
+            return children == null ? EMPTY_CHILDREN : children.toArray();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Keeps the children for each frozen tree before they change for the first time since it was taken,
+     * the write lock must be held.
+     */
+    private void copyIfFrozen(FrozenTree[] frozen) {
+        TreeNode[] copy = null;
+        for (FrozenTree frozenTree : frozen) {
+            if (frozenCopy(frozenTree) == null) {
+                if (copy == null) {
+                    copy = children == null ? EMPTY_CHILDREN : children.toArray();
+                }
+                frozenCopies = new FrozenCopy(frozenTree, copy, frozenCopies);
+                frozenTree.copied(this);
+            }
+        }
+    }
+
+    private FrozenCopy frozenCopy(FrozenTree frozen) {
+        for (FrozenCopy frozenCopy = frozenCopies; frozenCopy != null; frozenCopy = frozenCopy.next) {
+            if (frozenCopy.frozenTree == frozen) {
+                return frozenCopy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The children as they were when the tree was frozen.
+     */
+    TreeNode[] frozenChildren(FrozenTree frozen) {
+        long stamp = lock.readLock();
+        try {
+            FrozenCopy frozenCopy = frozenCopy(frozen);
+            if (frozenCopy != null) {
+                return frozenCopy.children;
+            }
+            return children == null ? EMPTY_CHILDREN : children.toArray();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void releaseCopy(FrozenTree frozen) {
+        long stamp = lock.writeLock();
+        try {
+            FrozenCopy previous = null;
+            for (FrozenCopy frozenCopy = frozenCopies; frozenCopy != null; frozenCopy = frozenCopy.next) {
+                if (frozenCopy.frozenTree == frozen) {
+                    if (previous == null) {
+                        frozenCopies = frozenCopy.next;
+                    } else {
+                        previous.next = frozenCopy.next;
+                    }
+                    break;
+                }
+                previous = frozenCopy;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static final class FrozenCopy {
+
+        private final FrozenTree frozenTree;
+        private final TreeNode[] children;
+        private FrozenCopy next;
+
+        FrozenCopy(FrozenTree frozenTree, TreeNode[] children, FrozenCopy next) {
+            this.frozenTree = frozenTree;
+            this.children = children;
+            this.next = next;
+        }
     }
 }
@@ -25,8 +25,8 @@ import java.io.IOException;
  */
 public class FileNode extends TreeNode {
 
-    public FileNode(String dir) {
-        super(dir.substring(dir.lastIndexOf("/") + 1), dir);
+    public FileNode(byte[] name, TreeNode parentNode) {
+        super(name, parentNode);
     }
 
     @Override
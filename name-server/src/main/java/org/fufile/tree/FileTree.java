@@ -23,219 +23,213 @@ import org.fufile.errors.NodeNotFoundException;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * FileTree for NameNode in memory.
+ * It is safe for concurrent use, each directory guards its own children, see {@link DirNode}.
+ * A consistent view for snapshots is taken with {@link #freeze(long)} while the writers go on.
  */
 public class FileTree implements TreeHandler, Iterable<TreeNode> {
 
-    private TreeNode rootDirNode;
+    private static final int NAME_CACHE_SIZE = 1 << 16;
+    private static final FrozenTree[] NO_VIEWS = new FrozenTree[0];
 
-    /**
-     * Result type of dichotomy.
-     */
-    private enum DichotomyResultEnum {
-        /**
-         * Find the node that corresponds to the hash and the name.
-         */
-        FIND_HASH_NAME,
-        /**
-         * Find the last node in the list corresponding to the hash.
-         */
-        FIND_HASH,
-        /**
-         * Not found.
-         */
-        FIND_NOTHING
-    }
+    private final DirNode rootDirNode;
+    private final NameCache nameCache = new NameCache(NAME_CACHE_SIZE);
+    // changes hold the read lock, freezing and thawing wait for the changes in progress
+    private final StampedLock freezeLock = new StampedLock();
+    private volatile FrozenTree[] frozen = NO_VIEWS;
 
     /**
      * Create a instance.
      */
     public FileTree() {
-        this.rootDirNode = new DirNode("/");
+        this.rootDirNode = new DirNode(Names.EMPTY, null);
+    }
+
+    public DirNode getRootDirNode() {
+        return rootDirNode;
     }
 
     /**
-     * Create a file or directory node.
+     * Takes a point-in-time view of the tree, it contains every change that returned before this call
+     * and none that starts after it. Several views may be open at a time, each keeps its own copies.
      *
-     * @param treeNode {@link FileNode} or {@link DirNode}.
+     * @param logIndex the index of the last log entry applied to the tree
      */
-    @Override
-    public void createFileOrDirNode(TreeNode treeNode) throws FufileException {
-        String path = treeNode.getDir();
-        String[] paths = path.split("/");
-        TreeNode presentNode = rootDirNode;
-        Boolean isFile = treeNode instanceof FileNode;
-        boolean isLast = false;
-        StringBuilder dirBuilder = new StringBuilder();
-        for (int i = 1; i < paths.length; i++) {
-            dirBuilder.append("/").append(paths[i]);
-            if (i == paths.length - 1) {
-                isLast = true;
-            }
-            String nodeName = paths[i];
-            List<TreeNode> childNodes = ((DirNode) presentNode).getChildNodeList();
-            if (childNodes == null) {
-                // no child nodes.
-                childNodes = new ArrayList<>();
-                ((DirNode) presentNode).setChildNodeList(childNodes);
-                if (isLast) {
-                    treeNode.setParentNode(presentNode);
-                    childNodes.add(treeNode);
+    public FrozenTree freeze(long logIndex) {
+        long stamp = freezeLock.writeLock();
+        try {
+            FrozenTree frozenTree = new FrozenTree(this, logIndex);
+            FrozenTree[] views = Arrays.copyOf(frozen, frozen.length + 1);
+            views[frozen.length] = frozenTree;
+            frozen = views;
+            return frozenTree;
+        } finally {
+            freezeLock.unlockWrite(stamp);
+        }
+    }
+
+    void thaw(FrozenTree frozenTree) {
+        long stamp = freezeLock.writeLock();
+        try {
+            for (int i = 0; i < frozen.length; i++) {
+                if (frozen[i] == frozenTree) {
+                    FrozenTree[] views = new FrozenTree[frozen.length - 1];
+                    System.arraycopy(frozen, 0, views, 0, i);
+                    System.arraycopy(frozen, i + 1, views, i, views.length - i);
+                    frozen = views;
                     break;
                 }
-                DirNode dirNode = new DirNode(nodeName, dirBuilder.toString(), presentNode);
-                childNodes.add(dirNode);
-                presentNode = dirNode;
-            } else {
-                // (isLast & isFile = true) indicate that you are looking for a file.
-                DichotomyResult dichotomyResult =
-                        dichotomy(isLast & isFile, nodeName, nodeName.hashCode(), childNodes, 0, childNodes.size() - 1);
-                if (dichotomyResult.result == DichotomyResultEnum.FIND_HASH_NAME) {
-                    if (isLast) {
-                        // Node of the same name is found and is the last node.
-                        throw new NodeAlreadyExistsException("The node to be created already exists.");
-                    }
-                    presentNode = dichotomyResult.treeNode;
-                } else if (dichotomyResult.result == DichotomyResultEnum.FIND_HASH) {
-                    if (isLast) {
-                        // Nodes with the same hash are placed at the end of the linked list.
-                        treeNode.setParentNode(presentNode);
-                        treeNode.setLastNode(dichotomyResult.treeNode);
-                        dichotomyResult.treeNode.setNextNode(treeNode);
-                        break;
-                    }
-                    // Create an intermediate directory.
-                    presentNode = new DirNode(nodeName, dirBuilder.toString(), presentNode);
-                    presentNode.setLastNode(dichotomyResult.treeNode);
-                    dichotomyResult.treeNode.setNextNode(presentNode);
-                } else {
-                    int index = dichotomyResult.index;
-                    if (isLast) {
-                        // If there is no identical hash node at the end of the directory, the hash node is created.
-                        treeNode.setParentNode(presentNode);
-                        childNodes.add(index, treeNode);
-                        break;
-                    }
-                    // Create an intermediate directory.
-                    presentNode = new DirNode(nodeName, dirBuilder.toString(), presentNode);
-                    childNodes.add(index, presentNode);
-                }
             }
+        } finally {
+            freezeLock.unlockWrite(stamp);
         }
     }
 
     /**
-     * Get a file or directory node.
+     * Create a file or directory node, the missing parent directories are created too.
+     *
+     * @return the created node
      */
     @Override
-    public TreeNode getFileOrDirNode(String path, boolean isFile) throws FufileException {
-        String[] paths = path.split("/");
-        TreeNode presentNode = rootDirNode;
-        boolean isLast = false;
-        for (int i = 1; i < paths.length; i++) {
-            if (i == paths.length - 1) {
-                // The last directory or file.
-                isLast = true;
+    public TreeNode createFileOrDirNode(String path, boolean isFile) throws FufileException {
+        long stamp = freezeLock.readLock();
+        try {
+            return createNode(path, isFile, frozen);
+        } finally {
+            freezeLock.unlockRead(stamp);
+        }
+    }
+
+    private TreeNode createNode(String path, boolean isFile, FrozenTree[] frozen) {
+        while (true) {
+            PathCursor cursor = PathCursor.of(path);
+            DirNode presentNode = rootDirNode;
+            if (!cursor.next()) {
+                throw new FufileException("The root directory cannot be created.");
             }
-            String nodeName = paths[i];
-            List<TreeNode> childNodes = ((DirNode) presentNode).getChildNodeList();
-            if (childNodes == null) {
-                // If there are no children, it returns not found.
-                throw new NodeNotFoundException("The desired node was not found.");
-            } else {
-                DichotomyResult dichotomyResult =
-                        dichotomy(isLast & isFile, nodeName, nodeName.hashCode(), childNodes, 0, childNodes.size() - 1);
-                if (dichotomyResult.result == DichotomyResultEnum.FIND_HASH_NAME) {
-                    if (isLast) {
-                        // Returns if the last node was found.
-                        dichotomyResult.treeNode.setIndex(dichotomyResult.index);
-                        return dichotomyResult.treeNode;
-                    }
-                    presentNode = dichotomyResult.treeNode;
-                } else {
-                    throw new NodeNotFoundException("The desired node was not found.");
-                }
+            while (!cursor.isLast()) {
+                // Create an intermediate directory if it does not exist.
+                presentNode = presentNode.getOrAddDir(cursor, nameCache, frozen);
+                cursor.next();
+            }
+            byte[] name = nameCache.intern(cursor);
+            TreeNode treeNode = isFile ? new FileNode(name, presentNode) : new DirNode(name, presentNode);
+            boolean added = presentNode.addChild(treeNode, frozen);
+            if (presentNode.isDetached()) {
+                // A directory on the path was removed concurrently, the node went into the removed subtree.
+                continue;
+            }
+            if (!added) {
+                // Node of the same name is found and is the last node.
+                throw new NodeAlreadyExistsException("The node to be created already exists.");
             }
+            return treeNode;
         }
-        throw new NodeNotFoundException("The desired node was not found.");
     }
 
     /**
-     * Removes a file or directory node.
+     * Returns the directory, creating it and its missing parents.
+     * Used by bulk loading, where directories may be created before their own records are read.
      */
-    @Override
-    public void removeFileOrDirNode(String path, boolean isFile) throws FufileException {
-        TreeNode treeNode = getFileOrDirNode(path, isFile);
-        TreeNode lastTreeNode = treeNode.getLastNode();
-        if (lastTreeNode == null) {
-            if (treeNode.getNextNode() == null) {
-                // If both the upper and lower nodes are NULL, the current node is removed.
-                ((DirNode) treeNode.getParentNode()).getChildNodeList().remove(treeNode.getIndex());
-            } else {
-                // If there is a next node, it is replaced with the next node.
-                ((DirNode) treeNode.getParentNode()).getChildNodeList().set(treeNode.getIndex(), treeNode.getNextNode());
-                treeNode.getNextNode().setLastNode(null);
+    public DirNode getOrCreateDirNode(String path) throws FufileException {
+        long stamp = freezeLock.readLock();
+        try {
+            while (true) {
+                PathCursor cursor = PathCursor.of(path);
+                DirNode presentNode = rootDirNode;
+                while (cursor.next()) {
+                    presentNode = presentNode.getOrAddDir(cursor, nameCache, frozen);
+                }
+                if (!presentNode.isDetached()) {
+                    return presentNode;
+                }
             }
-        } else {
-            // If I had the last node.
-            lastTreeNode.setNextNode(treeNode.getNextNode());
-            treeNode.getNextNode().setLastNode(lastTreeNode);
+        } finally {
+            freezeLock.unlockRead(stamp);
         }
     }
 
-    final private static class DichotomyResult {
-        final Enum<DichotomyResultEnum> result;
-        final TreeNode treeNode;
-        final int index;
-
-        private DichotomyResult(Enum result, TreeNode treeNode, int index) {
-            this.result = result;
-            this.treeNode = treeNode;
-            this.index = index;
+    /**
+     * Appends a child to a directory without resolving any path, for bulk loading.
+     * An existing directory of the same name is returned instead.
+     *
+     * @param name             the UTF-8 bytes of the name, a range of <tt>bytes</tt>
+     * @param expectedChildren presizes a new directory for this many children
+     * @return the appended node, or the existing directory
+     */
+    public TreeNode appendChild(DirNode parent, byte[] bytes, int offset, int length, boolean isFile, int expectedChildren)
+            throws FufileException {
+        byte[] name = nameCache.intern(bytes, offset, length);
+        TreeNode treeNode;
+        if (isFile) {
+            treeNode = new FileNode(name, parent);
+        } else {
+            DirNode dirNode = new DirNode(name, parent);
+            if (expectedChildren > 0) {
+                dirNode.presize(expectedChildren);
+            }
+            treeNode = dirNode;
+        }
+        TreeNode added;
+        long stamp = freezeLock.readLock();
+        try {
+            added = parent.addOrGetChild(treeNode, frozen);
+        } finally {
+            freezeLock.unlockRead(stamp);
         }
+        if (isFile && added != treeNode) {
+            throw new NodeAlreadyExistsException("The node to be created already exists.");
+        }
+        return added;
     }
 
     /**
-     * Hash dichotomization to find node.
+     * Get a file or directory node.
      */
-    private DichotomyResult dichotomy(boolean isFile, String nodeName, int hash, List<TreeNode> childNodes,
-                                      int startIndex, int endIndex) {
-        if (startIndex > endIndex) {
-            // The same hash node was not found.
-            return new DichotomyResult(DichotomyResultEnum.FIND_NOTHING, null, startIndex);
+    @Override
+    public TreeNode getFileOrDirNode(String path, boolean isFile) throws FufileException {
+        PathCursor cursor = PathCursor.of(path);
+        if (!cursor.next()) {
+            throw new NodeNotFoundException("The desired node was not found.");
         }
-        int mid = (startIndex + endIndex) / 2;
-        TreeNode childNode = childNodes.get(mid);
-        if (childNode.getHash() < hash) {
-            return dichotomy(isFile, nodeName, hash, childNodes, mid + 1, endIndex);
-        } else if (childNode.getHash() > hash) {
-            return dichotomy(isFile, nodeName, hash, childNodes, startIndex, mid - 1);
-        } else {
-            // Hash the same, traverse the linked list.
-            for (; ; childNode = childNode.getNextNode()) {
-                if (childNode.getNodeName().equals(nodeName)) {
-                    if (isFile) {
-                        if (childNode instanceof FileNode) {
-                            // Find the file node.
-                            return new DichotomyResult(DichotomyResultEnum.FIND_HASH_NAME, childNode, mid);
-                        }
-                    } else {
-                        if (childNode instanceof DirNode) {
-                            // Find the directory node.
-                            return new DichotomyResult(DichotomyResultEnum.FIND_HASH_NAME, childNode, mid);
-                        }
-                    }
-                }
-                // If no node is found, the hash found is returned.
-                if (childNode.getNextNode() == null) {
-                    return new DichotomyResult(DichotomyResultEnum.FIND_HASH, childNode, 0);
-                }
+        TreeNode presentNode = rootDirNode;
+        while (true) {
+            // (isLast & isFile = true) indicate that you are looking for a file.
+            boolean isLast = cursor.isLast();
+            presentNode = ((DirNode) presentNode).getChild(cursor, isLast & isFile);
+            if (presentNode == null) {
+                throw new NodeNotFoundException("The desired node was not found.");
             }
+            if (isLast) {
+                break;
+            }
+            cursor.next();
+        }
+        return presentNode;
+    }
+
+    /**
+     * Removes a file or directory node.
+     */
+    @Override
+    public void removeFileOrDirNode(String path, boolean isFile) throws FufileException {
+        long stamp = freezeLock.readLock();
+        try {
+            TreeNode treeNode = getFileOrDirNode(path, isFile);
+            if (!((DirNode) treeNode.getParentNode()).removeChild(treeNode, frozen)) {
+                // Removed by another thread meanwhile.
+                throw new NodeNotFoundException("The desired node was not found.");
+            }
+        } finally {
+            freezeLock.unlockRead(stamp);
         }
     }
 
@@ -248,16 +242,12 @@ public class FileTree implements TreeHandler, Iterable<TreeNode> {
     private void singleSerializeNode(TreeNode treeNode, DataOutputStream dataOutputStream) throws IOException {
         if (treeNode instanceof DirNode) {
             // Directory node.
-            List<TreeNode> treeNodeList = ((DirNode) treeNode).getChildNodeList();
-            if (treeNodeList == null || treeNodeList.size() == 0) {
+            TreeNode[] childNodes = ((DirNode) treeNode).snapshotChildren();
+            if (childNodes.length == 0) {
                 // Serialized empty directory.
                 treeNode.serialize(dataOutputStream);
             } else {
-                synchronized (treeNodeList) {
-                    // Copy directory.
-                    treeNodeList = new ArrayList<>(treeNodeList);
-                }
-                for (TreeNode node : treeNodeList) {
+                for (TreeNode node : childNodes) {
                     singleSerializeNode(node, dataOutputStream);
                 }
             }
@@ -265,63 +255,62 @@ public class FileTree implements TreeHandler, Iterable<TreeNode> {
             //  Serialization file node.
             treeNode.serialize(dataOutputStream);
         }
-        TreeNode nextNode = treeNode.getNextNode();
-        if (nextNode != null) {
-            // There's the next node.
-            singleSerializeNode(treeNode, dataOutputStream);
-        }
     }
 
     /**
      * Snapshot serialization in a cluster scenario.
-     * During serialization, the file tree stops operating,
-     * and the final serialized image is accurate.
+     * The tree is frozen during serialization, so the image is accurate while the file tree keeps operating.
      */
     @Override
     public void clusterSerialize(DataOutputStream dataOutputStream) throws IOException {
-        Iterator<TreeNode> iterator = iterator();
-        while (iterator.hasNext()) {
-            TreeNode treeNode = iterator.next();
-            treeNode.serialize(dataOutputStream);
+        try (FrozenTree frozenTree = freeze(0)) {
+            for (TreeNode treeNode : frozenTree) {
+                treeNode.serialize(dataOutputStream);
+            }
         }
     }
 
     @Override
     public void deserialize(DataInputStream dataInputStream) throws IOException {
-        while (dataInputStream.available() != 0) {
-            int i = dataInputStream.readByte();
+        int i;
+        while ((i = dataInputStream.read()) != -1) {
             int num = dataInputStream.readInt();
             byte[] bytes = new byte[num];
-            dataInputStream.read(bytes);
+            dataInputStream.readFully(bytes);
             String path = new String(bytes, "utf-8");
-            if (i == 0) {
-                createFileOrDirNode(new DirNode(path));
-            } else {
-                createFileOrDirNode(new FileNode(path));
-            }
+            createFileOrDirNode(path, i != 0);
         }
     }
 
     @Override
     public Iterator<TreeNode> iterator() {
-        return new Itr();
+        return new Itr(null);
+    }
+
+    Iterator<TreeNode> iterator(FrozenTree frozenTree) {
+        return new Itr(frozenTree);
     }
 
     /**
-     * TreeNode iterator
+     * TreeNode iterator, it returns the files and the empty directories in preorder,
+     * the other directories are implied by the paths of their descendants.
+     * Each directory is copied when it is entered, so the iterator is weakly consistent under concurrent changes,
+     * unless it iterates a {@link FrozenTree}.
      */
     private class Itr implements Iterator<TreeNode> {
 
+        private final Deque<Iterator<TreeNode>> stack = new ArrayDeque<>();
+        private final FrozenTree frozenTree;
         private TreeNode currentNode;
 
-        public Itr() {
-            currentNode = rootDirNode;
-            List<TreeNode> treeNodeList = ((DirNode) currentNode).getChildNodeList();
-            if (treeNodeList == null || treeNodeList.size() == 0) {
-                currentNode = null;
-            } else {
-                firstNode();
-            }
+        public Itr(FrozenTree frozenTree) {
+            this.frozenTree = frozenTree;
+            stack.push(Arrays.asList(children(rootDirNode)).iterator());
+            nextNode();
+        }
+
+        private TreeNode[] children(DirNode dirNode) {
+            return frozenTree == null ? dirNode.snapshotChildren() : frozenTree.children(dirNode);
         }
 
         @Override
@@ -331,6 +320,9 @@ public class FileTree implements TreeHandler, Iterable<TreeNode> {
 
         @Override
         public TreeNode next() {
+            if (currentNode == null) {
+                throw new NoSuchElementException();
+            }
             TreeNode treeNode = currentNode;
             nextNode();
             return treeNode;
@@ -340,62 +332,25 @@ public class FileTree implements TreeHandler, Iterable<TreeNode> {
          * Find the next node in the preorder traversal
          */
         private void nextNode() {
-            for (; ; ) {
-                // Determine if it is the root node.
-                if (currentNode.getDir().equals("/")) {
-                    currentNode = null;
-                    break;
+            while (!stack.isEmpty()) {
+                Iterator<TreeNode> iterator = stack.peek();
+                if (!iterator.hasNext()) {
+                    // Begin looking for the next node of the parent node.
+                    stack.pop();
+                    continue;
                 }
-                // If I have the next node.
-                TreeNode nextTreeNode = currentNode.getNextNode();
-                if (nextTreeNode != null) {
-                    currentNode = nextTreeNode;
-                    getNextNode();
-                    break;
-                } else {
-                    // If there is no next node, the brother node is found.
-                    int index = currentNode.getIndex();
-                    TreeNode parentTreeNode = currentNode.getParentNode();
-                    List<TreeNode> childNodeList = ((DirNode) parentTreeNode).getChildNodeList();
-                    if (childNodeList.size() == index + 1) {
-                        // The last node.
-                        // Begin looking for the next node of the parent node.
-                        currentNode = parentTreeNode;
-                    } else {
-                        currentNode = childNodeList.get(index + 1);
-                        currentNode.setIndex(index + 1);
-                        getNextNode();
-                        break;
+                TreeNode treeNode = iterator.next();
+                if (treeNode instanceof DirNode) {
+                    TreeNode[] children = children((DirNode) treeNode);
+                    if (children.length != 0) {
+                        stack.push(Arrays.asList(children).iterator());
+                        continue;
                     }
                 }
-            }
-        }
-
-        private void getNextNode() {
-            if (currentNode instanceof FileNode) {
+                currentNode = treeNode;
                 return;
-            } else {
-                List<TreeNode> treeNodeList = ((DirNode) currentNode).getChildNodeList();
-                if (treeNodeList == null || treeNodeList.size() == 0) {
-                    return;
-                }
-                firstNode();
-            }
-        }
-
-        /**
-         * Find the first node traversed in the preceding order of the current node root.
-         */
-        private void firstNode() {
-            for (List<TreeNode> treeNodeList = ((DirNode) currentNode).getChildNodeList();
-                 treeNodeList != null && treeNodeList.size() != 0;
-                 treeNodeList = ((DirNode) currentNode).getChildNodeList()) {
-                currentNode = treeNodeList.get(0);
-                currentNode.setIndex(0);
-                if (currentNode instanceof FileNode) {
-                    break;
-                }
             }
+            currentNode = null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A point-in-time view of a {@link FileTree} taken with {@link FileTree#freeze(long)}, tagged with the log index
+ * of the last operation it contains. Writers go on while the view is open: the first change of a directory copies
+ * its children for the view, the directories that do not change are read live.
+ * The view must be closed to release the copies.
+ */
+public final class FrozenTree implements Iterable<TreeNode>, AutoCloseable {
+
+    private final FileTree fileTree;
+    private final long logIndex;
+    private final Queue<DirNode> copied = new ConcurrentLinkedQueue<>();
+
+    FrozenTree(FileTree fileTree, long logIndex) {
+        this.fileTree = fileTree;
+        this.logIndex = logIndex;
+    }
+
+    public long logIndex() {
+        return logIndex;
+    }
+
+    public DirNode getRootDirNode() {
+        return fileTree.getRootDirNode();
+    }
+
+    /**
+     * The children of a directory as they were when the tree was frozen.
+     */
+    public TreeNode[] children(DirNode dirNode) {
+        return dirNode.frozenChildren(this);
+    }
+
+    void copied(DirNode dirNode) {
+        copied.add(dirNode);
+    }
+
+    /**
+     * Iterates the files and empty directories of the view like {@link FileTree#iterator()}.
+     */
+    @Override
+    public Iterator<TreeNode> iterator() {
+        return fileTree.iterator(this);
+    }
+
+    @Override
+    public void close() {
+        fileTree.thaw(this);
+        DirNode dirNode;
+        while ((dirNode = copied.poll()) != null) {
+            dirNode.releaseCopy(this);
+        }
+    }
+}
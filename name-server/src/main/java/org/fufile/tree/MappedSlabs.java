@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped as a sequence of equally sized slabs, addressed by a long offset.
+ * Growing maps more slabs at the end, the mapped bytes stay where they are,
+ * so a value must not cross a slab boundary.
+ * Absolute reads are safe from any thread, growing must be serialized with all access by the caller.
+ */
+final class MappedSlabs implements Closeable {
+
+    private final FileChannel channel;
+    private final int slabShift;
+    private final int slabMask;
+    private MappedByteBuffer[] slabs = new MappedByteBuffer[0];
+
+    /**
+     * Maps an existing file or creates it, at least <tt>minCapacity</tt> bytes are mapped.
+     *
+     * @param slabShift the slabs are <tt>1 &lt;&lt; slabShift</tt> bytes
+     */
+    MappedSlabs(Path file, int slabShift, long minCapacity) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.slabShift = slabShift;
+        this.slabMask = (1 << slabShift) - 1;
+        ensureCapacity(Math.max(minCapacity, channel.size()));
+    }
+
+    /**
+     * Maps more slabs until <tt>capacity</tt> bytes are addressable.
+     */
+    void ensureCapacity(long capacity) throws IOException {
+        int slabNum = (int) ((capacity + slabMask) >>> slabShift);
+        if (slabNum <= slabs.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = new MappedByteBuffer[slabNum];
+        System.arraycopy(slabs, 0, grown, 0, slabs.length);
+        for (int i = slabs.length; i < slabNum; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << slabShift, 1 << slabShift);
+        }
+        slabs = grown;
+    }
+
+    long capacity() {
+        return (long) slabs.length << slabShift;
+    }
+
+    int slabSize() {
+        return 1 << slabShift;
+    }
+
+    int getInt(long position) {
+        return slabs[(int) (position >>> slabShift)].getInt((int) position & slabMask);
+    }
+
+    void putInt(long position, int value) {
+        slabs[(int) (position >>> slabShift)].putInt((int) position & slabMask, value);
+    }
+
+    long getLong(long position) {
+        return slabs[(int) (position >>> slabShift)].getLong((int) position & slabMask);
+    }
+
+    void putLong(long position, long value) {
+        slabs[(int) (position >>> slabShift)].putLong((int) position & slabMask, value);
+    }
+
+    short getShort(long position) {
+        return slabs[(int) (position >>> slabShift)].getShort((int) position & slabMask);
+    }
+
+    void putShort(long position, short value) {
+        slabs[(int) (position >>> slabShift)].putShort((int) position & slabMask, value);
+    }
+
+    byte getByte(long position) {
+        return slabs[(int) (position >>> slabShift)].get((int) position & slabMask);
+    }
+
+    void putByte(long position, byte value) {
+        slabs[(int) (position >>> slabShift)].put((int) position & slabMask, value);
+    }
+
+    void getBytes(long position, byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        MappedByteBuffer slab = slabs[(int) (position >>> slabShift)];
+        int start = (int) position & slabMask;
+        for (int i = 0; i < length; i++) {
+            bytes[offset + i] = slab.get(start + i);
+        }
+    }
+
+    void putBytes(long position, byte[] bytes) {
+        if (bytes.length == 0) {
+            return;
+        }
+        MappedByteBuffer slab = slabs[(int) (position >>> slabShift)];
+        int offset = (int) position & slabMask;
+        for (int i = 0; i < bytes.length; i++) {
+            slab.put(offset + i, bytes[i]);
+        }
+    }
+
+    /**
+     * Writes the dirty pages back to the file.
+     */
+    void force() {
+        for (MappedByteBuffer slab : slabs) {
+            slab.force();
+        }
+    }
+
+    /**
+     * Forces and closes the file, the mappings are released when they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        slabs = new MappedByteBuffer[0];
+        channel.close();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lossy, direct-mapped cache of name bytes, so that names repeated across directories
+ * such as "_SUCCESS" or "part-00000" share one array. A slot keeps the last name hashed to it.
+ */
+final class NameCache {
+
+    private final AtomicReferenceArray<byte[]> names;
+    private final int mask;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    NameCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        names = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the bytes of the current name of the cursor, shared with earlier names when possible.
+     */
+    byte[] intern(PathCursor cursor) {
+        int hash = cursor.hash();
+        int i = (hash ^ (hash >>> 16)) & mask;
+        byte[] name = names.get(i);
+        if (name == null || !Names.matches(name, cursor.path(), cursor.start(), cursor.end())) {
+            name = Names.encode(cursor.path(), cursor.start(), cursor.end());
+            names.lazySet(i, name);
+        }
+        return name;
+    }
+
+    /**
+     * Returns the bytes of a name given as a range of UTF-8 bytes, shared with earlier names when possible.
+     */
+    byte[] intern(byte[] bytes, int offset, int length) {
+        int hash = Names.hash(bytes, offset, length);
+        int i = (hash ^ (hash >>> 16)) & mask;
+        byte[] name = names.get(i);
+        if (name == null || !equals(name, bytes, offset, length)) {
+            name = Arrays.copyOfRange(bytes, offset, offset + length);
+            names.lazySet(i, name);
+        }
+        return name;
+    }
+
+    private static boolean equals(byte[] name, byte[] bytes, int offset, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
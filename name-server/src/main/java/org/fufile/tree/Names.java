@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Node names are kept as UTF-8 bytes, these helpers hash and compare a range of a path string
+ * against them by encoding the characters on the fly, so no name string is created for a lookup.
+ * Unpaired surrogates are treated as '?', like {@link String#getBytes} does.
+ */
+final class Names {
+
+    static final byte[] EMPTY = new byte[0];
+
+    private Names() {
+    }
+
+    static byte[] encode(String path, int start, int end) {
+        return path.substring(start, end).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String decode(byte[] name) {
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    static int hash(byte[] name) {
+        return hash(name, 0, name.length);
+    }
+
+    static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + (bytes[i] & 0xff);
+        }
+        return h;
+    }
+
+    /**
+     * The same value as {@link #hash(byte[])} of the encoded range.
+     */
+    static int hash(String path, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; ) {
+            char c = path.charAt(i++);
+            if (c < 0x80) {
+                h = 31 * h + c;
+                continue;
+            }
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(path.charAt(i))) {
+                codePoint = Character.toCodePoint(c, path.charAt(i++));
+            } else if (Character.isSurrogate(c)) {
+                codePoint = '?';
+            }
+            int length = utf8Length(codePoint);
+            for (int k = 0; k < length; k++) {
+                h = 31 * h + utf8Byte(codePoint, length, k);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Whether the name is the UTF-8 encoding of the range.
+     */
+    static boolean matches(byte[] name, String path, int start, int end) {
+        return matches(name, name.length, path, start, end);
+    }
+
+    /**
+     * Whether the first <tt>nameLength</tt> bytes of the name are the UTF-8 encoding of the range.
+     */
+    static boolean matches(byte[] name, int nameLength, String path, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; ) {
+            char c = path.charAt(i++);
+            if (c < 0x80) {
+                if (n == nameLength || name[n++] != c) {
+                    return false;
+                }
+                continue;
+            }
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(path.charAt(i))) {
+                codePoint = Character.toCodePoint(c, path.charAt(i++));
+            } else if (Character.isSurrogate(c)) {
+                codePoint = '?';
+            }
+            int length = utf8Length(codePoint);
+            for (int k = 0; k < length; k++) {
+                if (n == nameLength || (name[n++] & 0xff) != utf8Byte(codePoint, length, k)) {
+                    return false;
+                }
+            }
+        }
+        return n == nameLength;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int k) {
+        int shift = 6 * (length - 1 - k);
+        if (k == 0) {
+            return length == 1 ? codePoint : ((0xff00 >> length) & 0xff) | (codePoint >> shift);
+        }
+        return 0x80 | ((codePoint >> shift) & 0x3f);
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.fufile.errors.FufileException;
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.errors.NodeNotFoundException;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A namespace kept outside the Java heap, in memory-mapped files of a directory.
+ * Inodes are fixed size records addressed by an int id, each links to its parent, first child and siblings.
+ * Names are appended to a name heap, and an open-addressing table keyed by parent, name and type finds a child in O(1).
+ * The heap only holds this object, so GC pauses do not grow with the namespace,
+ * and reopening a cleanly closed directory only maps the files again.
+ * <p>
+ * The files are not crash consistent, a table that was not closed cleanly is refused
+ * and must be rebuilt from the snapshot and the log.
+ * The names of removed inodes are not reclaimed.
+ * One read-write lock guards the whole table.
+ */
+public class OffHeapFileTree implements TreeHandler, Closeable {
+
+    public static final int MAGIC = ByteBuffer.wrap("FOHT".getBytes()).getInt();
+    private static final int VERSION = 1;
+    private static final String INODES_FILE = "inodes.slab";
+    private static final String NAMES_FILE = "names.slab";
+    private static final String INDEX_FILE = "index.slab";
+    private static final int SLAB_SHIFT = 26;
+    private static final int MIN_INDEX_CAPACITY = 1 << 10;
+    private static final int MAX_NAME_LENGTH = 0xffff;
+    private static final int ROOT_ID = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CLEAN = 8;
+    private static final int HEADER_NEXT_ID = 12;
+    private static final int HEADER_FREE_HEAD = 16;
+    private static final int HEADER_LIVE_COUNT = 20;
+    private static final int HEADER_NAME_TAIL = 24;
+    private static final int HEADER_INDEX_CAPACITY = 32;
+
+    private static final int INODE_SIZE = 32;
+    private static final int PARENT = 0;
+    private static final int FIRST_CHILD = 4;
+    // also links the free inodes
+    private static final int NEXT_SIBLING = 8;
+    private static final int PREV_SIBLING = 12;
+    private static final int HASH = 16;
+    private static final int NAME_LENGTH = 20;
+    private static final int TYPE = 22;
+    private static final int NAME_OFFSET = 24;
+
+    private static final byte FREE = 0;
+    private static final byte DIR = 1;
+    private static final byte FILE = 2;
+
+    private final Path dir;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<byte[]> nameBuffer = ThreadLocal.withInitial(() -> new byte[256]);
+    private final MappedSlabs inodes;
+    private final MappedSlabs names;
+    private MappedSlabs index;
+    private int indexMask;
+    private int nextId;
+    private int freeHead;
+    private int liveCount;
+    private long nameTail;
+
+    /**
+     * Opens the table in the directory, or creates an empty one.
+     */
+    public OffHeapFileTree(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        boolean exists = Files.exists(dir.resolve(INODES_FILE));
+        inodes = new MappedSlabs(dir.resolve(INODES_FILE), SLAB_SHIFT, HEADER_SIZE);
+        names = new MappedSlabs(dir.resolve(NAMES_FILE), SLAB_SHIFT, 0);
+        if (exists) {
+            if (inodes.getInt(HEADER_MAGIC) != MAGIC || inodes.getInt(HEADER_VERSION) != VERSION) {
+                throw new FufileException("The directory " + dir + " does not hold an inode table of version " + VERSION + ".");
+            }
+            if (inodes.getInt(HEADER_CLEAN) != 1) {
+                throw new FufileException("The inode table in " + dir + " was not closed cleanly.");
+            }
+            nextId = inodes.getInt(HEADER_NEXT_ID);
+            freeHead = inodes.getInt(HEADER_FREE_HEAD);
+            liveCount = inodes.getInt(HEADER_LIVE_COUNT);
+            nameTail = inodes.getLong(HEADER_NAME_TAIL);
+            int indexCapacity = inodes.getInt(HEADER_INDEX_CAPACITY);
+            index = new MappedSlabs(dir.resolve(INDEX_FILE), SLAB_SHIFT, (long) indexCapacity << 2);
+            indexMask = indexCapacity - 1;
+        } else {
+            inodes.putInt(HEADER_MAGIC, MAGIC);
+            inodes.putInt(HEADER_VERSION, VERSION);
+            Files.deleteIfExists(dir.resolve(INDEX_FILE));
+            index = new MappedSlabs(dir.resolve(INDEX_FILE), SLAB_SHIFT, (long) MIN_INDEX_CAPACITY << 2);
+            indexMask = MIN_INDEX_CAPACITY - 1;
+            nextId = ROOT_ID;
+            int root = allocateInode();
+            writeInode(root, 0, Names.EMPTY, appendName(Names.EMPTY), DIR);
+        }
+        // the files are inconsistent until they are closed
+        inodes.putInt(HEADER_CLEAN, 0);
+        inodes.force();
+    }
+
+    @Override
+    public TreeNode createFileOrDirNode(String path, boolean isFile) throws FufileException {
+        lock.writeLock().lock();
+        try {
+            PathCursor cursor = PathCursor.of(path);
+            if (!cursor.next()) {
+                throw new FufileException("The root directory cannot be created.");
+            }
+            int parentId = ROOT_ID;
+            while (!cursor.isLast()) {
+                int id = find(parentId, DIR, cursor);
+                if (id == 0) {
+                    // Create an intermediate directory.
+                    id = addChild(parentId, cursor, DIR);
+                }
+                parentId = id;
+                cursor.next();
+            }
+            byte type = isFile ? FILE : DIR;
+            if (find(parentId, type, cursor) != 0) {
+                throw new NodeAlreadyExistsException("The node to be created already exists.");
+            }
+            return toTreeNode(addChild(parentId, cursor, type));
+        } catch (IOException e) {
+            throw new FufileException("Failed to grow the inode table in " + dir + ".", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a file, or a directory with everything below it.
+     */
+    @Override
+    public void removeFileOrDirNode(String path, boolean isFile) throws FufileException {
+        lock.writeLock().lock();
+        try {
+            int id = resolve(path, isFile);
+            if (id == 0) {
+                throw new NodeNotFoundException("The desired node was not found.");
+            }
+            // free the leaves first, going back up after each one
+            int node = id;
+            while (true) {
+                int child = inodes.getInt(inode(node) + FIRST_CHILD);
+                if (child != 0) {
+                    node = child;
+                    continue;
+                }
+                int parent = inodes.getInt(inode(node) + PARENT);
+                unlink(node);
+                indexRemove(node);
+                freeInode(node);
+                if (node == id) {
+                    break;
+                }
+                node = parent;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get a file or directory node, the returned node and its parents are copies of the inodes.
+     */
+    @Override
+    public TreeNode getFileOrDirNode(String path, boolean isFile) throws FufileException {
+        lock.readLock().lock();
+        try {
+            int id = resolve(path, isFile);
+            if (id == 0) {
+                throw new NodeNotFoundException("The desired node was not found.");
+            }
+            return toTreeNode(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The number of files and directories, without the root.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void singleSerialize(DataOutputStream dataOutputStream) throws IOException {
+        clusterSerialize(dataOutputStream);
+    }
+
+    /**
+     * Writes the files and the empty directories in preorder, in the format of {@link FileTree}.
+     */
+    @Override
+    public void clusterSerialize(DataOutputStream dataOutputStream) throws IOException {
+        lock.readLock().lock();
+        try {
+            int node = inodes.getInt(inode(ROOT_ID) + FIRST_CHILD);
+            while (node != 0) {
+                long position = inode(node);
+                int child = inodes.getInt(position + FIRST_CHILD);
+                if (child != 0) {
+                    node = child;
+                    continue;
+                }
+                dataOutputStream.writeByte(inodes.getByte(position + TYPE) == DIR ? 0 : 1);
+                byte[] bytes = pathBytes(node);
+                dataOutputStream.writeInt(bytes.length);
+                dataOutputStream.write(bytes);
+                // Begin looking for the next node of the parent node.
+                while (node != ROOT_ID && inodes.getInt(inode(node) + NEXT_SIBLING) == 0) {
+                    node = inodes.getInt(inode(node) + PARENT);
+                }
+                node = node == ROOT_ID ? 0 : inodes.getInt(inode(node) + NEXT_SIBLING);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deserialize(DataInputStream dataInputStream) throws IOException {
+        int i;
+        while ((i = dataInputStream.read()) != -1) {
+            int num = dataInputStream.readInt();
+            byte[] bytes = new byte[num];
+            dataInputStream.readFully(bytes);
+            createFileOrDirNode(new String(bytes, "utf-8"), i != 0);
+        }
+    }
+
+    /**
+     * Writes the header and marks the files clean, the table can not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            inodes.putInt(HEADER_NEXT_ID, nextId);
+            inodes.putInt(HEADER_FREE_HEAD, freeHead);
+            inodes.putInt(HEADER_LIVE_COUNT, liveCount);
+            inodes.putLong(HEADER_NAME_TAIL, nameTail);
+            inodes.putInt(HEADER_INDEX_CAPACITY, indexMask + 1);
+            index.close();
+            names.close();
+            // the header goes last, after all the data is on disk
+            inodes.force();
+            inodes.putInt(HEADER_CLEAN, 1);
+            inodes.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long inode(int id) {
+        return HEADER_SIZE + (long) (id - 1) * INODE_SIZE;
+    }
+
+    private int resolve(String path, boolean isFile) {
+        PathCursor cursor = PathCursor.of(path);
+        if (!cursor.next()) {
+            return 0;
+        }
+        int id = ROOT_ID;
+        while (true) {
+            // (isLast & isFile = true) indicate that you are looking for a file.
+            boolean isLast = cursor.isLast();
+            id = find(id, isLast & isFile ? FILE : DIR, cursor);
+            if (id == 0 || isLast) {
+                return id;
+            }
+            cursor.next();
+        }
+    }
+
+    private int find(int parentId, byte type, PathCursor cursor) {
+        int hash = cursor.hash();
+        for (int i = slot(parentId, hash, type, indexMask); ; i = (i + 1) & indexMask) {
+            int id = index.getInt((long) i << 2);
+            if (id == 0) {
+                return 0;
+            }
+            long position = inode(id);
+            if (inodes.getInt(position + HASH) == hash && inodes.getInt(position + PARENT) == parentId
+                    && inodes.getByte(position + TYPE) == type && nameMatches(position, cursor)) {
+                return id;
+            }
+        }
+    }
+
+    private boolean nameMatches(long position, PathCursor cursor) {
+        int length = inodes.getShort(position + NAME_LENGTH) & 0xffff;
+        byte[] buffer = nameBuffer.get();
+        if (buffer.length < length) {
+            buffer = new byte[length];
+            nameBuffer.set(buffer);
+        }
+        names.getBytes(inodes.getLong(position + NAME_OFFSET), buffer, 0, length);
+        return Names.matches(buffer, length, cursor.path(), cursor.start(), cursor.end());
+    }
+
+    private int addChild(int parentId, PathCursor cursor, byte type) throws IOException {
+        byte[] name = Names.encode(cursor.path(), cursor.start(), cursor.end());
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new FufileException("The name is longer than " + MAX_NAME_LENGTH + " bytes.");
+        }
+        int id = allocateInode();
+        writeInode(id, parentId, name, appendName(name), type);
+        long parent = inode(parentId);
+        int first = inodes.getInt(parent + FIRST_CHILD);
+        inodes.putInt(inode(id) + NEXT_SIBLING, first);
+        if (first != 0) {
+            inodes.putInt(inode(first) + PREV_SIBLING, id);
+        }
+        inodes.putInt(parent + FIRST_CHILD, id);
+        indexInsert(id);
+        return id;
+    }
+
+    private void writeInode(int id, int parentId, byte[] name, long nameOffset, byte type) {
+        long position = inode(id);
+        inodes.putInt(position + PARENT, parentId);
+        inodes.putInt(position + FIRST_CHILD, 0);
+        inodes.putInt(position + NEXT_SIBLING, 0);
+        inodes.putInt(position + PREV_SIBLING, 0);
+        inodes.putInt(position + HASH, Names.hash(name));
+        inodes.putShort(position + NAME_LENGTH, (short) name.length);
+        inodes.putByte(position + TYPE, type);
+        inodes.putLong(position + NAME_OFFSET, nameOffset);
+    }
+
+    private void unlink(int id) {
+        long position = inode(id);
+        int prev = inodes.getInt(position + PREV_SIBLING);
+        int next = inodes.getInt(position + NEXT_SIBLING);
+        if (prev != 0) {
+            inodes.putInt(inode(prev) + NEXT_SIBLING, next);
+        } else {
+            inodes.putInt(inode(inodes.getInt(position + PARENT)) + FIRST_CHILD, next);
+        }
+        if (next != 0) {
+            inodes.putInt(inode(next) + PREV_SIBLING, prev);
+        }
+    }
+
+    private int allocateInode() throws IOException {
+        int id;
+        if (freeHead != 0) {
+            id = freeHead;
+            freeHead = inodes.getInt(inode(id) + NEXT_SIBLING);
+        } else {
+            if (nextId == Integer.MAX_VALUE) {
+                throw new FufileException("The inode table is full.");
+            }
+            id = nextId++;
+            inodes.ensureCapacity(inode(id) + INODE_SIZE);
+        }
+        liveCount++;
+        return id;
+    }
+
+    private void freeInode(int id) {
+        long position = inode(id);
+        inodes.putByte(position + TYPE, FREE);
+        inodes.putInt(position + NEXT_SIBLING, freeHead);
+        freeHead = id;
+        liveCount--;
+    }
+
+    private long appendName(byte[] name) throws IOException {
+        long offset = nameTail;
+        int slabSize = names.slabSize();
+        if ((offset & (slabSize - 1)) + name.length > slabSize) {
+            // a name does not cross a slab
+            offset = (offset | (slabSize - 1)) + 1;
+        }
+        names.ensureCapacity(offset + name.length);
+        names.putBytes(offset, name);
+        nameTail = offset + name.length;
+        return offset;
+    }
+
+    private static int slot(int parentId, int hash, byte type, int mask) {
+        int h = (parentId * 0x9e3779b9 + hash) * 0x85ebca6b + type;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int slot(int id, int mask) {
+        long position = inode(id);
+        return slot(inodes.getInt(position + PARENT), inodes.getInt(position + HASH), inodes.getByte(position + TYPE), mask);
+    }
+
+    private void indexInsert(int id) throws IOException {
+        // the root is not indexed, keep the load factor at most 1/2
+        if (liveCount - 1 > (indexMask + 1) >> 1) {
+            growIndex();
+        }
+        int i = slot(id, indexMask);
+        while (index.getInt((long) i << 2) != 0) {
+            i = (i + 1) & indexMask;
+        }
+        index.putInt((long) i << 2, id);
+    }
+
+    private void indexRemove(int id) {
+        int i = slot(id, indexMask);
+        while (index.getInt((long) i << 2) != id) {
+            i = (i + 1) & indexMask;
+        }
+        // shift back the entries of the probe sequence that would no longer be reachable
+        for (int j = (i + 1) & indexMask; ; j = (j + 1) & indexMask) {
+            int other = index.getInt((long) j << 2);
+            if (other == 0) {
+                break;
+            }
+            int home = slot(other, indexMask);
+            if (((j - home) & indexMask) >= ((j - i) & indexMask)) {
+                index.putInt((long) i << 2, other);
+                i = j;
+            }
+        }
+        index.putInt((long) i << 2, 0);
+    }
+
+    private void growIndex() throws IOException {
+        int capacity = (indexMask + 1) << 1;
+        int mask = capacity - 1;
+        Path file = dir.resolve(INDEX_FILE + ".grow");
+        Files.deleteIfExists(file);
+        MappedSlabs grown = new MappedSlabs(file, SLAB_SHIFT, (long) capacity << 2);
+        for (int i = 0; i <= indexMask; i++) {
+            int id = index.getInt((long) i << 2);
+            if (id != 0) {
+                int j = slot(id, mask);
+                while (grown.getInt((long) j << 2) != 0) {
+                    j = (j + 1) & mask;
+                }
+                grown.putInt((long) j << 2, id);
+            }
+        }
+        index.close();
+        Files.move(file, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = grown;
+        indexMask = mask;
+    }
+
+    private TreeNode toTreeNode(int id) {
+        if (id == ROOT_ID) {
+            return new DirNode(Names.EMPTY, null);
+        }
+        long position = inode(id);
+        TreeNode parent = toTreeNode(inodes.getInt(position + PARENT));
+        byte[] name = new byte[inodes.getShort(position + NAME_LENGTH) & 0xffff];
+        names.getBytes(inodes.getLong(position + NAME_OFFSET), name, 0, name.length);
+        return inodes.getByte(position + TYPE) == FILE ? new FileNode(name, parent) : new DirNode(name, parent);
+    }
+
+    private byte[] pathBytes(int id) {
+        int length = 0;
+        for (int node = id; node != ROOT_ID; node = inodes.getInt(inode(node) + PARENT)) {
+            length += (inodes.getShort(inode(node) + NAME_LENGTH) & 0xffff) + 1;
+        }
+        byte[] bytes = new byte[length];
+        int position = length;
+        for (int node = id; node != ROOT_ID; node = inodes.getInt(inode(node) + PARENT)) {
+            int nameLength = inodes.getShort(inode(node) + NAME_LENGTH) & 0xffff;
+            position -= nameLength;
+            names.getBytes(inodes.getLong(inode(node) + NAME_OFFSET), bytes, position, nameLength);
+            bytes[--position] = '/';
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+/**
+ * Walks the names of a path by character offsets, without splitting the path or allocating per name.
+ * Empty names, as in "/a//b" or "/a/", are skipped.
+ * A cursor is reused by its thread through {@link #of}, so it must not be held across calls.
+ */
+final class PathCursor {
+
+    private static final ThreadLocal<PathCursor> CURSOR = ThreadLocal.withInitial(PathCursor::new);
+
+    private String path;
+    private int start;
+    private int end;
+    private int hash;
+
+    private PathCursor() {
+    }
+
+    /**
+     * Returns the cursor of the current thread positioned before the first name of the path.
+     */
+    static PathCursor of(String path) {
+        PathCursor cursor = CURSOR.get();
+        cursor.path = path;
+        cursor.start = 0;
+        cursor.end = 0;
+        return cursor;
+    }
+
+    /**
+     * Moves to the next name.
+     *
+     * @return false if there are no more names
+     */
+    boolean next() {
+        String path = this.path;
+        int length = path.length();
+        int i = end;
+        while (i < length && path.charAt(i) == '/') {
+            i++;
+        }
+        if (i == length) {
+            start = end = length;
+            return false;
+        }
+        start = i;
+        while (i < length && path.charAt(i) != '/') {
+            i++;
+        }
+        end = i;
+        hash = Names.hash(path, start, end);
+        return true;
+    }
+
+    /**
+     * Whether the current name is the last one of the path.
+     */
+    boolean isLast() {
+        String path = this.path;
+        int length = path.length();
+        for (int i = end; i < length; i++) {
+            if (path.charAt(i) != '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String path() {
+        return path;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    int hash() {
+        return hash;
+    }
+
+    /**
+     * The current name as a new string, only needed when a node is created.
+     */
+    String name() {
+        return path.substring(start, end);
+    }
+}
@@ -22,7 +22,7 @@ import java.io.IOException;
 
 public interface TreeHandler  {
 
-    void createFileOrDirNode(TreeNode treeNode);
+    TreeNode createFileOrDirNode(String path, boolean isFile);
 
 
     void removeFileOrDirNode(String path, boolean isFile);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2021 The Fufile Project
+ * Copyright 2022 The Fufile Project
  *
  * The Fufile Project licenses this file to you under the Apache License,
  * version 2.0 (the "License"); you may not use this file except in compliance
@@ -19,35 +19,26 @@ package org.fufile.tree;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * All node classes need to inherit from this class.
+ * A node only keeps its own name as UTF-8 bytes, the path is rebuilt from the parent nodes when needed.
  */
 public abstract class TreeNode {
 
-    private String nodeName;
-    private int hash;
-    private String dir;
-    private TreeNode nextNode;
-    private TreeNode lastNode;
+    private final byte[] name;
+    private final int hash;
     private TreeNode parentNode;
-    private int index;
 
-    public TreeNode(String nodeName, String dir, TreeNode parentNode) {
-        this.nodeName = nodeName;
-        this.hash = nodeName.hashCode();
-        this.dir = dir;
+    public TreeNode(byte[] name, TreeNode parentNode) {
+        this.name = name;
+        this.hash = Names.hash(name);
         this.parentNode = parentNode;
     }
 
-    public TreeNode(String nodeName, String dir) {
-        this.nodeName = nodeName;
-        this.hash = nodeName.hashCode();
-        this.dir = dir;
-    }
-
     public void serialize(DataOutputStream dataOutputStream) throws IOException {
-        byte[] bytes = dir.getBytes("utf-8");
+        byte[] bytes = getPathBytes();
         dataOutputStream.writeInt(bytes.length);
         dataOutputStream.write(bytes);
     }
@@ -60,24 +51,15 @@ public abstract class TreeNode {
         return hash;
     }
 
-    public String getNodeName() {
-        return nodeName;
-    }
-
-    public TreeNode getNextNode() {
-        return nextNode;
-    }
-
-    public void setNextNode(TreeNode nextNode) {
-        this.nextNode = nextNode;
+    /**
+     * The UTF-8 bytes of the name, which must not be modified.
+     */
+    public byte[] getName() {
+        return name;
     }
 
-    public TreeNode getLastNode() {
-        return lastNode;
-    }
-
-    public void setLastNode(TreeNode lastNode) {
-        this.lastNode = lastNode;
+    public String getNodeName() {
+        return Names.decode(name);
     }
 
     public TreeNode getParentNode() {
@@ -88,15 +70,28 @@ public abstract class TreeNode {
         this.parentNode = parentNode;
     }
 
-    public int getIndex() {
-        return index;
-    }
-
-    public void setIndex(int index) {
-        this.index = index;
+    /**
+     * The absolute path of the node, built by walking up to the root.
+     */
+    public String getDir() {
+        return new String(getPathBytes(), StandardCharsets.UTF_8);
     }
 
-    public String getDir() {
-        return dir;
+    public byte[] getPathBytes() {
+        int length = 0;
+        for (TreeNode node = this; node.parentNode != null; node = node.parentNode) {
+            length += node.name.length + 1;
+        }
+        if (length == 0) {
+            return new byte[] {'/'};
+        }
+        byte[] bytes = new byte[length];
+        int position = length;
+        for (TreeNode node = this; node.parentNode != null; node = node.parentNode) {
+            position -= node.name.length;
+            System.arraycopy(node.name, 0, bytes, position, node.name.length);
+            bytes[--position] = '/';
+        }
+        return bytes;
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.tree.FileNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A set of tests for the CheckpointManager.
+ */
+public class CheckpointManagerTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoverFromCheckpointAndTail() throws Exception {
+        FileTree fileTree = new FileTree();
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), fileTree, fileLog, 60000)) {
+            for (int i = 0; i < 1000; i++) {
+                checkpointManager.createFileOrDirNode("/data/dir-" + (i % 10) + "/file-" + i, true, Durability.WRITE);
+            }
+            long segments = count(dir.resolve("log"));
+            Assertions.assertEquals(1000, checkpointManager.checkpoint());
+            // the segments before the checkpoint are gone
+            Assertions.assertTrue(count(dir.resolve("log")) < segments);
+            for (int i = 0; i < 1000; i += 3) {
+                checkpointManager.removeFileOrDirNode("/data/dir-" + (i % 10) + "/file-" + i, true, Durability.WRITE);
+            }
+            checkpointManager.createFileOrDirNode("/empty", false, Durability.SYNC);
+        }
+
+        FileTree recovered = new FileTree();
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), recovered, fileLog, 60000)) {
+            Assertions.assertEquals(1335, checkpointManager.recover());
+            Assertions.assertEquals(1000, checkpointManager.checkpointSequence());
+            Assertions.assertEquals(paths(fileTree), paths(recovered));
+        }
+    }
+
+    @Test
+    public void testBackgroundCheckpoint() throws Exception {
+        FileTree fileTree = new FileTree();
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), fileTree, fileLog, 10)) {
+            checkpointManager.recover();
+            checkpointManager.start();
+            for (int i = 0; i < 2000; i++) {
+                checkpointManager.createFileOrDirNode("/data/file-" + i, true, Durability.NONE);
+            }
+            long deadline = System.currentTimeMillis() + 30000;
+            while (checkpointManager.checkpointSequence() < 2000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(2000, checkpointManager.checkpointSequence());
+            Assertions.assertEquals(1, count(dir.resolve("checkpoint")));
+        }
+        FileTree recovered = new FileTree();
+        try (FileLog fileLog = new FileLog(dir.resolve("log"), SEGMENT_SIZE, Durability.SYNC);
+             CheckpointManager checkpointManager = new CheckpointManager(dir.resolve("checkpoint"), recovered, fileLog, 60000)) {
+            Assertions.assertEquals(2000, checkpointManager.recover());
+            Assertions.assertEquals(paths(fileTree), paths(recovered));
+        }
+    }
+
+    private static long count(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static Set<String> paths(FileTree fileTree) {
+        Set<String> paths = new HashSet<>();
+        for (TreeNode treeNode : fileTree) {
+            paths.add((treeNode instanceof FileNode ? "f" : "d") + treeNode.getDir());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.tree.FileNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A set of tests for the FileLog.
+ */
+public class FileLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        FileTree fileTree = new FileTree();
+        // small segments, so the records roll over many of them
+        try (FileLog fileLog = new FileLog(dir, 4096, Durability.SYNC)) {
+            for (int i = 0; i < 1000; i++) {
+                String path = "/data/dir-" + (i % 7) + "/file-" + i;
+                fileTree.createFileOrDirNode(path, true);
+                Assertions.assertEquals(i + 1, fileLog.appendCreate(path, true, i % 3 == 0 ? Durability.NONE : Durability.WRITE));
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                String path = "/data/dir-" + (i % 7) + "/file-" + i;
+                fileTree.removeFileOrDirNode(path, true);
+                fileLog.appendRemove(path, true);
+            }
+            fileTree.removeFileOrDirNode("/data/dir-0", false);
+            fileLog.appendRemove("/data/dir-0", false);
+        }
+        Assertions.assertTrue(segments().size() > 10);
+
+        try (FileLog fileLog = new FileLog(dir, 4096, Durability.SYNC)) {
+            Assertions.assertEquals(1501, fileLog.lastSequence());
+            FileTree replayed = new FileTree();
+            Assertions.assertEquals(1501, fileLog.replay(0, replayed));
+            Assertions.assertEquals(paths(fileTree), paths(replayed));
+            // appending goes on after the recovered sequence
+            Assertions.assertEquals(1502, fileLog.appendCreate("/data/last", true));
+        }
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            for (int i = 0; i < 10; i++) {
+                fileLog.appendCreate("/data/file-" + i, true);
+            }
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // corrupt the name of the last record
+            long position = FileLog.SEGMENT_HEADER_SIZE + 9L * (FileLog.RECORD_HEADER_SIZE + "/data/file-0".length());
+            channel.write(ByteBuffer.wrap(new byte[] {'x'}), position + FileLog.RECORD_HEADER_SIZE);
+        }
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            Assertions.assertEquals(9, fileLog.lastSequence());
+            Assertions.assertEquals(10, fileLog.appendCreate("/data/again", true));
+        }
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            FileTree fileTree = new FileTree();
+            Assertions.assertEquals(10, fileLog.replay(0, fileTree));
+            Assertions.assertNotNull(fileTree.getFileOrDirNode("/data/again", true));
+            Assertions.assertEquals(10, paths(fileTree).size());
+        }
+    }
+
+    /**
+     * Tests that the records after a lost one are not recovered behind the records appended after a restart.
+     */
+    @Test
+    public void testStaleTailAfterRecovery() throws Exception {
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            for (int i = 0; i < 10; i++) {
+                fileLog.appendCreate("/data/file-" + i, true);
+            }
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // corrupt the name of the fifth record, the records after it are still intact
+            long position = FileLog.SEGMENT_HEADER_SIZE + 4L * (FileLog.RECORD_HEADER_SIZE + "/data/file-0".length());
+            channel.write(ByteBuffer.wrap(new byte[] {'x'}), position + FileLog.RECORD_HEADER_SIZE);
+        }
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            Assertions.assertEquals(4, fileLog.lastSequence());
+            // of the same length as the lost record, so the old sixth record follows it exactly
+            Assertions.assertEquals(5, fileLog.appendCreate("/data/file-x", true));
+        }
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            Assertions.assertEquals(5, fileLog.lastSequence());
+            FileTree fileTree = new FileTree();
+            Assertions.assertEquals(5, fileLog.replay(0, fileTree));
+            Assertions.assertNotNull(fileTree.getFileOrDirNode("/data/file-x", true));
+            Assertions.assertEquals(5, paths(fileTree).size());
+        }
+    }
+
+    @Test
+    public void testConcurrentGroupCommit() throws Exception {
+        int threads = 8;
+        int appends = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<Long> sequences = new ArrayList<>();
+                    for (int i = 0; i < appends; i++) {
+                        sequences.add(fileLog.appendCreate("/thread-" + thread + "/file-" + i, true));
+                    }
+                    return sequences;
+                }));
+            }
+            Set<Long> sequences = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                sequences.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+            Assertions.assertEquals(threads * appends, sequences.size());
+        } finally {
+            executor.shutdown();
+        }
+        try (FileLog fileLog = new FileLog(dir, 1 << 16, Durability.SYNC)) {
+            FileTree fileTree = new FileTree();
+            Assertions.assertEquals(threads * appends, fileLog.replay(0, fileTree));
+            Assertions.assertEquals(threads * appends, paths(fileTree).size());
+        }
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Set<String> paths(FileTree fileTree) {
+        Set<String> paths = new HashSet<>();
+        for (TreeNode treeNode : fileTree) {
+            paths.add((treeNode instanceof FileNode ? "f" : "d") + treeNode.getDir());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.tree.FileNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A set of tests for the SnapshotLoader.
+ */
+public class SnapshotLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private FileTree fileTree;
+    private Path file;
+    private long records;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileTree = new FileTree();
+        for (int i = 0; i < 5000; i++) {
+            fileTree.createFileOrDirNode("/wide/file-" + i, true);
+        }
+        for (int i = 0; i < 30000; i++) {
+            fileTree.createFileOrDirNode("/deep/a-" + (i % 7) + "/b-" + (i % 13) + "/c-" + (i % 3) + "/file-" + i, true);
+        }
+        fileTree.createFileOrDirNode("/empty/dir", false);
+        file = dir.resolve("tree.snap");
+        records = new SnapshotWriter().write(fileTree, file);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        FileTree loaded = new FileTree();
+        Assertions.assertEquals(records, new SnapshotLoader().load(file, loaded));
+        Assertions.assertEquals(paths(fileTree), paths(loaded));
+        Assertions.assertNotNull(loaded.getFileOrDirNode("/deep/a-1/b-1/c-1/file-1", true));
+    }
+
+    @Test
+    public void testParallelLoad() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FileTree loaded = new FileTree();
+        Assertions.assertEquals(records, new SnapshotLoader(pool).load(file, loaded));
+        pool.shutdown();
+        Assertions.assertEquals(paths(fileTree), paths(loaded));
+    }
+
+    @Test
+    public void testCorruptBlock() throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[100] ^= 1;
+        Files.write(file, bytes);
+        Assertions.assertThrows(FufileException.class, () -> new SnapshotLoader().load(file, new FileTree()));
+    }
+
+    private static Set<String> paths(FileTree fileTree) {
+        Set<String> paths = new HashSet<>();
+        for (TreeNode treeNode : fileTree) {
+            paths.add((treeNode instanceof FileNode ? "f" : "d") + treeNode.getDir());
+        }
+        return paths;
+    }
+}
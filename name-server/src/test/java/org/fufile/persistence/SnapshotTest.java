@@ -16,7 +16,6 @@
 
 package org.fufile.persistence;
 
-import org.fufile.tree.FileNode;
 import org.fufile.tree.FileTree;
 import org.junit.jupiter.api.BeforeEach;
 
@@ -32,8 +31,8 @@ class SnapshotTest {
 
     //    @Test
     public void testClusterSerialize() throws Exception {
-        fileTree.createFileOrDirNode(new FileNode("/image/red/red.jpg"));
-        fileTree.createFileOrDirNode(new FileNode("/image/black/black.jpg"));
+        fileTree.createFileOrDirNode("/image/red/red.jpg", true);
+        fileTree.createFileOrDirNode("/image/black/black.jpg", true);
         Snapshot snapshot = new Snapshot("target/dir.snap", fileTree);
         snapshot.createClusterSnapshot();
     }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.errors.FufileException;
+import org.fufile.errors.NodeNotFoundException;
+import org.fufile.tree.FileNode;
+import org.fufile.tree.FileTree;
+import org.fufile.tree.FrozenTree;
+import org.fufile.tree.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A set of tests for the SnapshotWriter and the SnapshotReader.
+ */
+public class SnapshotWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        FileTree fileTree = new FileTree();
+        // a wide directory is split into several tasks, the deep ones span several blocks
+        for (int i = 0; i < 5000; i++) {
+            fileTree.createFileOrDirNode("/wide/file-" + i, true);
+        }
+        for (int i = 0; i < 20000; i++) {
+            fileTree.createFileOrDirNode("/deep/a-" + (i % 7) + "/b-" + (i % 13) + "/c-" + (i % 3) + "/\u6587\u4ef6-" + i, true);
+        }
+        fileTree.createFileOrDirNode("/empty/dir", false);
+        Path file = dir.resolve("tree.snap");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        long records = new SnapshotWriter(pool).write(fileTree, file);
+        pool.shutdown();
+
+        FileTree copy = new FileTree();
+        Assertions.assertEquals(records, new SnapshotReader().read(file, copy));
+        Assertions.assertEquals(paths(fileTree), paths(copy));
+
+        FileTree viaSnapshot = new FileTree();
+        new Snapshot(file.toString(), viaSnapshot).readSnapshot();
+        Assertions.assertEquals(paths(fileTree), paths(viaSnapshot));
+    }
+
+    @Test
+    public void testLogIndex() throws Exception {
+        FileTree fileTree = new FileTree();
+        fileTree.createFileOrDirNode("/data/file", true);
+        Path file = dir.resolve("tree.snap");
+        try (FrozenTree frozenTree = fileTree.freeze(1234)) {
+            fileTree.createFileOrDirNode("/data/later", true);
+            Assertions.assertEquals(2, new SnapshotWriter().write(frozenTree, file));
+        }
+        Assertions.assertEquals(1234, SnapshotReader.readLogIndex(file));
+        FileTree copy = new FileTree();
+        new SnapshotLoader().load(file, copy);
+        Assertions.assertNotNull(copy.getFileOrDirNode("/data/file", true));
+        Assertions.assertThrows(NodeNotFoundException.class, () -> copy.getFileOrDirNode("/data/later", true));
+    }
+
+    @Test
+    public void testCorruptBlock() throws Exception {
+        FileTree fileTree = new FileTree();
+        for (int i = 0; i < 100; i++) {
+            fileTree.createFileOrDirNode("/data/file-" + i, true);
+        }
+        Path file = dir.resolve("tree.snap");
+        new SnapshotWriter().write(fileTree, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[40] ^= 1;
+        Files.write(file, bytes);
+        Assertions.assertThrows(FufileException.class, () -> new SnapshotReader().read(file, new FileTree()));
+    }
+
+    private static Set<String> paths(FileTree fileTree) {
+        Set<String> paths = new HashSet<>();
+        for (TreeNode treeNode : fileTree) {
+            paths.add((treeNode instanceof FileNode ? "f" : "d") + treeNode.getDir());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.persistence;
+
+import org.fufile.config.FufileConfig;
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.errors.NodeNotFoundException;
+import org.fufile.raft.MembershipState;
+import org.fufile.raft.RaftSystem;
+import org.fufile.raft.SegmentedRaftLog;
+import org.fufile.tree.FileTree;
+import org.fufile.utils.TimerTask;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A set of tests for the TreeStateMachine.
+ */
+public class TreeStateMachineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testApplyKey() {
+        TreeStateMachine stateMachine = new TreeStateMachine(new FileTree());
+        Assertions.assertEquals("a", stateMachine.applyKey(TreeStateMachine.encode(FileLog.CREATE_DIR, "/a")));
+        Assertions.assertEquals("a", stateMachine.applyKey(TreeStateMachine.encode(FileLog.CREATE_FILE, "/a/b/c")));
+        Assertions.assertNull(stateMachine.applyKey(TreeStateMachine.encode(FileLog.REMOVE_DIR, "/")));
+        // the tree reads these paths as /ab/c, so their changes are ordered with those of /ab
+        Assertions.assertEquals("ab", stateMachine.applyKey(TreeStateMachine.encode(FileLog.CREATE_FILE, "ab/c")));
+        Assertions.assertEquals("ab", stateMachine.applyKey(TreeStateMachine.encode(FileLog.CREATE_FILE, "//ab/c")));
+        Assertions.assertEquals("ab", stateMachine.applyKey(TreeStateMachine.encode(FileLog.REMOVE_DIR, "/ab")));
+        Assertions.assertNull(stateMachine.applyKey(TreeStateMachine.encode(FileLog.REMOVE_DIR, "//")));
+    }
+
+    @Test
+    public void testApplyProposals() throws Exception {
+        FileTree fileTree = new FileTree();
+        List<TimerTask> tasks = new ArrayList<>();
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, 1024 * 1024);
+             RaftSystem system = new RaftSystem(new FufileConfig(new Properties()), raftLog,
+                     new TreeStateMachine(fileTree), new HashMap<>(), tasks::add)) {
+            tasks.clear();
+            system.transitionTo(MembershipState.LEADER_STATE, false);
+            system.start();
+            for (int i = 0; i < 1000; i++) {
+                system.propose(TreeStateMachine.encode(FileLog.CREATE_FILE, "/dir-" + (i % 10) + "/sub/file-" + i));
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                system.propose(TreeStateMachine.encode(FileLog.REMOVE_FILE, "/dir-" + (i % 10) + "/sub/file-" + i));
+            }
+            for (TimerTask task : tasks) {
+                task.run();
+            }
+            long deadline = System.currentTimeMillis() + 20000;
+            while (system.lastAppliedLogIndex() < 1500 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertEquals(1500, system.lastAppliedLogIndex());
+            for (int i = 0; i < 1000; i++) {
+                String path = "/dir-" + (i % 10) + "/sub/file-" + i;
+                if (i % 2 == 0) {
+                    Assertions.assertThrows(NodeNotFoundException.class, () -> fileTree.getFileOrDirNode(path, true));
+                } else {
+                    Assertions.assertNotNull(fileTree.getFileOrDirNode(path, true));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedEntriesDoNotStopApplying() throws Exception {
+        FileTree fileTree = new FileTree();
+        List<Long> rejected = Collections.synchronizedList(new ArrayList<>());
+        List<TimerTask> tasks = new ArrayList<>();
+        try (SegmentedRaftLog raftLog = new SegmentedRaftLog(dir, 1024 * 1024);
+             RaftSystem system = new RaftSystem(new FufileConfig(new Properties()), raftLog,
+                     new TreeStateMachine(fileTree, (e, index) -> rejected.add(index)), new HashMap<>(), tasks::add)) {
+            tasks.clear();
+            system.transitionTo(MembershipState.LEADER_STATE, false);
+            system.start();
+            system.propose(TreeStateMachine.encode(FileLog.CREATE_FILE, "/a/file"));
+            system.propose(TreeStateMachine.encode(FileLog.CREATE_FILE, "/a/file"));
+            system.propose(TreeStateMachine.encode(FileLog.REMOVE_FILE, "/a/missing"));
+            system.propose(TreeStateMachine.encode(FileLog.REMOVE_DIR, "/"));
+            system.propose(TreeStateMachine.encode(FileLog.CREATE_FILE, "/b/file"));
+            for (TimerTask task : tasks) {
+                task.run();
+            }
+            long deadline = System.currentTimeMillis() + 20000;
+            while (system.lastAppliedLogIndex() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertEquals(5, system.lastAppliedLogIndex());
+            Assertions.assertEquals(Arrays.asList(2L, 3L, 4L), rejected);
+            Assertions.assertNotNull(fileTree.getFileOrDirNode("/a/file", true));
+            Assertions.assertNotNull(fileTree.getFileOrDirNode("/b/file", true));
+            Assertions.assertThrows(NodeAlreadyExistsException.class, () -> fileTree.createFileOrDirNode("/b/file", true));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A set of tests for the ChildIndex.
+ */
+public class ChildIndexTest {
+
+    @Test
+    public void testFileAndDirWithSameName() {
+        ChildIndex index = new ChildIndex();
+        FileNode file = file("red");
+        DirNode dir = new DirNode(Names.encode("red", 0, 3), null);
+        assertTrue(index.add(file));
+        assertTrue(index.add(dir));
+        assertFalse(index.add(file("red")));
+        assertSame(file, index.get("red", true));
+        assertSame(dir, index.get("red", false));
+        assertSame(file, index.remove("red", true));
+        assertNull(index.get("red", true));
+        assertSame(dir, index.get("red", false));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testCollidingNames() {
+        // "Aa" and "BB" have the same String hash code
+        ChildIndex index = new ChildIndex();
+        assertTrue(index.add(file("Aa")));
+        assertTrue(index.add(file("BB")));
+        assertEquals("Aa", index.get("Aa", true).getNodeName());
+        assertEquals("BB", index.get("BB", true).getNodeName());
+        index.remove("Aa", true);
+        assertEquals("BB", index.get("BB", true).getNodeName());
+    }
+
+    @Test
+    public void testRandomAddRemove() {
+        ChildIndex index = new ChildIndex();
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 200000; i++) {
+            String name = "f" + random.nextInt(20000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(name), index.add(file(name)));
+            } else {
+                assertEquals(expected.remove(name), index.remove(name, true) != null);
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (String name : expected) {
+            assertEquals(name, index.get(name, true).getNodeName());
+        }
+        Set<String> iterated = new HashSet<>();
+        for (TreeNode node : index) {
+            iterated.add(node.getNodeName());
+        }
+        assertEquals(expected, iterated);
+    }
+
+    private static FileNode file(String name) {
+        return new FileNode(Names.encode(name, 0, name.length()), null);
+    }
+}
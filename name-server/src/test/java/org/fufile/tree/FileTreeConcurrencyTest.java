@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.errors.NodeNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stress tests of the FileTree under concurrent readers and writers.
+ */
+public class FileTreeConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int FILES_PER_WRITER = 20000;
+
+    @Test
+    public void testConcurrentCreateGetRemove() throws Exception {
+        FileTree fileTree = new FileTree();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            int writer = t;
+            writers.add(executor.submit(() -> {
+                // the writers share the directories but not the files
+                for (int i = 0; i < FILES_PER_WRITER; i++) {
+                    String path = path(writer, i);
+                    Assertions.assertEquals(path, fileTree.createFileOrDirNode(path, true).getDir());
+                    Assertions.assertNotNull(fileTree.getFileOrDirNode(path, true));
+                    if (i % 2 == 1) {
+                        fileTree.removeFileOrDirNode(path, true);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < READERS; t++) {
+            readers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    try {
+                        fileTree.getFileOrDirNode(path(random.nextInt(WRITERS), random.nextInt(FILES_PER_WRITER)), true);
+                    } catch (NodeNotFoundException e) {
+                        // not created yet or removed
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : writers) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        for (Future<?> future : readers) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Set<String> expected = new HashSet<>();
+        for (int t = 0; t < WRITERS; t++) {
+            for (int i = 0; i < FILES_PER_WRITER; i += 2) {
+                expected.add(path(t, i));
+            }
+        }
+        Set<String> actual = new HashSet<>();
+        for (TreeNode treeNode : fileTree) {
+            if (treeNode instanceof FileNode) {
+                actual.add(treeNode.getDir());
+            }
+        }
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testCreateUnderConcurrentlyRemovedDirectory() throws Exception {
+        FileTree fileTree = new FileTree();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> remover = executor.submit(() -> {
+            while (running.get()) {
+                try {
+                    fileTree.removeFileOrDirNode("/tmp/job", false);
+                } catch (NodeNotFoundException e) {
+                    // already removed
+                }
+            }
+            return null;
+        });
+        Future<?> creator = executor.submit(() -> {
+            for (int i = 0; i < 50000; i++) {
+                String path = "/tmp/job/attempt-" + (i % 10) + "/file-" + i;
+                try {
+                    TreeNode treeNode = fileTree.createFileOrDirNode(path, true);
+                    // a created node was reachable when it was added
+                    Assertions.assertEquals(path, treeNode.getDir());
+                } catch (NodeAlreadyExistsException e) {
+                    Assertions.fail(path);
+                }
+            }
+            return null;
+        });
+        creator.get(60, TimeUnit.SECONDS);
+        running.set(false);
+        remover.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+        fileTree.createFileOrDirNode("/tmp/job/last", true);
+        Assertions.assertNotNull(fileTree.getFileOrDirNode("/tmp/job/last", true));
+    }
+
+    private static String path(int writer, int i) {
+        return "/shared/dir-" + (i % 64) + "/writer-" + writer + "-file-" + i;
+    }
+}
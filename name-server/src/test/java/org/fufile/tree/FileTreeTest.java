@@ -39,8 +39,8 @@ class FileTreeTest {
     //    @Test
     public void testAddAndGetFileNode() {
         try {
-            fileTree.createFileOrDirNode(new FileNode("/image/red/red.jpg"));
-            fileTree.createFileOrDirNode(new FileNode("/image/black/black.jpg"));
+            fileTree.createFileOrDirNode("/image/red/red.jpg", true);
+            fileTree.createFileOrDirNode("/image/black/black.jpg", true);
             TreeNode treeNode = fileTree.getFileOrDirNode("/image/red/red.jpg", true);
             assertEquals(treeNode.getNodeName(), "red.jpg");
         } catch (FufileException fufileException) {
@@ -55,9 +55,9 @@ class FileTreeTest {
         urlList.add("red.jpg");
         urlList.add("black.jpg");
         urlList.add("blue.jpg");
-        fileTree.createFileOrDirNode(new FileNode(urls[0]));
-        fileTree.createFileOrDirNode(new FileNode(urls[1]));
-        fileTree.createFileOrDirNode(new DirNode(urls[2]));
+        fileTree.createFileOrDirNode(urls[0], true);
+        fileTree.createFileOrDirNode(urls[1], true);
+        fileTree.createFileOrDirNode(urls[2], false);
         Iterator<TreeNode> iterator = fileTree.iterator();
         while (iterator.hasNext()) {
             assertTrue(urlList.contains(iterator.next().getNodeName()));
@@ -67,7 +67,7 @@ class FileTreeTest {
     //    @Test
     public void testRemoveFileNode() {
         try {
-            fileTree.createFileOrDirNode(new FileNode("/image/red/red.jpg"));
+            fileTree.createFileOrDirNode("/image/red/red.jpg", true);
             TreeNode treeNode = fileTree.getFileOrDirNode("/image/red/red.jpg", true);
             assertEquals(treeNode.getNodeName(), "red.jpg");
             fileTree.removeFileOrDirNode("/image/red/red.jpg", true);
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A set of tests for the FrozenTree.
+ */
+public class FrozenTreeTest {
+
+    @Test
+    public void testPointInTime() {
+        FileTree fileTree = new FileTree();
+        for (int i = 0; i < 100; i++) {
+            fileTree.createFileOrDirNode("/data/dir-" + (i % 10) + "/file-" + i, true);
+        }
+        Set<String> before = paths(fileTree);
+        try (FrozenTree frozenTree = fileTree.freeze(42)) {
+            Assertions.assertEquals(42, frozenTree.logIndex());
+            for (int i = 0; i < 100; i += 2) {
+                fileTree.removeFileOrDirNode("/data/dir-" + (i % 10) + "/file-" + i, true);
+            }
+            fileTree.removeFileOrDirNode("/data/dir-1", false);
+            fileTree.createFileOrDirNode("/data/new/file", true);
+            fileTree.createFileOrDirNode("/other", false);
+            Assertions.assertEquals(before, paths(frozenTree));
+            Assertions.assertNotEquals(before, paths(fileTree));
+        }
+        // the copies are released and the live tree is seen again
+        try (FrozenTree frozenTree = fileTree.freeze(44)) {
+            Assertions.assertEquals(paths(fileTree), paths(frozenTree));
+        }
+    }
+
+    /**
+     * Tests that views taken at different points in time can be open together, e.g. a cluster snapshot during a checkpoint.
+     */
+    @Test
+    public void testOverlappingViews() throws Exception {
+        FileTree fileTree = new FileTree();
+        for (int i = 0; i < 20; i++) {
+            fileTree.createFileOrDirNode("/data/dir-" + (i % 4) + "/file-" + i, true);
+        }
+        Set<String> first = paths(fileTree);
+        try (FrozenTree outer = fileTree.freeze(1)) {
+            fileTree.removeFileOrDirNode("/data/dir-0/file-0", true);
+            fileTree.createFileOrDirNode("/data/dir-1/file-new", true);
+            Set<String> second = paths(fileTree);
+            try (FrozenTree inner = fileTree.freeze(2)) {
+                fileTree.removeFileOrDirNode("/data/dir-1", false);
+                fileTree.createFileOrDirNode("/data/dir-0/file-0", true);
+                Assertions.assertEquals(first, paths(outer));
+                Assertions.assertEquals(second, paths(inner));
+                fileTree.clusterSerialize(new DataOutputStream(new ByteArrayOutputStream()));
+            }
+            Assertions.assertEquals(first, paths(outer));
+            fileTree.createFileOrDirNode("/data/dir-2/file-new", true);
+            Assertions.assertEquals(first, paths(outer));
+        }
+        try (FrozenTree frozenTree = fileTree.freeze(3)) {
+            Assertions.assertEquals(paths(fileTree), paths(frozenTree));
+        }
+    }
+
+    /**
+     * A token moves through the directories by creating its next file before removing the current one,
+     * every consistent view holds one or two consecutive tokens.
+     */
+    @Test
+    public void testConsistentUnderConcurrentWriter() throws Exception {
+        FileTree fileTree = new FileTree();
+        for (int i = 0; i < 10; i++) {
+            fileTree.createFileOrDirNode("/token/dir-" + i + "/padding", true);
+        }
+        fileTree.createFileOrDirNode(token(0), true);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 0; running.get(); i++) {
+                fileTree.createFileOrDirNode(token(i + 1), true);
+                fileTree.removeFileOrDirNode(token(i), true);
+            }
+            return null;
+        });
+        try {
+            for (int n = 0; n < 2000; n++) {
+                try (FrozenTree frozenTree = fileTree.freeze(n)) {
+                    List<Integer> tokens = new ArrayList<>();
+                    for (TreeNode treeNode : frozenTree) {
+                        String name = treeNode.getNodeName();
+                        if (name.startsWith("token-")) {
+                            tokens.add(Integer.parseInt(name.substring(6)));
+                        }
+                    }
+                    Assertions.assertTrue(tokens.size() == 1
+                            || tokens.size() == 2 && Math.abs(tokens.get(0) - tokens.get(1)) == 1, tokens.toString());
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.get(60, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+    }
+
+    private static String token(int i) {
+        return "/token/dir-" + (i % 10) + "/token-" + i;
+    }
+
+    private static Set<String> paths(Iterable<TreeNode> nodes) {
+        Set<String> paths = new HashSet<>();
+        for (TreeNode treeNode : nodes) {
+            paths.add((treeNode instanceof FileNode ? "f" : "d") + treeNode.getDir());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.fufile.errors.FufileException;
+import org.fufile.errors.NodeAlreadyExistsException;
+import org.fufile.errors.NodeNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of tests for the OffHeapFileTree.
+ */
+public class OffHeapFileTreeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCreateGetRemove() throws Exception {
+        try (OffHeapFileTree tree = new OffHeapFileTree(dir)) {
+            TreeNode created = tree.createFileOrDirNode("/image/red/red.jpg", true);
+            Assertions.assertEquals("/image/red/red.jpg", created.getDir());
+            tree.createFileOrDirNode("/image/red", true);
+            Assertions.assertThrows(NodeAlreadyExistsException.class, () -> tree.createFileOrDirNode("/image/red/red.jpg", true));
+            Assertions.assertTrue(tree.getFileOrDirNode("/image/red", true) instanceof FileNode);
+            Assertions.assertTrue(tree.getFileOrDirNode("/image/red", false) instanceof DirNode);
+            Assertions.assertEquals("red.jpg", tree.getFileOrDirNode("/image/red/red.jpg", true).getNodeName());
+            Assertions.assertEquals(4, tree.size());
+
+            tree.removeFileOrDirNode("/image", false);
+            Assertions.assertEquals(0, tree.size());
+            Assertions.assertThrows(NodeNotFoundException.class, () -> tree.getFileOrDirNode("/image/red/red.jpg", true));
+            tree.createFileOrDirNode("/image/red/blue.jpg", true);
+            Assertions.assertEquals("/image/red/blue.jpg", tree.getFileOrDirNode("/image/red/blue.jpg", true).getDir());
+        }
+    }
+
+    @Test
+    public void testSerializeLikeFileTree() throws Exception {
+        FileTree fileTree = new FileTree();
+        try (OffHeapFileTree tree = new OffHeapFileTree(dir)) {
+            // enough entries to grow the index several times
+            for (int i = 0; i < 5000; i++) {
+                String path = "/data/dir-" + (i % 37) + "/file-" + i;
+                fileTree.createFileOrDirNode(path, true);
+                tree.createFileOrDirNode(path, true);
+            }
+            for (int i = 0; i < 5000; i += 3) {
+                String path = "/data/dir-" + (i % 37) + "/file-" + i;
+                fileTree.removeFileOrDirNode(path, true);
+                tree.removeFileOrDirNode(path, true);
+            }
+            fileTree.createFileOrDirNode("/empty", false);
+            tree.createFileOrDirNode("/empty", false);
+            Assertions.assertEquals(records(fileTree), records(tree));
+
+            OffHeapFileTree copy = new OffHeapFileTree(dir.resolve("copy"));
+            copy.deserialize(new DataInputStream(new ByteArrayInputStream(serialize(tree))));
+            Assertions.assertEquals(records(fileTree), records(copy));
+            copy.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        OffHeapFileTree tree = new OffHeapFileTree(dir);
+        for (int i = 0; i < 3000; i++) {
+            tree.createFileOrDirNode("/logs/" + i, true);
+        }
+        tree.removeFileOrDirNode("/logs/7", true);
+        Set<String> before = records(tree);
+        tree.close();
+
+        OffHeapFileTree reopened = new OffHeapFileTree(dir);
+        Assertions.assertEquals(before, records(reopened));
+        Assertions.assertEquals(2999 + 1, reopened.size());
+        reopened.createFileOrDirNode("/logs/7", true);
+        Assertions.assertNotNull(reopened.getFileOrDirNode("/logs/2999", true));
+        // not closed, so it must not be opened again
+        Assertions.assertThrows(FufileException.class, () -> new OffHeapFileTree(dir));
+        reopened.close();
+    }
+
+    private static byte[] serialize(TreeHandler tree) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.clusterSerialize(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static Set<String> records(TreeHandler tree) throws Exception {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(serialize(tree)));
+        Set<String> records = new HashSet<>();
+        while (input.available() != 0) {
+            int type = input.readByte();
+            byte[] path = new byte[input.readInt()];
+            input.readFully(path);
+            records.add(type + new String(path, "utf-8"));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 The Fufile Project
+ *
+ * The Fufile Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.fufile.tree;
+
+import org.fufile.errors.NodeNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of tests for the PathCursor.
+ */
+public class PathCursorTest {
+
+    @Test
+    public void testWalkNames() {
+        PathCursor cursor = PathCursor.of("//data/dir-1//file-2/");
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals("data", cursor.name());
+        Assertions.assertEquals("data".hashCode(), cursor.hash());
+        Assertions.assertFalse(cursor.isLast());
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals("dir-1", cursor.name());
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals("file-2", cursor.name());
+        Assertions.assertTrue(cursor.isLast());
+        Assertions.assertFalse(cursor.next());
+        Assertions.assertFalse(PathCursor.of("/").next());
+    }
+
+    @Test
+    public void testResolveWithoutAllocatingNames() {
+        FileTree fileTree = new FileTree();
+        fileTree.createFileOrDirNode("/a/b/c", true);
+        fileTree.createFileOrDirNode("/a/b/c", false);
+        Assertions.assertTrue(fileTree.getFileOrDirNode("/a/b/c", true) instanceof FileNode);
+        Assertions.assertTrue(fileTree.getFileOrDirNode("/a//b/c/", false) instanceof DirNode);
+        Assertions.assertEquals("/a/b", fileTree.getFileOrDirNode("/a/b", false).getDir());
+        Assertions.assertThrows(NodeNotFoundException.class, () -> fileTree.getFileOrDirNode("/a/bc", false));
+    }
+
+    @Test
+    public void testNonAsciiNames() {
+        FileTree fileTree = new FileTree();
+        String path = "/\u56fe\u7247/caf\u00e9/\ud83d\ude00.jpg";
+        TreeNode treeNode = fileTree.createFileOrDirNode(path, true);
+        Assertions.assertSame(treeNode, fileTree.getFileOrDirNode(path, true));
+        Assertions.assertEquals(path, treeNode.getDir());
+        Assertions.assertEquals("\ud83d\ude00.jpg", treeNode.getNodeName());
+        String name = "a\ud800b\u00e9\ud83d\ude00";
+        byte[] bytes = Names.encode(name, 0, name.length());
+        Assertions.assertEquals(Names.hash(bytes), Names.hash(name, 0, name.length()));
+        Assertions.assertTrue(Names.matches(bytes, name, 0, name.length()));
+        Assertions.assertFalse(Names.matches(bytes, name, 0, name.length() - 2));
+    }
+}